@@ -0,0 +1,247 @@
+package org.decision_deck.utils.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Interns keys (such as the rows or columns of a matrix, or the vertices of a
+ * graph) to dense int indexes, so that the structures using it may store their
+ * data in arrays indexed by key. When a key is removed, its index is freed and
+ * may be reused by a key interned later.
+ * </p>
+ * <p>
+ * Indexes are between zero (inclusive) and {@link #getBound()} (exclusive).
+ * Some indexes in that range may be unused. The keys iterate in insertion
+ * order.
+ * </p>
+ * <p>
+ * A key may be removed explicitly, or be counted: this object then counts, for
+ * each key, the number of values using it, and forgets the key when its count
+ * drops to zero.
+ * </p>
+ * <p>
+ * This class is part of the supported public API of this library, unlike most
+ * of this package: the matrixes, relations and graphs of this library index
+ * their keys with it, and it may be used to build similar structures. The
+ * methods taking an index throw an {@link IndexOutOfBoundsException} when it is
+ * negative or not lower than the bound, and those requiring a used index throw
+ * an {@link IllegalArgumentException} when it is unused. This class is not
+ * thread-safe.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <K> the type of keys.
+ */
+public final class KeyIndexer<K> {
+	/**
+	 * Insertion-ordered.
+	 */
+	private final Map<K, Integer> m_indexes = Maps.newLinkedHashMap();
+
+	private final Set<K> m_keySet = Collections.unmodifiableSet(m_indexes.keySet());
+
+	private Object[] m_keys = new Object[4];
+
+	private int[] m_counts = new int[4];
+
+	/**
+	 * The indexes, among those lower than {@link #m_bound}, which are unused. Only
+	 * the first {@link #m_nbFree} ones are meaningful.
+	 */
+	private int[] m_free = new int[4];
+
+	private int m_nbFree = 0;
+
+	private int m_bound = 0;
+
+	/**
+	 * Retrieves the index of the given key.
+	 *
+	 * @param key may be {@code null}.
+	 * @return the index, or {@code -1} iff the key is unknown.
+	 */
+	public int indexOf(Object key) {
+		final Integer index = m_indexes.get(key);
+		return index == null ? -1 : index.intValue();
+	}
+
+	/**
+	 * Retrieves the index of the given key, assigning a new index to it if it is
+	 * unknown. A newly assigned key has a count of zero. When counting, it must be
+	 * {@link #increment(int) incremented} before the next call to this method.
+	 *
+	 * @param key not {@code null}.
+	 * @return a non negative index.
+	 */
+	public int intern(K key) {
+		checkNotNull(key);
+		final Integer existing = m_indexes.get(key);
+		if (existing != null) {
+			return existing.intValue();
+		}
+		final int index;
+		if (m_nbFree > 0) {
+			--m_nbFree;
+			index = m_free[m_nbFree];
+		} else {
+			index = m_bound;
+			++m_bound;
+			if (index >= m_keys.length) {
+				final int newLength = m_keys.length * 2;
+				m_keys = Arrays.copyOf(m_keys, newLength);
+				m_counts = Arrays.copyOf(m_counts, newLength);
+			}
+		}
+		m_indexes.put(key, Integer.valueOf(index));
+		m_keys[index] = key;
+		return index;
+	}
+
+	/**
+	 * @param index any index lower than the bound.
+	 * @return the key currently associated with the given index, or {@code null}
+	 *         iff the index is unused.
+	 */
+	@SuppressWarnings("unchecked")
+	public K getKey(int index) {
+		checkElementIndex(index, m_bound);
+		return (K) m_keys[index];
+	}
+
+	/**
+	 * @param index any index lower than the bound.
+	 * @return {@code true} iff the index is currently associated with a key.
+	 */
+	public boolean isUsed(int index) {
+		checkElementIndex(index, m_bound);
+		return m_keys[index] != null;
+	}
+
+	/**
+	 * @return the upper bound (exclusive) of the indexes used so far.
+	 */
+	public int getBound() {
+		return m_bound;
+	}
+
+	/**
+	 * @param index a used index.
+	 */
+	public void increment(int index) {
+		checkArgument(isUsed(index));
+		++m_counts[index];
+	}
+
+	/**
+	 * Decrements the count associated to the given index, and forgets the
+	 * corresponding key if the count reaches zero.
+	 *
+	 * @param index a used index.
+	 * @return {@code true} iff the key has been forgotten.
+	 */
+	public boolean decrement(int index) {
+		checkArgument(isUsed(index) && m_counts[index] > 0);
+		--m_counts[index];
+		if (m_counts[index] > 0) {
+			return false;
+		}
+		m_indexes.remove(m_keys[index]);
+		free(index);
+		return true;
+	}
+
+	/**
+	 * Forgets the given key, whatever its count, and frees its index.
+	 *
+	 * @param key may be {@code null}.
+	 * @return the index the key had, or {@code -1} iff the key was unknown.
+	 */
+	public int remove(Object key) {
+		final Integer index = m_indexes.remove(key);
+		if (index == null) {
+			return -1;
+		}
+		free(index.intValue());
+		return index.intValue();
+	}
+
+	private void free(int index) {
+		m_keys[index] = null;
+		m_counts[index] = 0;
+		if (m_nbFree == m_free.length) {
+			m_free = Arrays.copyOf(m_free, m_free.length * 2);
+		}
+		m_free[m_nbFree] = index;
+		++m_nbFree;
+	}
+
+	/**
+	 * @param index a used index.
+	 * @return the number of values using the key at that index.
+	 */
+	public int getCount(int index) {
+		checkArgument(isUsed(index));
+		return m_counts[index];
+	}
+
+	/**
+	 * @return a read-only view of the known keys, in insertion order.
+	 */
+	public Set<K> keySet() {
+		return m_keySet;
+	}
+
+	/**
+	 * Returns an iterator over the known keys, in insertion order, whose
+	 * {@link Iterator#remove()} method forgets the last returned key and frees its
+	 * index. The index of that key must be read, if needed, before removing it.
+	 *
+	 * @return not {@code null}.
+	 */
+	public Iterator<K> keyIterator() {
+		final Iterator<Map.Entry<K, Integer>> entries = m_indexes.entrySet().iterator();
+		return new Iterator<K>() {
+			private int m_last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public K next() {
+				final Map.Entry<K, Integer> entry = entries.next();
+				m_last = entry.getValue().intValue();
+				return entry.getKey();
+			}
+
+			@SuppressWarnings("synthetic-access")
+			@Override
+			public void remove() {
+				checkState(m_last >= 0);
+				entries.remove();
+				free(m_last);
+				m_last = -1;
+			}
+		};
+	}
+
+	/**
+	 * @return the number of known keys.
+	 */
+	public int size() {
+		return m_indexes.size();
+	}
+}
@@ -1,5 +1,7 @@
 package org.decision_deck.utils.collection;
 
+import java.util.Map;
+
 public class MapEvents {
 
 	/**
@@ -54,6 +56,55 @@ public class MapEvents {
 		}
 	}
 
+	/**
+	 * <p>
+	 * This event indicates that a batch of modifications, started with
+	 * {@link ObservableMap#beginBatch()}, has just been committed. It is posted
+	 * instead of the individual events of the modifications, and carries their net
+	 * effect: a key whose value is, after the batch, the same as before the batch
+	 * appears in none of the maps of this event.
+	 * </p>
+	 * <p>
+	 * A key that was not in the map before the batch and is in it after the batch
+	 * is only in the added entries. A key that was in the map before the batch and
+	 * is not in it after the batch is only in the removed entries. A key whose
+	 * value changed is in both, as a change of value is a removal followed by an
+	 * addition.
+	 * </p>
+	 * 
+	 * @author Olivier Cailloux
+	 * 
+	 * @param <K> the key type
+	 * @param <V> the value type
+	 */
+	static public class ChangeSetEvent<K, V> {
+		final private Map<K, V> m_added;
+		final private Map<K, V> m_removed;
+
+		/**
+		 * @return the entries that are in the map after the batch and were not
+		 *         before, in the order the keys were first modified; not
+		 *         {@code null}, read-only.
+		 */
+		public Map<K, V> getAdded() {
+			return m_added;
+		}
+
+		/**
+		 * @return the entries that were in the map before the batch and are not
+		 *         after, in the order the keys were first modified; not
+		 *         {@code null}, read-only.
+		 */
+		public Map<K, V> getRemoved() {
+			return m_removed;
+		}
+
+		public ChangeSetEvent(Map<K, V> added, Map<K, V> removed) {
+			m_added = added;
+			m_removed = removed;
+		}
+	}
+
 	static public class ClearEvent<K, V> {
 		public ClearEvent() {
 			/** Nothing to do. */
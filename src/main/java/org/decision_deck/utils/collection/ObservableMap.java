@@ -23,6 +23,32 @@ public class ObservableMap<K, V> extends ForwardingMap<K, V> {
 		m_helper.register(observer);
 	}
 
+	/**
+	 * <p>
+	 * Starts a batch of modifications. Until the batch is committed, the
+	 * modifications of this map post no event. Committing the batch posts a single
+	 * {@link org.decision_deck.utils.collection.MapEvents.ChangeSetEvent} carrying
+	 * the net additions and removals, or nothing if the map is, at that time, the
+	 * same as before the batch.
+	 * </p>
+	 * <p>
+	 * Batches may be nested: only committing the outermost batch posts an event.
+	 * </p>
+	 */
+	public void beginBatch() {
+		m_helper.beginBatch();
+	}
+
+	/**
+	 * Commits the current batch.
+	 * 
+	 * @throws IllegalStateException if no batch has been begun.
+	 * @see #beginBatch()
+	 */
+	public void commit() {
+		m_helper.commit();
+	}
+
 	/**
 	 * Unregisters all handler methods on a registered {@code object}.
 	 * 
@@ -61,6 +87,13 @@ public class ObservableMap<K, V> extends ForwardingMap<K, V> {
 		return m_helper.put(key, value, contained, previousValue);
 	}
 
+	/**
+	 * Puts the given entries one by one, posting the events of each put. To post
+	 * a single {@link org.decision_deck.utils.collection.MapEvents.ChangeSetEvent}
+	 * instead, call this method within a batch.
+	 * 
+	 * @see #beginBatch()
+	 */
 	@Override
 	public void putAll(Map<? extends K, ? extends V> map) {
 		standardPutAll(map);
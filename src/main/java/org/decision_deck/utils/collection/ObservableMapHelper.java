@@ -1,11 +1,15 @@
 package org.decision_deck.utils.collection;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import org.decision_deck.utils.collection.MapEvents.AdditionEvent;
 import org.decision_deck.utils.collection.MapEvents.AdditionNewKeyEvent;
+import org.decision_deck.utils.collection.MapEvents.ChangeSetEvent;
 import org.decision_deck.utils.collection.MapEvents.ClearEvent;
 import org.decision_deck.utils.collection.MapEvents.PreAdditionEvent;
 import org.decision_deck.utils.collection.MapEvents.PreAdditionNewKeyEvent;
@@ -14,6 +18,9 @@ import org.decision_deck.utils.collection.MapEvents.PreRemovalEvent;
 import org.decision_deck.utils.collection.MapEvents.PreUniqueRemovalEvent;
 import org.decision_deck.utils.collection.MapEvents.UniqueRemovalEvent;
 
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
@@ -21,11 +28,90 @@ class ObservableMapHelper<K, V> {
 
 	private final Map<K, V> m_delegate;
 
+	/**
+	 * The number of batches begun and not yet committed. No individual event is
+	 * posted while positive.
+	 */
+	private int m_batchDepth;
+
+	/**
+	 * The keys modified during the current batch, in the order of their first
+	 * modification.
+	 */
+	private final Set<K> m_touched = Sets.newLinkedHashSet();
+
+	/**
+	 * The values, before the current batch, of the keys in {@link #m_touched} that
+	 * were in the map.
+	 */
+	private final Map<K, V> m_before = Maps.newHashMap();
+
 	public ObservableMapHelper(Map<K, V> delegate) {
 		m_delegate = delegate;
+		m_batchDepth = 0;
+	}
+
+	/**
+	 * Starts a batch, or a nested batch. Until the outermost batch is committed,
+	 * modifications post no event.
+	 */
+	public void beginBatch() {
+		++m_batchDepth;
+	}
+
+	/**
+	 * Ends the current batch. If it is the outermost one and the map changed, posts
+	 * a single {@link ChangeSetEvent} carrying the net changes.
+	 */
+	public void commit() {
+		checkState(m_batchDepth > 0, "No batch to commit.");
+		--m_batchDepth;
+		if (m_batchDepth > 0) {
+			return;
+		}
+		final Map<K, V> added = Maps.newLinkedHashMap();
+		final Map<K, V> removed = Maps.newLinkedHashMap();
+		for (K key : m_touched) {
+			final boolean wasContained = m_before.containsKey(key);
+			final V before = m_before.get(key);
+			final boolean contained = m_delegate.containsKey(key);
+			final V after = m_delegate.get(key);
+			if (wasContained && contained && Objects.equal(before, after)) {
+				continue;
+			}
+			if (wasContained) {
+				removed.put(key, before);
+			}
+			if (contained) {
+				added.put(key, after);
+			}
+		}
+		m_touched.clear();
+		m_before.clear();
+		if (!added.isEmpty() || !removed.isEmpty()) {
+			m_eventBus.post(new ChangeSetEvent<K, V>(Collections.unmodifiableMap(added),
+					Collections.unmodifiableMap(removed)));
+		}
+	}
+
+	/**
+	 * Records the state, before the current batch, of the given key, if it is the
+	 * first modification of that key in the batch.
+	 */
+	private void touch(K key, boolean contained, V value) {
+		if (m_touched.add(key) && contained) {
+			m_before.put(key, value);
+		}
 	}
 
 	public void clear(Set<java.util.Map.Entry<K, V>> entrySet) {
+		if (m_batchDepth > 0) {
+			for (Entry<K, V> entry : entrySet) {
+				touch(entry.getKey(), true, entry.getValue());
+			}
+			m_delegate.clear();
+			return;
+		}
 		for (Entry<K, V> entry : entrySet) {
 			m_eventBus.post(new PreRemovalEvent<K, V>(entry.getKey(), entry.getValue()));
 		}
@@ -44,6 +130,11 @@ class ObservableMapHelper<K, V> {
 	}
 
 	public V remove(K key, V value) {
+		if (m_batchDepth > 0) {
+			touch(key, true, value);
+			m_delegate.remove(key);
+			return value;
+		}
 		m_eventBus.post(new PreUniqueRemovalEvent<K, V>(key, value));
 		m_delegate.remove(key);
 		m_eventBus.post(new UniqueRemovalEvent<K, V>(key, value));
@@ -71,6 +162,10 @@ class ObservableMapHelper<K, V> {
 	}
 
 	public V put(K key, V value, boolean contained, V previousValue) {
+		if (m_batchDepth > 0) {
+			touch(key, contained, previousValue);
+			return m_delegate.put(key, value);
+		}
 		if (contained) {
 			m_eventBus.post(new PreRemovalEvent<K, V>(key, previousValue));
 			m_eventBus.post(new PreAdditionEvent<K, V>(key, value));
@@ -0,0 +1,314 @@
+package org.decision_deck.utils.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+/**
+ * <p>
+ * A sequence of values stored in an order-statistic tree. Each node of the tree
+ * holds one value; the position of a node in the sequence is implicit, given by
+ * the sizes of the subtrees on its left, so that no position is stored and
+ * inserting or removing a node does not renumber the other ones. The tree is a
+ * treap: each node has a pseudo random priority, and the tree is a heap with
+ * respect to these priorities, which keeps it balanced with high probability.
+ * </p>
+ * <p>
+ * Retrieving the node at a given position, retrieving the position of a node
+ * (by climbing to the root), inserting a node and removing a node all take a
+ * time logarithmic in the number of nodes. Iterating with {@link #first()} and
+ * {@link #next(Node)} takes amortized constant time per node.
+ * </p>
+ * <p>
+ * This class is part of the supported public API of this library, unlike most
+ * of this package: it stores the ranks of
+ * {@link org.decision_deck.utils.relation.graph.Preorder} and the order of
+ * {@link org.decision_deck.utils.collection.extensional_order.ExtensionalComparator},
+ * and may be used to build similar structures. A node may only be given to the
+ * tree it was inserted in, as long as it has not been removed; the methods
+ * taking a node throw an {@link IllegalArgumentException} otherwise. This
+ * class is not thread-safe.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <T> the type of values.
+ */
+public final class OrderStatisticTree<T> {
+	/**
+	 * A node of the tree, holding a value.
+	 *
+	 * @param <T> the type of values.
+	 */
+	public static final class Node<T> {
+		private final T m_value;
+
+		private final long m_priority;
+
+		private Node<T> m_left;
+
+		private Node<T> m_right;
+
+		private Node<T> m_parent;
+
+		/**
+		 * The number of nodes in the subtree rooted at this node.
+		 */
+		private int m_size = 1;
+
+		/**
+		 * The tree this node is part of, {@code null} once it has been removed.
+		 */
+		private OrderStatisticTree<T> m_tree;
+
+		private Node(OrderStatisticTree<T> tree, T value, long priority) {
+			m_tree = tree;
+			m_value = value;
+			m_priority = priority;
+		}
+
+		/**
+		 * @return the value given when inserting this node.
+		 */
+		public T getValue() {
+			return m_value;
+		}
+	}
+
+	private Node<T> m_root;
+
+	/**
+	 * The number of nodes created so far, used to derive the priorities.
+	 */
+	private long m_created = 0;
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.m_size;
+	}
+
+	private static void update(Node<?> node) {
+		node.m_size = 1 + size(node.m_left) + size(node.m_right);
+	}
+
+	/**
+	 * Mixes the bits of the given counter (as in the SplitMix64 generator), to
+	 * obtain deterministic but well distributed priorities.
+	 */
+	private static long mix(long counter) {
+		long z = counter * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return the number of nodes in this tree.
+	 */
+	public int size() {
+		return size(m_root);
+	}
+
+	/**
+	 * @param index between zero and the size of this tree, exclusive.
+	 * @return not {@code null}.
+	 */
+	public Node<T> getNode(int index) {
+		checkElementIndex(index, size());
+		Node<T> node = m_root;
+		int remaining = index;
+		while (true) {
+			final int leftSize = size(node.m_left);
+			if (remaining < leftSize) {
+				node = node.m_left;
+			} else if (remaining == leftSize) {
+				return node;
+			} else {
+				remaining -= leftSize + 1;
+				node = node.m_right;
+			}
+		}
+	}
+
+	/**
+	 * @param node a node of this tree, not removed.
+	 * @return the position of the given node.
+	 */
+	public int getIndex(Node<T> node) {
+		checkArgument(node.m_tree == this);
+		int index = size(node.m_left);
+		Node<T> current = node;
+		while (current.m_parent != null) {
+			if (current.m_parent.m_right == current) {
+				index += size(current.m_parent.m_left) + 1;
+			}
+			current = current.m_parent;
+		}
+		assert current == m_root;
+		return index;
+	}
+
+	/**
+	 * Inserts a new node at the given position. The nodes previously at that
+	 * position or after move one position forward.
+	 *
+	 * @param index between zero and the size of this tree, inclusive.
+	 * @param value the value of the new node, may be {@code null}.
+	 * @return the new node.
+	 */
+	public Node<T> insert(int index, T value) {
+		checkPositionIndex(index, size());
+		return insertAfter(index == 0 ? null : getNode(index - 1), value);
+	}
+
+	/**
+	 * Inserts a new node just after the given one, without computing any position.
+	 *
+	 * @param previous a node of this tree, not removed, or {@code null} to insert
+	 *                 the new node first.
+	 * @param value    the value of the new node, may be {@code null}.
+	 * @return the new node.
+	 */
+	public Node<T> insertAfter(Node<T> previous, T value) {
+		checkArgument(previous == null || previous.m_tree == this);
+		++m_created;
+		final Node<T> node = new Node<T>(this, value, mix(m_created));
+		if (m_root == null) {
+			m_root = node;
+			return node;
+		}
+		Node<T> parent;
+		if (previous != null && previous.m_right == null) {
+			parent = previous;
+			parent.m_right = node;
+		} else {
+			parent = previous == null ? m_root : previous.m_right;
+			while (parent.m_left != null) {
+				parent = parent.m_left;
+			}
+			parent.m_left = node;
+		}
+		node.m_parent = parent;
+		for (Node<T> ancestor = parent; ancestor != null; ancestor = ancestor.m_parent) {
+			++ancestor.m_size;
+		}
+		while (node.m_parent != null && node.m_priority > node.m_parent.m_priority) {
+			rotateUp(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Removes the given node from this tree. The nodes after it move one position
+	 * backward.
+	 *
+	 * @param node a node of this tree, not removed.
+	 */
+	public void remove(Node<T> node) {
+		checkNotNull(node);
+		checkArgument(node.m_tree == this);
+		while (node.m_left != null || node.m_right != null) {
+			final Node<T> child;
+			if (node.m_left == null) {
+				child = node.m_right;
+			} else if (node.m_right == null) {
+				child = node.m_left;
+			} else {
+				child = node.m_left.m_priority > node.m_right.m_priority ? node.m_left : node.m_right;
+			}
+			rotateUp(child);
+		}
+		final Node<T> parent = node.m_parent;
+		if (parent == null) {
+			m_root = null;
+		} else {
+			if (parent.m_left == node) {
+				parent.m_left = null;
+			} else {
+				parent.m_right = null;
+			}
+			for (Node<T> ancestor = parent; ancestor != null; ancestor = ancestor.m_parent) {
+				--ancestor.m_size;
+			}
+		}
+		node.m_parent = null;
+		node.m_tree = null;
+	}
+
+	/**
+	 * Removes every node from this tree, in a time linear in the number of nodes.
+	 */
+	public void clear() {
+		for (Node<T> node = first(); node != null;) {
+			final Node<T> next = next(node);
+			node.m_tree = null;
+			node = next;
+		}
+		m_root = null;
+	}
+
+	/**
+	 * @return the first node, or {@code null} iff this tree is empty.
+	 */
+	public Node<T> first() {
+		Node<T> node = m_root;
+		while (node != null && node.m_left != null) {
+			node = node.m_left;
+		}
+		return node;
+	}
+
+	/**
+	 * @param node a node of this tree, not removed.
+	 * @return the node following the given one, or {@code null} iff the given node
+	 *         is the last one.
+	 */
+	public Node<T> next(Node<T> node) {
+		checkArgument(node.m_tree == this);
+		if (node.m_right != null) {
+			Node<T> next = node.m_right;
+			while (next.m_left != null) {
+				next = next.m_left;
+			}
+			return next;
+		}
+		Node<T> current = node;
+		while (current.m_parent != null && current.m_parent.m_right == current) {
+			current = current.m_parent;
+		}
+		return current.m_parent;
+	}
+
+	/**
+	 * Rotates the given node with its parent, so that the node takes the place of
+	 * its parent. The order of the nodes is unchanged.
+	 */
+	private void rotateUp(Node<T> node) {
+		final Node<T> parent = node.m_parent;
+		final Node<T> grandParent = parent.m_parent;
+		if (parent.m_left == node) {
+			parent.m_left = node.m_right;
+			if (node.m_right != null) {
+				node.m_right.m_parent = parent;
+			}
+			node.m_right = parent;
+		} else {
+			parent.m_right = node.m_left;
+			if (node.m_left != null) {
+				node.m_left.m_parent = parent;
+			}
+			node.m_left = parent;
+		}
+		parent.m_parent = node;
+		node.m_parent = grandParent;
+		if (grandParent == null) {
+			m_root = node;
+		} else if (grandParent.m_left == parent) {
+			grandParent.m_left = node;
+		} else {
+			grandParent.m_right = node;
+		}
+		update(parent);
+		update(node);
+	}
+}
@@ -0,0 +1,425 @@
+package org.decision_deck.utils.collection.extensional_order;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+
+import org.decision_deck.utils.collection.CollectionUtils;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * <p>
+ * A thread-safe map whose iteration order is based on values as well as keys,
+ * the concurrent counterpart of {@link KeyValueOrderedMap}.
+ * </p>
+ * <p>
+ * The entries are kept in a concurrent hash map, associating each key to its
+ * current entry, and in a concurrent skip list ordered by the entry comparator,
+ * which serves as the index. Entries are immutable: setting a new value to a key
+ * adds a new entry to the index, makes it the current entry of the key, then
+ * removes the previous entry from the index. When the new entry compares equal
+ * to the previous one, the previous entry is left in the index, where it stands
+ * for the new one. Writers of the same key are serialized by a lock chosen among
+ * a fixed number of stripes, so that writers of different keys usually proceed
+ * in parallel; readers never lock.
+ * </p>
+ * <p>
+ * Readers of the index return, for each key they meet, its current entry, read
+ * from the hash map, and return each key at most once. Iteration, in increasing
+ * order, is weakly consistent: it never throws
+ * {@link java.util.ConcurrentModificationException}, and reflects some of the
+ * changes made after its creation. A key that is in this map during the whole
+ * iteration is returned exactly once, but, if its value changes during the
+ * iteration, it may be returned out of order: with its new value at the place
+ * of its old one, or, when the iteration missed both places, after all other
+ * entries, as the iteration ends with the keys of the hash map it has not yet
+ * returned. The iteration remembers the keys it has returned, thus uses memory
+ * linear in their number.
+ * </p>
+ * <p>
+ * This map does not accept {@code null} keys or values. The entry comparator
+ * must order every two entries with different keys; putting an entry that
+ * compares equal to the entry of an other key throws an
+ * {@link IllegalArgumentException}. Two entries of the same key may compare
+ * equal.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <K> the type of keys maintained by this map.
+ * @param <V> the type of mapped values.
+ */
+public class ConcurrentKeyValueOrderedMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		/**
+		 * Iterates over the index, then over the hash map.
+		 */
+		private Iterator<Map.Entry<K, V>> m_delegate;
+
+		private boolean m_indexDone = false;
+
+		private Map.Entry<K, V> m_next;
+
+		private Map.Entry<K, V> m_last;
+
+		/**
+		 * The keys returned so far, or about to be returned.
+		 */
+		private final Set<K> m_seen = Sets.newHashSet();
+
+		public EntryIterator(Iterator<Map.Entry<K, V>> delegate) {
+			m_delegate = delegate;
+		}
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public boolean hasNext() {
+			while (m_next == null) {
+				if (!m_delegate.hasNext()) {
+					if (m_indexDone) {
+						break;
+					}
+					/**
+					 * A key whose new entry has been added behind this iterator while its
+					 * previous entry was removed ahead of it is still to be returned.
+					 */
+					m_indexDone = true;
+					m_delegate = m_entries.values().iterator();
+					continue;
+				}
+				final K key = m_delegate.next().getKey();
+				/**
+				 * The entry met may have been replaced, or may be about to replace the
+				 * current one: in both cases, the key is in this map with its current
+				 * entry.
+				 */
+				final Map.Entry<K, V> current = m_entries.get(key);
+				if (current != null && m_seen.add(key)) {
+					m_next = current;
+				}
+			}
+			return m_next != null;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			m_last = m_next;
+			m_next = null;
+			return m_last;
+		}
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public void remove() {
+			checkState(m_last != null);
+			ConcurrentKeyValueOrderedMap.this.remove(m_last.getKey(), m_last.getValue());
+			m_last = null;
+		}
+	}
+
+	static public <K, V> ConcurrentKeyValueOrderedMap<K, V> create(Comparator<Map.Entry<K, V>> comparator) {
+		return new ConcurrentKeyValueOrderedMap<K, V>(comparator, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param comparator not {@code null}.
+	 * @param stripes    the number of locks among which the keys are spread,
+	 *                   positive.
+	 * @return a new empty map.
+	 */
+	static public <K, V> ConcurrentKeyValueOrderedMap<K, V> create(Comparator<Map.Entry<K, V>> comparator,
+			int stripes) {
+		return new ConcurrentKeyValueOrderedMap<K, V>(comparator, stripes);
+	}
+
+	/**
+	 * The current entry of each key.
+	 */
+	private final ConcurrentMap<K, Map.Entry<K, V>> m_entries = new ConcurrentHashMap<K, Map.Entry<K, V>>();
+
+	/**
+	 * Contains, for each key, its current entry or an entry comparing equal to it,
+	 * and, transiently, entries being replaced.
+	 */
+	private final ConcurrentSkipListSet<Map.Entry<K, V>> m_index;
+
+	private final Striped<Lock> m_locks;
+
+	private final Set<Map.Entry<K, V>> m_entrySet = new AbstractSet<Map.Entry<K, V>>() {
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntryIterator(m_index.iterator());
+		}
+
+		@Override
+		public int size() {
+			return m_entries.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Map.Entry<?, ?>)) {
+				return false;
+			}
+			final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			final Map.Entry<K, V> current = m_entries.get(entry.getKey());
+			return current != null && current.getValue().equals(entry.getValue());
+		}
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public boolean remove(Object o) {
+			if (!(o instanceof Map.Entry<?, ?>)) {
+				return false;
+			}
+			final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			return ConcurrentKeyValueOrderedMap.this.remove(entry.getKey(), entry.getValue());
+		}
+	};
+
+	private ConcurrentKeyValueOrderedMap(Comparator<Map.Entry<K, V>> comparator, int stripes) {
+		checkArgument(stripes > 0);
+		m_index = new ConcurrentSkipListSet<Map.Entry<K, V>>(checkNotNull(comparator));
+		m_locks = Striped.lock(stripes);
+	}
+
+	/**
+	 * Sets the given value as the current one of the given key, the lock of that
+	 * key being held.
+	 *
+	 * @param previous the current entry of the key, or {@code null}.
+	 * @return the previous value, or {@code null}.
+	 */
+	private V replaceLocked(K key, Map.Entry<K, V> previous, V value) {
+		if (previous != null && previous.getValue().equals(value)) {
+			return value;
+		}
+		final Map.Entry<K, V> entry = CollectionUtils.newEntry(key, value);
+		if (previous != null && m_index.comparator().compare(previous, entry) == 0) {
+			/** The previous entry stays in the index, at the place of the new one. */
+			m_entries.put(key, entry);
+			return previous.getValue();
+		}
+		checkArgument(m_index.add(entry), "The comparator does not order " + entry + " and an other entry.");
+		m_entries.put(key, entry);
+		if (previous == null) {
+			return null;
+		}
+		final boolean removed = m_index.remove(previous);
+		assert removed;
+		return previous.getValue();
+	}
+
+	private void removeLocked(Map.Entry<K, V> entry) {
+		final boolean removed = m_entries.remove(entry.getKey(), entry);
+		assert removed;
+		final boolean removedFromIndex = m_index.remove(entry);
+		assert removedFromIndex;
+	}
+
+	@Override
+	public V get(Object key) {
+		final Map.Entry<K, V> entry = m_entries.get(key);
+		return entry == null ? null : entry.getValue();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return m_entries.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return m_entries.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_entries.isEmpty();
+	}
+
+	@Override
+	public V put(K key, V value) {
+		checkNotNull(key);
+		checkNotNull(value);
+		final Lock lock = m_locks.get(key);
+		lock.lock();
+		try {
+			return replaceLocked(key, m_entries.get(key), value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		checkNotNull(key);
+		checkNotNull(value);
+		final Lock lock = m_locks.get(key);
+		lock.lock();
+		try {
+			final Map.Entry<K, V> previous = m_entries.get(key);
+			if (previous != null) {
+				return previous.getValue();
+			}
+			return replaceLocked(key, null, value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		checkNotNull(key);
+		checkNotNull(value);
+		final Lock lock = m_locks.get(key);
+		lock.lock();
+		try {
+			final Map.Entry<K, V> previous = m_entries.get(key);
+			if (previous == null) {
+				return null;
+			}
+			return replaceLocked(key, previous, value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		checkNotNull(key);
+		checkNotNull(oldValue);
+		checkNotNull(newValue);
+		final Lock lock = m_locks.get(key);
+		lock.lock();
+		try {
+			final Map.Entry<K, V> previous = m_entries.get(key);
+			if (previous == null || !previous.getValue().equals(oldValue)) {
+				return false;
+			}
+			replaceLocked(key, previous, newValue);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		if (key == null) {
+			return null;
+		}
+		final Lock lock = m_locks.get(key);
+		lock.lock();
+		try {
+			final Map.Entry<K, V> previous = m_entries.get(key);
+			if (previous == null) {
+				return null;
+			}
+			removeLocked(previous);
+			return previous.getValue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		if (key == null) {
+			return false;
+		}
+		final Lock lock = m_locks.get(key);
+		lock.lock();
+		try {
+			final Map.Entry<K, V> previous = m_entries.get(key);
+			if (previous == null || !Objects.equal(previous.getValue(), value)) {
+				return false;
+			}
+			removeLocked(previous);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all the entries that are in this map when this method starts. The
+	 * entries being put concurrently may remain.
+	 */
+	@Override
+	public void clear() {
+		for (K key : m_entries.keySet()) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * Returns a weakly consistent view of the entries, in increasing order.
+	 *
+	 * @return not {@code null}.
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return m_entrySet;
+	}
+
+	/**
+	 * @return the lowest entry, or {@code null} if this map is empty.
+	 */
+	public Map.Entry<K, V> firstEntry() {
+		final Iterator<Map.Entry<K, V>> iterator = new EntryIterator(m_index.iterator());
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	/**
+	 * @return the highest entry, or {@code null} if this map is empty.
+	 */
+	public Map.Entry<K, V> lastEntry() {
+		final Iterator<Map.Entry<K, V>> iterator = new EntryIterator(m_index.descendingIterator());
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	/**
+	 * Retrieves the highest entries, in decreasing order, each key appearing at
+	 * most once. The entries are read without locking, thus, when other threads
+	 * modify this map, the result may mix entries read before and after some of
+	 * these modifications, and may miss an entry whose value changed during the
+	 * call.
+	 *
+	 * @param k a non negative number.
+	 * @return not {@code null}, the k highest entries, or all the entries if this
+	 *         map is smaller.
+	 */
+	public List<Map.Entry<K, V>> snapshotTopK(int k) {
+		checkArgument(k >= 0);
+		final List<Map.Entry<K, V>> top = Lists.newArrayListWithCapacity(Math.min(k, 16));
+		final Iterator<Map.Entry<K, V>> iterator = new EntryIterator(m_index.descendingIterator());
+		for (int i = 0; i < k && iterator.hasNext(); ++i) {
+			top.add(iterator.next());
+		}
+		/** A value changed during the iteration may be out of place. */
+		return Ordering.from(m_index.comparator()).reverse().immutableSortedCopy(top);
+	}
+}
@@ -1,14 +1,17 @@
 package org.decision_deck.utils.collection.extensional_order;
 
-import java.util.Collection;
+import static com.google.common.base.Preconditions.checkState;
+
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.SortedSet;
 
-import com.google.common.collect.BiMap;
+import org.decision_deck.utils.collection.OrderStatisticTree;
+
+import com.google.common.base.Objects;
 import com.google.common.collect.ForwardingMap;
-import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
 
 /**
  * <p>
@@ -25,6 +28,19 @@ import com.google.common.collect.HashBiMap;
  * This comparator imposes orderings that are consistent with equals.
  * </p>
  * <p>
+ * Each element is given a {@code long} label, the labels increasing with the
+ * order, with gaps left between them. Comparing two elements thus takes one
+ * lookup per element and a primitive comparison. Adding an element between two
+ * others takes the middle of the gap between their labels; when there is no
+ * gap, the labels of a small range of neighbouring elements are spread, so that
+ * adding an element takes an amortized time logarithmic in the number of
+ * elements, instead of renumbering all higher elements. The elements are also
+ * kept in an {@link OrderStatisticTree}, so that the position of an element, from
+ * zero, and the element at a given position are found in logarithmic time,
+ * without comparing elements. The full view of this object as a map is
+ * computed only when requested.
+ * </p>
+ * <p>
  * The {@code null} element counts as a normal element for this comparator.
  * </p>
  *
@@ -88,46 +104,80 @@ public class ExtensionalComparator<E> extends ForwardingMap<E, Integer> implemen
 	}
 
 	/**
-	 * Last position possibly taken in the positions values. -1 when positions are
-	 * empty.
+	 * An element of the order, in the doubly linked list of elements, and
+	 * associated to a node of the tree of positions.
 	 */
-	private int m_lastPosition;
+	private static final class Node<E> {
+		private E m_element;
+
+		private long m_label;
+
+		private Node<E> m_previous;
+
+		private Node<E> m_next;
+
+		/**
+		 * The node holding this one in the tree of positions, {@code null} for the
+		 * head.
+		 */
+		private OrderStatisticTree.Node<Node<E>> m_position;
+
+		private Node(E element) {
+			m_element = element;
+		}
+	}
 
 	/**
-	 * Orderings are consistent with equals as the map guarantees that objects are
-	 * equal iff they have the same position. The {@code null} key is accepted.
+	 * Labels are in [0, LABELS_LIMIT).
 	 */
-	private final BiMap<E, Integer> m_positions;
+	private static final long LABELS_LIMIT = 1L << 62;
 
-	private ExtensionalComparator() {
-		/** Default constructor. */
-		m_lastPosition = -1;
-		m_positions = HashBiMap.create();
-	}
+	/**
+	 * The label distance left between elements added at either end of the order,
+	 * when possible.
+	 */
+	private static final long STRIDE = 1L << 32;
 
 	/**
-	 * Creates a new object initialized with the given collection, in order of
-	 * iteration. The content of the collection is used to define the universe of
-	 * objects this comparator accepts, and the order of iteration on the given
-	 * collection is used to define the order on the universe of objects.
-	 * 
-	 * @param order not {@code null}. May be empty (in which case this
-	 *              comparator will not be able to compare any objects until
-	 *              elements are added). One of the collection element may be
-	 *              {@code null} element (which counts as a normal element for
-	 *              this comparator). The collection may not contain duplicate
-	 *              elements. It is recommended to use a {@link SortedSet} when
-	 *              possible to ensure a correct iteration order and no duplicate.
+	 * The base of the density thresholds: a range of 2<sup>i</sup> labels may
+	 * contain at most (2 / DENSITY_BASE)<sup>i</sup> elements, after an insertion,
+	 * without having to be widened before being relabelled.
 	 */
-	private ExtensionalComparator(Collection<E> order) {
-		if (order == null) {
-			throw new NullPointerException();
-		}
-		m_positions = HashBiMap.create(order.size());
-		m_lastPosition = -1;
-		for (E e : order) {
-			addAsHighest(e);
-		}
+	private static final double DENSITY_BASE = 1.5d;
+
+	/**
+	 * The sentinel of the circular list of elements, in increasing label order.
+	 * Its label is not used: it counts as a label lower than every label when it
+	 * precedes an element, and as {@link #LABELS_LIMIT} when it follows one.
+	 */
+	private final Node<E> m_head;
+
+	/**
+	 * The nodes, in order.
+	 */
+	private final OrderStatisticTree<Node<E>> m_tree;
+
+	/**
+	 * Orderings are consistent with equals as the map guarantees that objects are
+	 * equal iff they have the same node, thus the same label. The {@code null} key
+	 * is accepted.
+	 */
+	private final Map<E, Node<E>> m_nodes;
+
+	/**
+	 * The positions view, or {@code null} if it has not been computed since the
+	 * last modification.
+	 */
+	private Map<E, Integer> m_positions;
+
+	private ExtensionalComparator() {
+		/** Default constructor. */
+		m_head = new Node<E>(null);
+		m_head.m_previous = m_head;
+		m_head.m_next = m_head;
+		m_nodes = Maps.newHashMap();
+		m_tree = new OrderStatisticTree<Node<E>>();
+		m_positions = null;
 	}
 
 	/**
@@ -145,11 +195,10 @@ public class ExtensionalComparator<E> extends ForwardingMap<E, Integer> implemen
 	 *              possible to ensure a correct iteration order and no duplicate.
 	 */
 	private ExtensionalComparator(Iterable<E> order) {
+		this();
 		if (order == null) {
 			throw new NullPointerException();
 		}
-		m_positions = HashBiMap.create();
-		m_lastPosition = -1;
 		for (E e : order) {
 			addAsHighest(e);
 		}
@@ -165,18 +214,11 @@ public class ExtensionalComparator<E> extends ForwardingMap<E, Integer> implemen
 	 *              normal element), must not already be in this object.
 	 */
 	public void addAfter(E lower, E elem) {
-		/**
-		 * Currently, we shift all positions after the element to add to make some
-		 * space. NB this could be implemented much more efficiently, with an interval
-		 * between each positions to leave some holes.
-		 */
-
-		final Integer previousPos = m_positions.get(lower);
-		if (previousPos == null) {
+		final Node<E> previous = m_nodes.get(lower);
+		if (previous == null) {
 			throw new IllegalArgumentException("Previous element " + lower + " is not found in this object.");
 		}
-		final int prev = previousPos.intValue();
-		putAt(elem, prev + 1);
+		insertAfter(previous, elem);
 	}
 
 	/**
@@ -187,24 +229,20 @@ public class ExtensionalComparator<E> extends ForwardingMap<E, Integer> implemen
 	 *             already in the set of known objects.
 	 */
 	public void addAsHighest(E elem) {
-		if (m_positions.containsKey(elem)) {
-			throw new IllegalArgumentException("Given element " + elem + " is already in the set of elements.");
-		}
-		++m_lastPosition;
-		final Integer lastPosition = Integer.valueOf(m_lastPosition);
-		assert !m_positions.containsValue(lastPosition) : "Error adding " + elem + ", supposedly new position number "
-				+ m_lastPosition + " already used.";
-		m_positions.put(elem, lastPosition);
+		insertAfter(m_head.m_previous, elem);
 	}
 
 	public void addAsLowest(E elem) {
-		putAt(elem, 0);
+		insertAfter(m_head, elem);
 	}
 
 	@Override
 	public void clear() {
-		m_positions.clear();
-		m_lastPosition = -1;
+		m_nodes.clear();
+		m_head.m_previous = m_head;
+		m_head.m_next = m_head;
+		m_tree.clear();
+		m_positions = null;
 	}
 
 	/**
@@ -225,28 +263,82 @@ public class ExtensionalComparator<E> extends ForwardingMap<E, Integer> implemen
 	 */
 	@Override
 	public int compare(E o1, E o2) {
-		final Integer pos1 = m_positions.get(o1);
-		if (pos1 == null) {
+		final Node<E> node1 = m_nodes.get(o1);
+		if (node1 == null) {
 			throw new IllegalStateException("Object is not in defined universe: " + o1 + ".");
 		}
-		final Integer pos2 = m_positions.get(o2);
-		if (pos2 == null) {
+		final Node<E> node2 = m_nodes.get(o2);
+		if (node2 == null) {
 			throw new IllegalStateException("Object is not in defined universe: " + o2 + ".");
 		}
-		return pos1.compareTo(pos2);
+		return Long.compare(node1.m_label, node2.m_label);
 	}
 
 	public boolean contains(Object o) {
-		return m_positions.containsKey(o);
+		return m_nodes.containsKey(o);
 	}
 
+	@Override
+	public boolean containsKey(Object key) {
+		return m_nodes.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return m_nodes.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_nodes.isEmpty();
+	}
+
+	/**
+	 * Retrieves the position of the given element, that is, the number of elements
+	 * lower than the given one. This takes a time logarithmic in the number of
+	 * elements.
+	 * 
+	 * @param element {@code null} is allowed.
+	 * @return {@code null} iff the given element is not in this object.
+	 */
 	@Override
 	public Integer get(Object element) {
-		return m_positions.get(element);
+		final int position = indexOf(element);
+		return position == -1 ? null : Integer.valueOf(position);
 	}
 
 	/**
-	 * Removes an element from this ordering if it is present.
+	 * Retrieves the position of the given element, that is, the number of elements
+	 * lower than the given one, in a time logarithmic in the number of elements.
+	 * 
+	 * @param element {@code null} is allowed.
+	 * @return the position, or {@code -1} iff the given element is not in this
+	 *         object.
+	 */
+	int indexOf(Object element) {
+		final Node<E> node = m_nodes.get(element);
+		if (node == null) {
+			return -1;
+		}
+		return m_tree.getIndex(node.m_position);
+	}
+
+	/**
+	 * Retrieves the element at the given position, in a time logarithmic in the
+	 * number of elements.
+	 * 
+	 * @param position non negative, lower than the number of elements.
+	 * @return the element, possibly {@code null}.
+	 * @throws IndexOutOfBoundsException if the position is out of bounds.
+	 */
+	E getElement(int position) {
+		return m_tree.getNode(position).getValue().m_element;
+	}
+
+	/**
+	 * Removes an element from this ordering if it is present. This takes a time
+	 * logarithmic in the number of elements; use {@link #discard(Object)} when the
+	 * position is not needed.
 	 * 
 	 * @param o {@code null} is allowed.
 	 * @return the previous rank associated with key, or null if there was no
@@ -254,46 +346,153 @@ public class ExtensionalComparator<E> extends ForwardingMap<E, Integer> implemen
 	 */
 	@Override
 	public Integer remove(Object o) {
-		final Integer removed = m_positions.remove(o);
-		// if (removed != null && removed.intValue() == m_lastPosition) {
-		// --m_lastPosition;
-		// }
+		final Integer removed = get(o);
+		if (removed != null) {
+			discard(o);
+		}
 		return removed;
 	}
 
+	/**
+	 * Removes an element from this ordering if it is present, in constant time.
+	 * 
+	 * @param o {@code null} is allowed.
+	 * @return {@code true} iff the element was in this ordering.
+	 */
+	boolean discard(Object o) {
+		if (!m_nodes.containsKey(o)) {
+			return false;
+		}
+		final Node<E> node = m_nodes.remove(o);
+		node.m_previous.m_next = node.m_next;
+		node.m_next.m_previous = node.m_previous;
+		m_tree.remove(node.m_position);
+		node.m_position = null;
+		m_positions = null;
+		return true;
+	}
+
 	public void replaceElement(E oldElement, E newElement) {
-		final Integer pos = m_positions.remove(oldElement);
-		if (pos == null) {
+		if (!m_nodes.containsKey(oldElement)) {
 			throw new IllegalStateException("Unknown element: " + oldElement + ".");
 		}
-		m_positions.put(newElement, pos);
+		if (m_nodes.containsKey(newElement) && !Objects.equal(oldElement, newElement)) {
+			throw new IllegalArgumentException("Given element " + newElement + " is already in the set of elements.");
+		}
+		final Node<E> node = m_nodes.remove(oldElement);
+		node.m_element = newElement;
+		m_nodes.put(newElement, node);
+		m_positions = null;
 	}
 
-	private void putAt(E elem, final int pos) {
-		final Integer addedPos = Integer.valueOf(pos);
-		if (!m_positions.containsValue(addedPos)) {
-			m_positions.put(elem, addedPos);
-			if (pos >= m_lastPosition) {
-				++m_lastPosition;
-			}
+	/**
+	 * Inserts the given element just after the given node, or as the lowest
+	 * element if the given node is the head. The new label is taken in the middle
+	 * of the gap between the neighbouring labels, or at a distance
+	 * {@link #STRIDE} of the neighbour when inserting at either end. When there is
+	 * no gap, the neighbouring labels are first spread.
+	 */
+	private void insertAfter(Node<E> previous, E elem) {
+		if (m_nodes.containsKey(elem)) {
+			throw new IllegalArgumentException("Given element " + elem + " is already in the set of elements.");
+		}
+		final Node<E> node = new Node<E>(elem);
+		if (previous == m_head && previous.m_next == m_head) {
+			node.m_label = LABELS_LIMIT / 2;
 		} else {
-			/**
-			 * Have to iterate over the map in decreasing position order otherwise the
-			 * incremented values we add are considered again just after being added.
-			 */
-			for (int i = m_lastPosition; i >= pos; --i) {
-				final E elemToInc = m_positions.inverse().get(Integer.valueOf(i));
-				if (elemToInc != null) {
-					m_positions.put(elemToInc, Integer.valueOf(i + 1));
+			if (getUpperBound(previous) - getLowerBound(previous) < 2) {
+				relabel(previous == m_head ? m_head.m_next : previous);
+			}
+			final long low = getLowerBound(previous);
+			final long high = getUpperBound(previous);
+			assert high - low >= 2;
+			if (previous == m_head && high >= STRIDE) {
+				node.m_label = high - STRIDE;
+			} else if (previous.m_next == m_head && LABELS_LIMIT - low > STRIDE) {
+				node.m_label = low + STRIDE;
+			} else {
+				node.m_label = low + (high - low) / 2;
+			}
+		}
+		node.m_previous = previous;
+		node.m_next = previous.m_next;
+		previous.m_next.m_previous = node;
+		previous.m_next = node;
+		node.m_position = m_tree.insertAfter(previous.m_position, node);
+		m_nodes.put(elem, node);
+		m_positions = null;
+	}
+
+	/**
+	 * @return the label of the given node, or -1 if it is the head.
+	 */
+	private long getLowerBound(Node<E> node) {
+		return node == m_head ? -1 : node.m_label;
+	}
+
+	/**
+	 * @return the label of the node following the given one, or
+	 *         {@link #LABELS_LIMIT} if it is the head.
+	 */
+	private long getUpperBound(Node<E> node) {
+		return node.m_next == m_head ? LABELS_LIMIT : node.m_next.m_label;
+	}
+
+	/**
+	 * Spreads evenly the labels of the smallest aligned range of labels around the
+	 * given node whose density is low enough (as in the order-maintenance
+	 * structure of Bender et al., after Dietz and Sleator), so that a gap of at
+	 * least two is left around each of them. Relabelling takes an amortized time
+	 * logarithmic in the number of elements.
+	 *
+	 * @param node not the head.
+	 */
+	private void relabel(Node<E> node) {
+		assert node != m_head;
+		Node<E> first = node;
+		Node<E> last = node;
+		int count = 1;
+		for (int bits = 1; bits <= 62; ++bits) {
+			final long size = 1L << bits;
+			final long low = node.m_label & -size;
+			final long high = low + size;
+			while (first.m_previous != m_head && first.m_previous.m_label >= low) {
+				first = first.m_previous;
+				++count;
+			}
+			while (last.m_next != m_head && last.m_next.m_label < high) {
+				last = last.m_next;
+				++count;
+			}
+			if (bits == 62 || count + 1 <= Math.pow(2d / DENSITY_BASE, bits)) {
+				final long step = size / (count + 1);
+				checkState(step >= 3, "Too many elements.");
+				long label = low + step / 2;
+				for (Node<E> current = first; current != last.m_next; current = current.m_next) {
+					current.m_label = label;
+					label += step;
 				}
+				return;
 			}
-			m_positions.put(elem, addedPos);
-			++m_lastPosition;
 		}
+		throw new AssertionError();
 	}
 
+	/**
+	 * Returns the positions of the elements, as an unmodifiable map, computed
+	 * lazily and kept until this object is modified.
+	 */
 	@Override
 	protected Map<E, Integer> delegate() {
-		return Collections.unmodifiableMap(m_positions);
+		if (m_positions == null) {
+			final Map<E, Integer> positions = Maps.newLinkedHashMap();
+			int position = 0;
+			for (Node<E> node = m_head.m_next; node != m_head; node = node.m_next) {
+				positions.put(node.m_element, Integer.valueOf(position));
+				++position;
+			}
+			m_positions = Collections.unmodifiableMap(positions);
+		}
+		return m_positions;
 	}
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package org.decision_deck.utils.collection.extensional_order;
 
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NavigableSet;
+import java.util.RandomAccess;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -32,6 +38,12 @@ import com.google.common.collect.Sets;
  * must be known to proceed.
  * </p>
  * <p>
+ * The elements may also be accessed by position, through {@link #get(int)},
+ * {@link #indexOf(Object)} and {@link #subList(int, int)}. These methods use the
+ * order-statistic tree of the comparator defining this order, and thus do not
+ * compare elements.
+ * </p>
+ * <p>
  * This class conceptually relates to Apache Commons' ListOrderedSet and to an
  * <a href="https://gist.github.com/1331347">InsertionOrderedSet</a>
  * implementation found on the web.
@@ -51,7 +63,7 @@ public class ExtentionalTotalOrder<E> extends ForwardingNavigableSet<E> implemen
 		@SuppressWarnings("synthetic-access")
 		@Override
 		protected void remove(E e) {
-			m_comparator.remove(e);
+			m_comparator.discard(e);
 		}
 	}
 
@@ -66,6 +78,39 @@ public class ExtentionalTotalOrder<E> extends ForwardingNavigableSet<E> implemen
 		}
 	}
 
+	/**
+	 * A read-only view of the elements between two positions.
+	 */
+	private class Positions extends AbstractList<E> implements RandomAccess {
+		private final int m_from;
+
+		private final int m_size;
+
+		public Positions(int from, int to) {
+			m_from = from;
+			m_size = to - from;
+		}
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public E get(int index) {
+			checkElementIndex(index, m_size);
+			return m_comparator.getElement(m_from + index);
+		}
+
+		@Override
+		public int size() {
+			return m_size;
+		}
+
+		@SuppressWarnings("synthetic-access")
+		@Override
+		public List<E> subList(int fromIndex, int toIndex) {
+			checkPositionIndexes(fromIndex, toIndex, m_size);
+			return new Positions(m_from + fromIndex, m_from + toIndex);
+		}
+	}
+
 	static public <E> ExtentionalTotalOrder<E> create() {
 		@SuppressWarnings("deprecation")
 		/**
@@ -216,6 +261,52 @@ public class ExtentionalTotalOrder<E> extends ForwardingNavigableSet<E> implemen
 		return standardContainsAll(c);
 	}
 
+	/**
+	 * Retrieves the element at the given position, the lowest element being at
+	 * position zero. This takes a time logarithmic in the size of this set, and
+	 * does not compare elements.
+	 * 
+	 * @param index non negative, lower than the size of this set.
+	 * @return the element, possibly {@code null} if the {@code null} element is
+	 *         in this set.
+	 * @throws IndexOutOfBoundsException if the index is out of bounds.
+	 */
+	public E get(int index) {
+		return m_comparator.getElement(index);
+	}
+
+	/**
+	 * Retrieves the position of the given element, that is, the number of elements
+	 * lower than it in this set. This takes a time logarithmic in the size of this
+	 * set, and does not compare elements.
+	 * 
+	 * @param o {@code null} is allowed.
+	 * @return the position, or {@code -1} iff the given element is not in this
+	 *         set.
+	 */
+	public int indexOf(Object o) {
+		return m_comparator.indexOf(o);
+	}
+
+	/**
+	 * Returns a read-only view of the elements of this set from the given
+	 * position, inclusive, to the given position, exclusive, in increasing order.
+	 * The view is created in constant time and reads the elements by position,
+	 * each in a time logarithmic in the size of this set. As with
+	 * {@link List#subList(int, int)}, the view is undefined once the size of this
+	 * set changes.
+	 * 
+	 * @param fromIndex non negative.
+	 * @param toIndex   not lower than the first index, and not greater than the
+	 *                  size of this set.
+	 * @return not {@code null}.
+	 * @throws IndexOutOfBoundsException if the indexes are out of bounds.
+	 */
+	public List<E> subList(int fromIndex, int toIndex) {
+		checkPositionIndexes(fromIndex, toIndex, m_comparator.size());
+		return new Positions(fromIndex, toIndex);
+	}
+
 	@Override
 	public Iterator<E> descendingIterator() {
 		return new Decorated(m_delegate.descendingIterator());
@@ -255,8 +346,7 @@ public class ExtentionalTotalOrder<E> extends ForwardingNavigableSet<E> implemen
 	@Override
 	public boolean remove(Object o) {
 		final boolean removed = m_delegate.remove(o);
-		final Integer removedInt = m_comparator.remove(o);
-		final boolean removedAgain = removedInt != null;
+		final boolean removedAgain = m_comparator.discard(o);
 		assert removed == removedAgain;
 		return removed;
 	}
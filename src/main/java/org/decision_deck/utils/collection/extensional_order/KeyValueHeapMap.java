@@ -0,0 +1,406 @@
+package org.decision_deck.utils.collection.extensional_order;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+
+import org.decision_deck.utils.collection.CollectionUtils;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.collect.ForwardingNavigableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+/**
+ * <p>
+ * A navigable map whose sorting logic is based on values as well as keys, meant
+ * for maps whose values are frequently updated while only the lowest and
+ * highest entries are queried. This is an alternative to
+ * {@link KeyValueOrderedMap}, which reinserts a key in its tree at each change
+ * of value.
+ * </p>
+ * <p>
+ * The entries are kept in two indexed binary heaps, one with the lowest entry
+ * at its root and one with the highest entry at its root; each entry knows its
+ * position in both heaps. The entries are compared directly, without building
+ * new entry objects. Setting a new value to an existing key moves the entry up
+ * or down both heaps, in a time logarithmic in the size of this map. The first
+ * and last entries are obtained in constant time; polling them takes a
+ * logarithmic time. Adding a number of entries at least equal to the size of
+ * this map through {@link #putAll(Map)} rebuilds the heaps in a time linear in
+ * the new size of this map, instead of adding the entries one by one.
+ * </p>
+ * <p>
+ * The other navigation methods, the views and the iteration are served by a
+ * sorted, immutable copy of this map, which is built, with a single sort, the
+ * first time it is needed after a modification. The views are thus read-only,
+ * and they do not reflect later changes of this map.
+ * </p>
+ * <p>
+ * This map does not accept {@code null} keys or values. The entry comparator
+ * must order every two entries with different keys, otherwise building the
+ * sorted copy fails. As the comparator of {@link KeyValueOrderedMap}, the
+ * comparator of this map may only be used to compare keys known to this map.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <K> the type of keys maintained by this map.
+ * @param <V> the type of mapped values.
+ */
+public class KeyValueHeapMap<K, V> extends ForwardingNavigableMap<K, V> {
+
+	/**
+	 * An entry of this map, whose value changes when a new value is put for its
+	 * key.
+	 */
+	private static final class HeapEntry<K, V> extends SimpleEntry<K, V> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The position of this entry in the heap of lowest entries.
+		 */
+		private int m_lowIndex;
+
+		/**
+		 * The position of this entry in the heap of highest entries.
+		 */
+		private int m_highIndex;
+
+		public HeapEntry(K key, V value) {
+			super(key, value);
+		}
+	}
+
+	/**
+	 * A binary heap of entries, whose root is the lowest entry, or the highest one.
+	 */
+	private final class Heap {
+		private final List<HeapEntry<K, V>> m_entries = new ArrayList<HeapEntry<K, V>>();
+
+		private final boolean m_highest;
+
+		public Heap(boolean highest) {
+			m_highest = highest;
+		}
+
+		/**
+		 * @return a positive number iff the first entry must be below the second one
+		 *         in this heap.
+		 */
+		@SuppressWarnings("synthetic-access")
+		private int compare(HeapEntry<K, V> entry1, HeapEntry<K, V> entry2) {
+			final int comparison = m_comparator.compare(entry1, entry2);
+			return m_highest ? -comparison : comparison;
+		}
+
+		private void set(int index, HeapEntry<K, V> entry) {
+			m_entries.set(index, entry);
+			if (m_highest) {
+				entry.m_highIndex = index;
+			} else {
+				entry.m_lowIndex = index;
+			}
+		}
+
+		private int indexOf(HeapEntry<K, V> entry) {
+			return m_highest ? entry.m_highIndex : entry.m_lowIndex;
+		}
+
+		public HeapEntry<K, V> getRoot() {
+			return m_entries.isEmpty() ? null : m_entries.get(0);
+		}
+
+		public void add(HeapEntry<K, V> entry) {
+			m_entries.add(entry);
+			siftUp(m_entries.size() - 1, entry);
+		}
+
+		/**
+		 * Adds the given entry at the end of the heap, without restoring the heap
+		 * order.
+		 */
+		public void append(HeapEntry<K, V> entry) {
+			m_entries.add(entry);
+			set(m_entries.size() - 1, entry);
+		}
+
+		public void heapify() {
+			for (int index = m_entries.size() / 2 - 1; index >= 0; --index) {
+				siftDown(index, m_entries.get(index));
+			}
+		}
+
+		public void remove(HeapEntry<K, V> entry) {
+			final int index = indexOf(entry);
+			final HeapEntry<K, V> last = m_entries.remove(m_entries.size() - 1);
+			if (last != entry) {
+				set(index, last);
+				update(last);
+			}
+		}
+
+		/**
+		 * Restores the heap order after the value of the given entry changed.
+		 */
+		public void update(HeapEntry<K, V> entry) {
+			final int index = indexOf(entry);
+			if (index > 0 && compare(m_entries.get((index - 1) / 2), entry) > 0) {
+				siftUp(index, entry);
+			} else {
+				siftDown(index, entry);
+			}
+		}
+
+		private void siftUp(int start, HeapEntry<K, V> entry) {
+			int index = start;
+			while (index > 0) {
+				final int parentIndex = (index - 1) / 2;
+				final HeapEntry<K, V> parent = m_entries.get(parentIndex);
+				if (compare(parent, entry) <= 0) {
+					break;
+				}
+				set(index, parent);
+				index = parentIndex;
+			}
+			set(index, entry);
+		}
+
+		private void siftDown(int start, HeapEntry<K, V> entry) {
+			final int size = m_entries.size();
+			int index = start;
+			while (2 * index + 1 < size) {
+				int childIndex = 2 * index + 1;
+				HeapEntry<K, V> child = m_entries.get(childIndex);
+				if (childIndex + 1 < size && compare(child, m_entries.get(childIndex + 1)) > 0) {
+					++childIndex;
+					child = m_entries.get(childIndex);
+				}
+				if (compare(entry, child) <= 0) {
+					break;
+				}
+				set(index, child);
+				index = childIndex;
+			}
+			set(index, entry);
+		}
+	}
+
+	static public <K, V> KeyValueHeapMap<K, V> create(Comparator<Entry<K, V>> comparator) {
+		return new KeyValueHeapMap<K, V>(comparator);
+	}
+
+	private final Ordering<Map.Entry<K, V>> m_comparator;
+
+	private final Map<K, HeapEntry<K, V>> m_entries = Maps.newHashMap();
+
+	private final Heap m_lowest = new Heap(false);
+
+	private final Heap m_highest = new Heap(true);
+
+	/**
+	 * The sorted copy of this map, or {@code null} if it has not been built since
+	 * the last modification.
+	 */
+	private NavigableMap<K, V> m_sorted;
+
+	private KeyValueHeapMap(Comparator<Map.Entry<K, V>> comparator) {
+		m_comparator = Ordering.from(comparator);
+		m_sorted = null;
+	}
+
+	/**
+	 * Returns the sorted copy of this map, building it if necessary.
+	 */
+	@Override
+	protected NavigableMap<K, V> delegate() {
+		if (m_sorted == null) {
+			final Map<K, V> values = Maps.newHashMap();
+			final Map<K, Map.Entry<K, V>> frozen = Maps.newHashMap();
+			for (HeapEntry<K, V> entry : m_entries.values()) {
+				values.put(entry.getKey(), entry.getValue());
+				frozen.put(entry.getKey(), CollectionUtils.newEntry(entry.getKey(), entry.getValue()));
+			}
+			final Ordering<K> keyOrdering = m_comparator.onResultOf(new Function<K, Map.Entry<K, V>>() {
+				@Override
+				public Map.Entry<K, V> apply(K input) {
+					final Map.Entry<K, V> entry = frozen.get(input);
+					if (entry == null) {
+						throw new IllegalArgumentException("Unknown key: " + input + ".");
+					}
+					return entry;
+				}
+			});
+			m_sorted = ImmutableSortedMap.copyOf(values, keyOrdering);
+		}
+		return m_sorted;
+	}
+
+	@Override
+	public int size() {
+		return m_entries.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_entries.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return m_entries.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (HeapEntry<K, V> entry : m_entries.values()) {
+			if (Objects.equal(entry.getValue(), value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		final HeapEntry<K, V> entry = m_entries.get(key);
+		return entry == null ? null : entry.getValue();
+	}
+
+	/**
+	 * Associates the given value to the given key. If the key is already in this
+	 * map, its entry moves up or down, in a time logarithmic in the size of this
+	 * map.
+	 *
+	 * @param key   not {@code null}.
+	 * @param value not {@code null}.
+	 * @return the previous value, or {@code null} iff the key was not in this
+	 *         map.
+	 */
+	@Override
+	public V put(K key, V value) {
+		checkNotNull(key);
+		checkNotNull(value);
+		m_sorted = null;
+		final HeapEntry<K, V> existing = m_entries.get(key);
+		if (existing != null) {
+			final V old = existing.setValue(value);
+			m_lowest.update(existing);
+			m_highest.update(existing);
+			return old;
+		}
+		final HeapEntry<K, V> entry = new HeapEntry<K, V>(key, value);
+		m_entries.put(key, entry);
+		m_lowest.add(entry);
+		m_highest.add(entry);
+		return null;
+	}
+
+	/**
+	 * Puts all the given entries in this map. When the given map is at least as
+	 * large as this one, the new entries are appended to the heaps, which are then
+	 * rebuilt in a time linear in the new size of this map.
+	 *
+	 * @param map not {@code null}, containing no {@code null} keys or values.
+	 */
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		if (map.size() < m_entries.size()) {
+			standardPutAll(map);
+			return;
+		}
+		m_sorted = null;
+		for (Map.Entry<? extends K, ? extends V> newEntry : map.entrySet()) {
+			final K key = checkNotNull(newEntry.getKey());
+			final V value = checkNotNull(newEntry.getValue());
+			final HeapEntry<K, V> existing = m_entries.get(key);
+			if (existing != null) {
+				existing.setValue(value);
+				continue;
+			}
+			final HeapEntry<K, V> entry = new HeapEntry<K, V>(key, value);
+			m_entries.put(key, entry);
+			m_lowest.append(entry);
+			m_highest.append(entry);
+		}
+		m_lowest.heapify();
+		m_highest.heapify();
+	}
+
+	@Override
+	public V remove(Object key) {
+		final HeapEntry<K, V> entry = m_entries.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		m_sorted = null;
+		m_lowest.remove(entry);
+		m_highest.remove(entry);
+		return entry.getValue();
+	}
+
+	@Override
+	public void clear() {
+		m_entries.clear();
+		m_lowest.m_entries.clear();
+		m_highest.m_entries.clear();
+		m_sorted = null;
+	}
+
+	@Override
+	public Map.Entry<K, V> firstEntry() {
+		return copy(m_lowest.getRoot());
+	}
+
+	@Override
+	public Map.Entry<K, V> lastEntry() {
+		return copy(m_highest.getRoot());
+	}
+
+	@Override
+	public K firstKey() {
+		return getKey(m_lowest.getRoot());
+	}
+
+	@Override
+	public K lastKey() {
+		return getKey(m_highest.getRoot());
+	}
+
+	@Override
+	public Map.Entry<K, V> pollFirstEntry() {
+		return poll(m_lowest.getRoot());
+	}
+
+	@Override
+	public Map.Entry<K, V> pollLastEntry() {
+		return poll(m_highest.getRoot());
+	}
+
+	private Map.Entry<K, V> copy(HeapEntry<K, V> entry) {
+		return entry == null ? null : CollectionUtils.newEntry(entry.getKey(), entry.getValue());
+	}
+
+	private K getKey(HeapEntry<K, V> entry) {
+		if (entry == null) {
+			throw new NoSuchElementException();
+		}
+		return entry.getKey();
+	}
+
+	private Map.Entry<K, V> poll(HeapEntry<K, V> entry) {
+		if (entry == null) {
+			return null;
+		}
+		remove(entry.getKey());
+		return copy(entry);
+	}
+}
@@ -3,14 +3,43 @@ package org.decision_deck.utils.matrix;
 import java.util.Collections;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Table;
 
-public class ConstantMatrixFuzzy<R, C> implements SparseMatrixFuzzyRead<R, C> {
+/**
+ * <p>
+ * A complete matrix containing the same value at every position, whose rows and
+ * columns are given sets. The given sets are not copied, thus this matrix reads
+ * through to them.
+ * </p>
+ * <p>
+ * The row and column indexes follow the iteration order of the given sets, and
+ * are assigned once, when this matrix is created, so that the index based
+ * methods neither allocate nor depend on the number of rows and columns. They
+ * do not see later changes of the given sets, hence the index based methods
+ * should not be used if the given sets may change.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+public class ConstantMatrixFuzzy<R, C> implements SparseMatrixFuzzyRead<R, C>, SparseMatrixDIndexedRead<R, C> {
 
 	private final Double m_constant;
 	private final Set<R> m_rows;
 	private final Set<C> m_columns;
 
+	private final ImmutableList<R> m_rowList;
+
+	private final ImmutableList<C> m_columnList;
+
+	private final ImmutableMap<R, Integer> m_rowIndexes;
+
+	private final ImmutableMap<C, Integer> m_columnIndexes;
+
 	public ConstantMatrixFuzzy(Set<R> rows, Set<C> columns, double constant) {
 		if (rows == null || columns == null) {
 			throw new NullPointerException("" + rows + columns);
@@ -18,6 +47,10 @@ public class ConstantMatrixFuzzy<R, C> implements SparseMatrixFuzzyRead<R, C> {
 		m_rows = rows;
 		m_columns = columns;
 		m_constant = Double.valueOf(constant);
+		m_rowList = ImmutableList.copyOf(rows);
+		m_columnList = ImmutableList.copyOf(columns);
+		m_rowIndexes = SparseMatrixDCompressed.indexesOf(rows);
+		m_columnIndexes = SparseMatrixDCompressed.indexesOf(columns);
 	}
 
 	@Override
@@ -92,4 +125,67 @@ public class ConstantMatrixFuzzy<R, C> implements SparseMatrixFuzzyRead<R, C> {
 		throw new IllegalStateException("Expected value at " + row + ", " + column + ".");
 	}
 
+	@Override
+	public int rowIndex(R row) {
+		final Integer index = m_rowIndexes.get(row);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		final Integer index = m_columnIndexes.get(column);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public int getRowBound() {
+		return m_rowList.size();
+	}
+
+	@Override
+	public int getColumnBound() {
+		return m_columnList.size();
+	}
+
+	@Override
+	public R getRow(int rowIndex) {
+		return m_rowList.get(rowIndex);
+	}
+
+	@Override
+	public C getColumn(int columnIndex) {
+		return m_columnList.get(columnIndex);
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		return rowIndex >= 0 && rowIndex < getRowBound() && columnIndex >= 0 && columnIndex < getColumnBound();
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		if (!hasValue(rowIndex, columnIndex)) {
+			throw new IllegalStateException("Expected value at index " + rowIndex + ", " + columnIndex + ".");
+		}
+		return m_constant.doubleValue();
+	}
+
+	@Override
+	public boolean forEachValue(ValueVisitor visitor) {
+		if (visitor == null) {
+			throw new NullPointerException();
+		}
+		final double constant = m_constant.doubleValue();
+		final int nbRows = getRowBound();
+		final int nbColumns = getColumnBound();
+		for (int rowIndex = 0; rowIndex < nbRows; ++rowIndex) {
+			for (int columnIndex = 0; columnIndex < nbColumns; ++columnIndex) {
+				if (!visitor.visit(rowIndex, columnIndex, constant)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 }
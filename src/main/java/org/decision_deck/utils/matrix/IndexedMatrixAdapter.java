@@ -0,0 +1,137 @@
+package org.decision_deck.utils.matrix;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+import com.google.common.collect.Table.Cell;
+
+/**
+ * <p>
+ * Adapts any matrix to the {@link SparseMatrixDIndexedRead} interface. The
+ * indexes are assigned to the rows and columns that the delegate has when this
+ * object is created, thus the index based methods do not see rows or columns
+ * added to the delegate afterwards. Other methods read through to the delegate.
+ * </p>
+ * <p>
+ * Index based reading goes through the delegate's
+ * {@link SparseMatrixDRead#getEntry(Object, Object)} method, hence this adapter
+ * only spares the caller from allocations if the delegate does not allocate
+ * when reading.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+class IndexedMatrixAdapter<R, C> extends ForwardingSparseMatrixRead<R, C> implements SparseMatrixDIndexedRead<R, C> {
+
+	private final Object[] m_rows;
+
+	private final Object[] m_columns;
+
+	private final Map<R, Integer> m_rowIndexes = Maps.newHashMap();
+
+	private final Map<C, Integer> m_columnIndexes = Maps.newHashMap();
+
+	/**
+	 * @param delegate not {@code null}.
+	 */
+	IndexedMatrixAdapter(SparseMatrixDRead<R, C> delegate) {
+		super(delegate);
+		m_rows = delegate.getRows().toArray();
+		m_columns = delegate.getColumns().toArray();
+		for (int i = 0; i < m_rows.length; ++i) {
+			m_rowIndexes.put(getRow(i), Integer.valueOf(i));
+		}
+		for (int i = 0; i < m_columns.length; ++i) {
+			m_columnIndexes.put(getColumn(i), Integer.valueOf(i));
+		}
+	}
+
+	@Override
+	public int rowIndex(R row) {
+		final Integer index = m_rowIndexes.get(row);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		final Integer index = m_columnIndexes.get(column);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public int getRowBound() {
+		return m_rows.length;
+	}
+
+	@Override
+	public int getColumnBound() {
+		return m_columns.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public R getRow(int rowIndex) {
+		return (R) m_rows[rowIndex];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public C getColumn(int columnIndex) {
+		return (C) m_columns[columnIndex];
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		if (rowIndex < 0 || rowIndex >= m_rows.length || columnIndex < 0 || columnIndex >= m_columns.length) {
+			return false;
+		}
+		return delegate().getEntry(getRow(rowIndex), getColumn(columnIndex)) != null;
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		return delegate().getValue(getRow(rowIndex), getColumn(columnIndex));
+	}
+
+	@Override
+	public boolean forEachValue(ValueVisitor visitor) {
+		checkNotNull(visitor);
+		Table<R, C, Double> tableView;
+		try {
+			tableView = delegate().asTable();
+		} catch (UnsupportedOperationException exc) {
+			tableView = null;
+		}
+		if (tableView != null) {
+			for (Cell<R, C, Double> cell : tableView.cellSet()) {
+				final int rowIndex = rowIndex(cell.getRowKey());
+				final int columnIndex = columnIndex(cell.getColumnKey());
+				if (rowIndex < 0 || columnIndex < 0) {
+					continue;
+				}
+				if (!visitor.visit(rowIndex, columnIndex, cell.getValue().doubleValue())) {
+					return false;
+				}
+			}
+		} else {
+			for (int rowIndex = 0; rowIndex < m_rows.length; ++rowIndex) {
+				for (int columnIndex = 0; columnIndex < m_columns.length; ++columnIndex) {
+					final Double entry = delegate().getEntry(getRow(rowIndex), getColumn(columnIndex));
+					if (entry == null) {
+						continue;
+					}
+					if (!visitor.visit(rowIndex, columnIndex, entry.doubleValue())) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+}
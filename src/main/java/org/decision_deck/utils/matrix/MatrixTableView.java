@@ -0,0 +1,251 @@
+package org.decision_deck.utils.matrix;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicates;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+
+/**
+ * <p>
+ * A read-only view of a matrix as a table, reading through to the matrix. Every
+ * query is answered using the rows, columns and entries of the matrix, thus
+ * this view is suitable for matrixes that do not internally store a table.
+ * </p>
+ * <p>
+ * The default {@link #cellIterator()} visits every (row, column) position of
+ * the matrix, which is appropriate for dense matrixes. Sparser matrixes should
+ * override it.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+class MatrixTableView<R, C> implements Table<R, C, Double> {
+
+	private final SparseMatrixDRead<R, C> m_matrix;
+
+	/**
+	 * @param matrix not {@code null}.
+	 */
+	MatrixTableView(SparseMatrixDRead<R, C> matrix) {
+		m_matrix = checkNotNull(matrix);
+	}
+
+	/**
+	 * Iterates over the cells of the matrix. The returned iterator does not support
+	 * removal.
+	 *
+	 * @return not {@code null}.
+	 */
+	Iterator<Cell<R, C, Double>> cellIterator() {
+		final Iterator<R> rows = m_matrix.getRows().iterator();
+		return new AbstractIterator<Cell<R, C, Double>>() {
+			private R m_row;
+			private Iterator<C> m_columns = Collections.<C>emptySet().iterator();
+
+			@Override
+			protected Cell<R, C, Double> computeNext() {
+				while (true) {
+					while (m_columns.hasNext()) {
+						final C column = m_columns.next();
+						final Double entry = m_matrix.getEntry(m_row, column);
+						if (entry != null) {
+							return Tables.immutableCell(m_row, column, entry);
+						}
+					}
+					if (!rows.hasNext()) {
+						return endOfData();
+					}
+					m_row = rows.next();
+					m_columns = m_matrix.getColumns().iterator();
+				}
+			}
+		};
+	}
+
+	@Override
+	public boolean contains(Object rowKey, Object columnKey) {
+		return get(rowKey, columnKey) != null;
+	}
+
+	@Override
+	public boolean containsRow(Object rowKey) {
+		return m_matrix.getRows().contains(rowKey);
+	}
+
+	@Override
+	public boolean containsColumn(Object columnKey) {
+		return m_matrix.getColumns().contains(columnKey);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return values().contains(value);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Double get(Object rowKey, Object columnKey) {
+		if (!containsRow(rowKey) || !containsColumn(columnKey)) {
+			return null;
+		}
+		/** Safe as the keys are known to the matrix. */
+		return m_matrix.getEntry((R) rowKey, (C) columnKey);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_matrix.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return m_matrix.getValueCount();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Double put(R rowKey, C columnKey, Double value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void putAll(Table<? extends R, ? extends C, ? extends Double> table) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Double remove(Object rowKey, Object columnKey) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<C, Double> row(final R rowKey) {
+		checkNotNull(rowKey);
+		final Map<C, Double> all = Maps.asMap(m_matrix.getColumns(), new Function<C, Double>() {
+			@Override
+			public Double apply(C column) {
+				return m_matrix.getEntry(rowKey, column);
+			}
+		});
+		return Collections.unmodifiableMap(Maps.filterValues(all, Predicates.notNull()));
+	}
+
+	@Override
+	public Map<R, Double> column(final C columnKey) {
+		checkNotNull(columnKey);
+		final Map<R, Double> all = Maps.asMap(m_matrix.getRows(), new Function<R, Double>() {
+			@Override
+			public Double apply(R row) {
+				return m_matrix.getEntry(row, columnKey);
+			}
+		});
+		return Collections.unmodifiableMap(Maps.filterValues(all, Predicates.notNull()));
+	}
+
+	@Override
+	public Set<Cell<R, C, Double>> cellSet() {
+		return new AbstractSet<Cell<R, C, Double>>() {
+			@Override
+			public Iterator<Cell<R, C, Double>> iterator() {
+				return cellIterator();
+			}
+
+			@Override
+			public int size() {
+				return m_matrix.getValueCount();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Cell<?, ?, ?>)) {
+					return false;
+				}
+				final Cell<?, ?, ?> cell = (Cell<?, ?, ?>) o;
+				final Double value = get(cell.getRowKey(), cell.getColumnKey());
+				return value != null && value.equals(cell.getValue());
+			}
+		};
+	}
+
+	@Override
+	public Set<R> rowKeySet() {
+		return m_matrix.getRows();
+	}
+
+	@Override
+	public Set<C> columnKeySet() {
+		return m_matrix.getColumns();
+	}
+
+	@Override
+	public Collection<Double> values() {
+		return Collections2.transform(cellSet(), new Function<Cell<R, C, Double>, Double>() {
+			@Override
+			public Double apply(Cell<R, C, Double> input) {
+				return input.getValue();
+			}
+		});
+	}
+
+	@Override
+	public Map<R, Map<C, Double>> rowMap() {
+		return Collections.unmodifiableMap(Maps.asMap(m_matrix.getRows(), new Function<R, Map<C, Double>>() {
+			@Override
+			public Map<C, Double> apply(R rowKey) {
+				return row(rowKey);
+			}
+		}));
+	}
+
+	@Override
+	public Map<C, Map<R, Double>> columnMap() {
+		return Collections.unmodifiableMap(Maps.asMap(m_matrix.getColumns(), new Function<C, Map<R, Double>>() {
+			@Override
+			public Map<R, Double> apply(C columnKey) {
+				return column(columnKey);
+			}
+		}));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof Table<?, ?, ?>)) {
+			return false;
+		}
+		final Table<?, ?, ?> t2 = (Table<?, ?, ?>) obj;
+		return cellSet().equals(t2.cellSet());
+	}
+
+	@Override
+	public int hashCode() {
+		return cellSet().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return rowMap().toString();
+	}
+
+}
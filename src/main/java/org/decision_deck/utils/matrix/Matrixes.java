@@ -6,8 +6,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Map;
 import java.util.Set;
 
+import org.decision_deck.utils.matrix.SparseMatrixDIndexedRead.ValueVisitor;
+
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 import com.google.common.collect.Table.Cell;
@@ -47,7 +50,7 @@ public class Matrixes {
 	 *         one.
 	 */
 	static public <R, C> boolean approxEqual(SparseMatrixDRead<R, C> m1, SparseMatrixDRead<R, C> m2,
-			double imprecision) {
+			final double imprecision) {
 		checkArgument(imprecision >= 0);
 		if (m1 == null || m2 == null) {
 			return m1 == m2;
@@ -62,24 +65,133 @@ public class Matrixes {
 			return false;
 		}
 
-		for (Cell<R, C, Double> entry1 : m1.asTable().cellSet()) {
-			final double value1 = entry1.getValue().doubleValue();
-			final Double entry2 = m2.getEntry(entry1.getRowKey(), entry1.getColumnKey());
-			if (entry2 == null) {
-				return false;
-			}
-			final double value2 = entry2.doubleValue();
-			if (Math.abs(value2 - value1) > imprecision) {
-				return false;
+		final SparseMatrixDIndexedRead<R, C> indexed1 = asIndexed(m1);
+		final SparseMatrixDIndexedRead<R, C> indexed2 = asIndexed(m2);
+		final int[] rowIndexes2 = new int[indexed1.getRowBound()];
+		for (int rowIndex1 = 0; rowIndex1 < rowIndexes2.length; ++rowIndex1) {
+			final R row = indexed1.getRow(rowIndex1);
+			rowIndexes2[rowIndex1] = row == null ? -1 : indexed2.rowIndex(row);
+		}
+		final int[] columnIndexes2 = new int[indexed1.getColumnBound()];
+		for (int columnIndex1 = 0; columnIndex1 < columnIndexes2.length; ++columnIndex1) {
+			final C column = indexed1.getColumn(columnIndex1);
+			columnIndexes2[columnIndex1] = column == null ? -1 : indexed2.columnIndex(column);
+		}
+		return indexed1.forEachValue(new ValueVisitor() {
+			@Override
+			public boolean visit(int row, int column, double value1) {
+				final int row2 = rowIndexes2[row];
+				final int column2 = columnIndexes2[column];
+				if (!indexed2.hasValue(row2, column2)) {
+					return false;
+				}
+				final double value2 = indexed2.getValue(row2, column2);
+				return !(Math.abs(value2 - value1) > imprecision);
 			}
+		});
+	}
+
+	/**
+	 * Retrieves a view of the given matrix giving access to its values through
+	 * indexes. If the given matrix implements {@link SparseMatrixDIndexedRead}, it
+	 * is returned, unless it is a view of this package whose index based methods
+	 * would index its source anew at each call. Otherwise, the returned object
+	 * assigns indexes to the rows and columns that the source has when this
+	 * method is called: the index based methods of the returned object do not see
+	 * rows or columns added to the source afterwards.
+	 * 
+	 * @param        <R> the row type.
+	 * @param        <C> the column type.
+	 * @param source not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <R, C> SparseMatrixDIndexedRead<R, C> asIndexed(SparseMatrixDRead<R, C> source) {
+		checkNotNull(source);
+		if (source instanceof SparseMatrixDIndexedRead<?, ?> && !isIndexedThroughAdapter(source)) {
+			return (SparseMatrixDIndexedRead<R, C>) source;
 		}
-		return true;
+		return new IndexedMatrixAdapter<R, C>(source);
+	}
+
+	/**
+	 * The forwarding matrixes of this package which read through to their
+	 * delegate without changing the values.
+	 */
+	static private final ImmutableSet<Class<?>> READ_THROUGH_CLASSES = ImmutableSet.<Class<?>> of(
+			ForwardingSparseMatrixRead.class, ForwardingSparseMatrix.class, ValidatingDecoratedMatrix.class,
+			SparseMatrixFuzzyImpl.class, SparseMatrixBooleanImpl.class);
+
+	/**
+	 * Retrieves a matrix containing the same values as the given one, whose index
+	 * based methods do not allocate: the given matrix itself, or the matrix it
+	 * reads through to, following the forwarding matrixes of this package. A view
+	 * may use the returned matrix for the whole life of the given one, as the
+	 * chain of delegates of a forwarding matrix does not change.
+	 * 
+	 * @param source not {@code null}.
+	 * @return {@code null} iff there is no such matrix.
+	 */
+	static <R, C> SparseMatrixDIndexedRead<R, C> getNativelyIndexed(SparseMatrixDRead<R, C> source) {
+		checkNotNull(source);
+		SparseMatrixDRead<R, C> current = source;
+		while (READ_THROUGH_CLASSES.contains(current.getClass())) {
+			current = ((ForwardingSparseMatrixRead<R, C>) current).delegate();
+		}
+		if (!(current instanceof SparseMatrixDIndexedRead<?, ?>) || isIndexedThroughAdapter(current)) {
+			return null;
+		}
+		return (SparseMatrixDIndexedRead<R, C>) current;
+	}
+
+	/**
+	 * @return {@code true} iff the given matrix is a view of this package whose
+	 *         index based methods index its source anew at each call.
+	 */
+	static private boolean isIndexedThroughAdapter(SparseMatrixDRead<?, ?> matrix) {
+		if (matrix instanceof SparseMatrixDFiltered<?, ?>) {
+			return !((SparseMatrixDFiltered<?, ?>) matrix).hasNativeIndexes();
+		}
+		if (matrix instanceof OneMinusInverseMatrix<?>) {
+			return !((OneMinusInverseMatrix<?>) matrix).hasNativeIndexes();
+		}
+		return false;
 	}
 
 	static public <R, C> SparseMatrixD<R, C> newSparseD() {
 		return new SparseMatrixDImpl<R, C>();
 	}
 
+	/**
+	 * Returns a new, empty matrix storing its values in a primitive array. Such a
+	 * matrix uses memory proportional to its row count times its column count,
+	 * and is thus appropriate for complete or almost complete matrixes. Its table
+	 * view is read-only.
+	 *
+	 * @param <R> the row type.
+	 * @param <C> the column type.
+	 * @return not {@code null}.
+	 * @see SparseMatrixDArray
+	 */
+	static public <R, C> SparseMatrixD<R, C> newArrayD() {
+		return new SparseMatrixDArray<R, C>();
+	}
+
+	/**
+	 * Returns a new matrix storing its values in a primitive array, and containing
+	 * a copy of the values of the given source.
+	 *
+	 * @param        <R> the row type.
+	 * @param        <C> the column type.
+	 * @param source not {@code null}.
+	 * @return not {@code null}.
+	 * @see #newArrayD()
+	 */
+	static public <R, C> SparseMatrixD<R, C> newArrayD(SparseMatrixDRead<R, C> source) {
+		final SparseMatrixD<R, C> target = newArrayD();
+		putAll(source, target);
+		return target;
+	}
+
 	static public <R, C> SparseMatrixFuzzy<R, C> newSparseFuzzy(SparseMatrixDRead<R, C> source) {
 		final SparseMatrixFuzzy<R, C> target = new SparseMatrixFuzzyImpl<R, C>();
 		for (Cell<R, C, Double> sourceEntry : source.asTable().cellSet()) {
@@ -115,6 +227,21 @@ public class Matrixes {
 		return new ForwardingSparseMatrixRead<R, C>(delegate);
 	}
 
+	/**
+	 * Retrieves an immutable copy of the given matrix, using a compact layout
+	 * suited to matrixes which are built once and read often, possibly by several
+	 * threads. The returned object is thread-safe and its table view is read-only.
+	 *
+	 * @param        <R> the row type.
+	 * @param        <C> the column type.
+	 * @param source not {@code null}.
+	 * @return not {@code null}, the source itself if it is already such a copy.
+	 * @see SparseMatrixDCompressed
+	 */
+	static public <R, C> SparseMatrixDIndexedRead<R, C> freeze(SparseMatrixDRead<R, C> source) {
+		return SparseMatrixDCompressed.copyOf(source);
+	}
+
 	static public <R, C> SparseMatrixD<R, C> newSparseD(SparseMatrixDRead<R, C> source) {
 		final SparseMatrixD<R, C> target = newSparseD();
 		putAll(source, target);
@@ -138,6 +265,19 @@ public class Matrixes {
 		}
 	}
 
+	/**
+	 * Returns a new, empty binary matrix storing its values as bits, which also
+	 * provides bulk operations on its rows. Its table view is read-only.
+	 *
+	 * @param <R> the row type.
+	 * @param <C> the column type.
+	 * @return not {@code null}.
+	 * @see SparseMatrixBooleanBits
+	 */
+	static public <R, C> SparseMatrixBooleanBits<R, C> newBooleanBits() {
+		return new SparseMatrixBooleanBits<R, C>();
+	}
+
 	static public <R, C> SparseMatrixFuzzy<R, C> newSparseFuzzy() {
 		return new SparseMatrixFuzzyImpl<R, C>();
 	}
@@ -278,18 +418,30 @@ public class Matrixes {
 	public static <T> boolean symMax(SparseMatrixDRead<T, T> matrix, double maxValue) {
 		checkNotNull(matrix);
 		checkArgument(!Double.isNaN(maxValue));
+		final SparseMatrixDIndexedRead<T, T> indexed = asIndexed(matrix);
+		final Set<T> columns = matrix.getColumns();
+		final int[] columnIndexes = new int[columns.size()];
+		final int[] columnsAsRowIndexes = new int[columns.size()];
+		int i = 0;
+		for (T col : columns) {
+			columnIndexes[i] = indexed.columnIndex(col);
+			columnsAsRowIndexes[i] = indexed.rowIndex(col);
+			++i;
+		}
 		for (T row : matrix.getRows()) {
-			for (T col : matrix.getColumns()) {
-				final Double e1 = matrix.getEntry(row, col);
-				if (e1 == null) {
-					throw new IllegalStateException("Missing entry at " + row + ", " + col + ".");
+			final int rowIndex = indexed.rowIndex(row);
+			final int rowAsColumnIndex = indexed.columnIndex(row);
+			for (int j = 0; j < columnIndexes.length; ++j) {
+				if (!indexed.hasValue(rowIndex, columnIndexes[j])) {
+					throw new IllegalStateException(
+							"Missing entry at " + row + ", " + indexed.getColumn(columnIndexes[j]) + ".");
 				}
-				final double val = e1.doubleValue();
-				final Double e2 = matrix.getEntry(col, row);
-				if (e2 == null) {
-					throw new IllegalStateException("Missing entry at " + col + ", " + row + ".");
+				final double val = indexed.getValue(rowIndex, columnIndexes[j]);
+				if (!indexed.hasValue(columnsAsRowIndexes[j], rowAsColumnIndex)) {
+					throw new IllegalStateException(
+							"Missing entry at " + indexed.getColumn(columnIndexes[j]) + ", " + row + ".");
 				}
-				final double val2 = e2.doubleValue();
+				final double val2 = indexed.getValue(columnsAsRowIndexes[j], rowAsColumnIndex);
 				if (val + val2 > maxValue) {
 					return false;
 				}
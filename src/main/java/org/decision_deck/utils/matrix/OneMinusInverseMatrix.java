@@ -26,6 +26,15 @@ import com.google.common.collect.Table;
  * columns are the base matrix's rows. (This is a consequence of this matrix's
  * definition.)
  * </P>
+ * <P>
+ * The row (column) indexes of this matrix are the column (row) indexes of the
+ * base matrix. When the base matrix implements {@link SparseMatrixDIndexedRead},
+ * or is a forwarding matrix of this package reading through to such a matrix,
+ * the index based methods read that matrix directly and do not allocate.
+ * Otherwise, each call to an index based method assigns the indexes anew to the
+ * rows and columns the base matrix currently has, in a time linear in their
+ * number; {@link Matrixes#asIndexed} then indexes this matrix once instead.
+ * </P>
  * 
  * @author Olivier Cailloux
  * 
@@ -33,11 +42,17 @@ import com.google.common.collect.Table;
  *        type of object referencing the row and the column part of the
  *        positions.
  */
-public class OneMinusInverseMatrix<E> implements SparseMatrixDRead<E, E> {
+public class OneMinusInverseMatrix<E> implements SparseMatrixDIndexedRead<E, E> {
 
 	private final SparseMatrixDRead<E, E> m_base;
 	private final double m_complement;
 
+	/**
+	 * The matrix the base matrix reads through to, if it is natively indexed,
+	 * otherwise {@code null}.
+	 */
+	private final SparseMatrixDIndexedRead<E, E> m_indexedBase;
+
 	/**
 	 * Sets this object to use the given matrix as base and a complement possibly
 	 * different than one.
@@ -51,6 +66,7 @@ public class OneMinusInverseMatrix<E> implements SparseMatrixDRead<E, E> {
 		}
 		m_base = base;
 		m_complement = complement;
+		m_indexedBase = Matrixes.getNativelyIndexed(base);
 	}
 
 	/**
@@ -64,6 +80,7 @@ public class OneMinusInverseMatrix<E> implements SparseMatrixDRead<E, E> {
 		}
 		m_base = base;
 		m_complement = 1d;
+		m_indexedBase = Matrixes.getNativelyIndexed(base);
 	}
 
 	@Override
@@ -146,4 +163,75 @@ public class OneMinusInverseMatrix<E> implements SparseMatrixDRead<E, E> {
 		throw new IllegalStateException("Expected value at " + row + ", " + column + ".");
 	}
 
+	/**
+	 * @return {@code true} iff the index based methods of this matrix read a
+	 *         natively indexed matrix.
+	 */
+	boolean hasNativeIndexes() {
+		return m_indexedBase != null;
+	}
+
+	/**
+	 * Returns the natively indexed matrix the base matrix reads through to, or, if
+	 * there is none, an adapter indexing the current rows and columns of the base
+	 * matrix. The adapter is not kept, as it would not see later changes of the
+	 * base matrix.
+	 */
+	private SparseMatrixDIndexedRead<E, E> getIndexedBase() {
+		return m_indexedBase != null ? m_indexedBase : Matrixes.asIndexed(m_base);
+	}
+
+	@Override
+	public int rowIndex(E row) {
+		return getIndexedBase().columnIndex(row);
+	}
+
+	@Override
+	public int columnIndex(E column) {
+		return getIndexedBase().rowIndex(column);
+	}
+
+	@Override
+	public int getRowBound() {
+		return getIndexedBase().getColumnBound();
+	}
+
+	@Override
+	public int getColumnBound() {
+		return getIndexedBase().getRowBound();
+	}
+
+	@Override
+	public E getRow(int rowIndex) {
+		return getIndexedBase().getColumn(rowIndex);
+	}
+
+	@Override
+	public E getColumn(int columnIndex) {
+		return getIndexedBase().getRow(columnIndex);
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		return getIndexedBase().hasValue(columnIndex, rowIndex);
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		return m_complement - getIndexedBase().getValue(columnIndex, rowIndex);
+	}
+
+	@Override
+	public boolean forEachValue(final ValueVisitor visitor) {
+		if (visitor == null) {
+			throw new NullPointerException();
+		}
+		return getIndexedBase().forEachValue(new ValueVisitor() {
+			@Override
+			public boolean visit(int row, int column, double value) {
+				return visitor.visit(column, row, m_complement - value);
+			}
+		});
+	}
+
 }
@@ -0,0 +1,482 @@
+package org.decision_deck.utils.matrix;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.decision_deck.utils.collection.KeyIndexer;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Objects.ToStringHelper;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+
+/**
+ * <p>
+ * A binary matrix storing its values as bits. Rows and columns are interned to
+ * dense int indexes, and each row is stored as two bit sets indexed by column:
+ * one indicating which positions hold a value, the other indicating which of
+ * these values are {@code true}. A missing entry thus stays distinct from a
+ * {@code false} value. Reading a value takes constant time and does not
+ * allocate memory.
+ * </p>
+ * <p>
+ * The bulk row operations ({@link #or(int, int)}, {@link #and(int, int)},
+ * {@link #xor(int, int)}) and {@link #countTrue(int)} work a word of 64 columns
+ * at a time, and are meant for relation algorithms. They consider a missing
+ * entry as {@code false}.
+ * </p>
+ * <p>
+ * This object accepts only the values zero and one through the
+ * {@link SparseMatrixD} interface. Its table view is read-only.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+public class SparseMatrixBooleanBits<R, C>
+		implements SparseMatrixD<R, C>, SparseMatrixBooleanRead<R, C>, SparseMatrixDIndexedRead<R, C> {
+
+	static private final Double ZERO = Double.valueOf(0d);
+
+	static private final Double ONE = Double.valueOf(1d);
+
+	private final KeyIndexer<R> m_rows = new KeyIndexer<R>();
+
+	private final KeyIndexer<C> m_columns = new KeyIndexer<C>();
+
+	/**
+	 * For each row index, the columns at which this row has a value. An entry is
+	 * {@code null} iff the corresponding index is unused.
+	 */
+	private BitSet[] m_defined = new BitSet[4];
+
+	/**
+	 * For each row index, the columns at which this row has a {@code true}
+	 * value. Always a subset of the corresponding defined set.
+	 */
+	private BitSet[] m_trues = new BitSet[4];
+
+	private int m_valueCount = 0;
+
+	private Table<R, C, Double> m_tableView;
+
+	SparseMatrixBooleanBits() {
+		/** Should be created through factory. */
+	}
+
+	@Override
+	public Table<R, C, Double> asTable() {
+		if (m_tableView == null) {
+			m_tableView = new MatrixTableView<R, C>(this) {
+				@Override
+				Iterator<Cell<R, C, Double>> cellIterator() {
+					return new AbstractIterator<Cell<R, C, Double>>() {
+						private int m_row = -1;
+						private int m_column = -1;
+
+						@Override
+						protected Cell<R, C, Double> computeNext() {
+							while (true) {
+								if (m_row >= 0) {
+									m_column = m_defined[m_row].nextSetBit(m_column + 1);
+									if (m_column >= 0) {
+										return Tables.immutableCell(m_rows.getKey(m_row), m_columns.getKey(m_column),
+												m_trues[m_row].get(m_column) ? ONE : ZERO);
+									}
+								}
+								do {
+									++m_row;
+								} while (m_row < m_rows.getBound() && m_defined[m_row] == null);
+								if (m_row >= m_rows.getBound()) {
+									return endOfData();
+								}
+								m_column = -1;
+							}
+						}
+					};
+				}
+			};
+		}
+		return m_tableView;
+	}
+
+	@Override
+	public boolean approxEquals(SparseMatrixDRead<R, C> m2, double imprecision) {
+		return Matrixes.approxEqual(this, m2, imprecision);
+	}
+
+	@Override
+	public Set<C> getColumns() {
+		return m_columns.keySet();
+	}
+
+	@Override
+	public Set<R> getRows() {
+		return m_rows.keySet();
+	}
+
+	@Override
+	public Double getEntry(R row, C column) {
+		final Boolean entry = getBooleanEntry(row, column);
+		if (entry == null) {
+			return null;
+		}
+		return entry.booleanValue() ? ONE : ZERO;
+	}
+
+	@Override
+	public Boolean getBooleanEntry(R row, C column) {
+		final int rowIndex = m_rows.indexOf(row);
+		final int columnIndex = m_columns.indexOf(column);
+		if (!hasValue(rowIndex, columnIndex)) {
+			return null;
+		}
+		return Boolean.valueOf(m_trues[rowIndex].get(columnIndex));
+	}
+
+	@Override
+	public double getValue(R row, C column) {
+		return getBooleanValue(row, column) ? 1d : 0d;
+	}
+
+	@Override
+	public boolean getBooleanValue(R row, C column) {
+		final int rowIndex = m_rows.indexOf(row);
+		final int columnIndex = m_columns.indexOf(column);
+		if (!hasValue(rowIndex, columnIndex)) {
+			throw new IllegalStateException("Expected value at " + row + ", " + column + ".");
+		}
+		return m_trues[rowIndex].get(columnIndex);
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_valueCount;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return m_valueCount == (long) m_rows.size() * m_columns.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_valueCount == 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @param value zero or one.
+	 * @throws IllegalArgumentException iff the value is not zero nor one.
+	 */
+	@Override
+	public Double put(R row, C column, double value) {
+		checkArgument(value == 0d || value == 1d,
+				"Invalid value at row " + row + ", column " + column + ": " + value + ".");
+		final Boolean previous = put(row, column, value == 1d);
+		if (previous == null) {
+			return null;
+		}
+		return previous.booleanValue() ? ONE : ZERO;
+	}
+
+	/**
+	 * Puts a value in this matrix at the position specified by the given row and
+	 * column.
+	 *
+	 * @param row    not {@code null}.
+	 * @param column not {@code null}.
+	 * @param value  the value.
+	 * @return the value previously at that position, or {@code null} if there
+	 *         was none.
+	 */
+	public Boolean put(R row, C column, boolean value) {
+		checkNotNull(row);
+		checkNotNull(column);
+		final int rowIndex = m_rows.intern(row);
+		final int columnIndex = m_columns.intern(column);
+		if (rowIndex >= m_defined.length) {
+			m_defined = Arrays.copyOf(m_defined, m_defined.length * 2);
+			m_trues = Arrays.copyOf(m_trues, m_trues.length * 2);
+		}
+		if (m_defined[rowIndex] == null) {
+			m_defined[rowIndex] = new BitSet();
+			m_trues[rowIndex] = new BitSet();
+		}
+		final Boolean previous;
+		if (m_defined[rowIndex].get(columnIndex)) {
+			previous = Boolean.valueOf(m_trues[rowIndex].get(columnIndex));
+		} else {
+			previous = null;
+			m_defined[rowIndex].set(columnIndex);
+			m_rows.increment(rowIndex);
+			m_columns.increment(columnIndex);
+			++m_valueCount;
+		}
+		m_trues[rowIndex].set(columnIndex, value);
+		return previous;
+	}
+
+	@Override
+	public Double remove(R row, C column) {
+		final int rowIndex = m_rows.indexOf(row);
+		final int columnIndex = m_columns.indexOf(column);
+		if (!hasValue(rowIndex, columnIndex)) {
+			return null;
+		}
+		final Double previous = m_trues[rowIndex].get(columnIndex) ? ONE : ZERO;
+		clear(rowIndex, columnIndex);
+		return previous;
+	}
+
+	/**
+	 * Removes the value at the given position, which must hold a value.
+	 *
+	 * @param rowIndex    the row index.
+	 * @param columnIndex the column index.
+	 */
+	private void clear(int rowIndex, int columnIndex) {
+		m_defined[rowIndex].clear(columnIndex);
+		m_trues[rowIndex].clear(columnIndex);
+		--m_valueCount;
+		m_columns.decrement(columnIndex);
+		if (m_rows.decrement(rowIndex)) {
+			m_defined[rowIndex] = null;
+			m_trues[rowIndex] = null;
+		}
+	}
+
+	@Override
+	public boolean removeRow(R row) {
+		final int rowIndex = m_rows.indexOf(row);
+		if (rowIndex < 0) {
+			return false;
+		}
+		final BitSet defined = m_defined[rowIndex];
+		for (int columnIndex = defined.nextSetBit(0); columnIndex >= 0; columnIndex = defined
+				.nextSetBit(columnIndex + 1)) {
+			clear(rowIndex, columnIndex);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean removeColumn(C column) {
+		final int columnIndex = m_columns.indexOf(column);
+		if (columnIndex < 0) {
+			return false;
+		}
+		for (int rowIndex = 0; rowIndex < m_rows.getBound(); ++rowIndex) {
+			if (hasValue(rowIndex, columnIndex)) {
+				clear(rowIndex, columnIndex);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int rowIndex(R row) {
+		return m_rows.indexOf(row);
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		return m_columns.indexOf(column);
+	}
+
+	@Override
+	public int getRowBound() {
+		return m_rows.getBound();
+	}
+
+	@Override
+	public int getColumnBound() {
+		return m_columns.getBound();
+	}
+
+	@Override
+	public R getRow(int rowIndex) {
+		return m_rows.getKey(rowIndex);
+	}
+
+	@Override
+	public C getColumn(int columnIndex) {
+		return m_columns.getKey(columnIndex);
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		if (rowIndex < 0 || rowIndex >= m_rows.getBound() || columnIndex < 0 || m_defined[rowIndex] == null) {
+			return false;
+		}
+		return m_defined[rowIndex].get(columnIndex);
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		return getBooleanValue(rowIndex, columnIndex) ? 1d : 0d;
+	}
+
+	/**
+	 * Returns the value at the given position. Throws an exception if there is
+	 * none.
+	 *
+	 * @param rowIndex    a non negative index lower than the row bound.
+	 * @param columnIndex a non negative index lower than the column bound.
+	 * @return the boolean value at that position.
+	 */
+	public boolean getBooleanValue(int rowIndex, int columnIndex) {
+		if (!hasValue(rowIndex, columnIndex)) {
+			throw new IllegalStateException("Expected value at index " + rowIndex + ", " + columnIndex + ".");
+		}
+		return m_trues[rowIndex].get(columnIndex);
+	}
+
+	@Override
+	public boolean forEachValue(ValueVisitor visitor) {
+		checkNotNull(visitor);
+		for (int rowIndex = 0; rowIndex < m_rows.getBound(); ++rowIndex) {
+			final BitSet defined = m_defined[rowIndex];
+			if (defined == null) {
+				continue;
+			}
+			final BitSet trues = m_trues[rowIndex];
+			for (int columnIndex = defined.nextSetBit(0); columnIndex >= 0; columnIndex = defined
+					.nextSetBit(columnIndex + 1)) {
+				if (!visitor.visit(rowIndex, columnIndex, trues.get(columnIndex) ? 1d : 0d)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the {@code true} values in the given row.
+	 *
+	 * @param rowIndex any int.
+	 * @return a non negative number, zero if the index is unused.
+	 */
+	public int countTrue(int rowIndex) {
+		if (rowIndex < 0 || rowIndex >= m_rows.getBound() || m_trues[rowIndex] == null) {
+			return 0;
+		}
+		return m_trues[rowIndex].cardinality();
+	}
+
+	/**
+	 * Counts the {@code true} values in this matrix.
+	 *
+	 * @return a non negative number.
+	 */
+	public int countTrue() {
+		int count = 0;
+		for (int rowIndex = 0; rowIndex < m_rows.getBound(); ++rowIndex) {
+			count += countTrue(rowIndex);
+		}
+		return count;
+	}
+
+	/**
+	 * Retrieves the column indexes at which the given row has a {@code true}
+	 * value.
+	 *
+	 * @param rowIndex a used row index.
+	 * @return a new bit set, not {@code null}.
+	 */
+	public BitSet getTrueColumns(int rowIndex) {
+		checkArgument(rowIndex >= 0 && rowIndex < m_rows.getBound() && m_trues[rowIndex] != null);
+		return (BitSet) m_trues[rowIndex].clone();
+	}
+
+	/**
+	 * Sets the target row to the disjunction of itself and the source row. After
+	 * this call, the target row has a value wherever it had one or the source row
+	 * has one.
+	 *
+	 * @param targetRowIndex a used row index.
+	 * @param sourceRowIndex a used row index.
+	 */
+	public void or(int targetRowIndex, int sourceRowIndex) {
+		defineAsInSource(targetRowIndex, sourceRowIndex);
+		m_trues[targetRowIndex].or(m_trues[sourceRowIndex]);
+	}
+
+	/**
+	 * Sets the target row to the conjunction of itself and the source row, missing
+	 * entries being considered as {@code false}. After this call, the target row
+	 * has a value wherever it had one or the source row has one.
+	 *
+	 * @param targetRowIndex a used row index.
+	 * @param sourceRowIndex a used row index.
+	 */
+	public void and(int targetRowIndex, int sourceRowIndex) {
+		defineAsInSource(targetRowIndex, sourceRowIndex);
+		m_trues[targetRowIndex].and(m_trues[sourceRowIndex]);
+	}
+
+	/**
+	 * Sets the target row to the exclusive disjunction of itself and the source
+	 * row, missing entries being considered as {@code false}. After this call, the
+	 * target row has a value wherever it had one or the source row has one.
+	 *
+	 * @param targetRowIndex a used row index.
+	 * @param sourceRowIndex a used row index.
+	 */
+	public void xor(int targetRowIndex, int sourceRowIndex) {
+		defineAsInSource(targetRowIndex, sourceRowIndex);
+		m_trues[targetRowIndex].xor(m_trues[sourceRowIndex]);
+	}
+
+	/**
+	 * Defines, with a {@code false} value, the positions of the target row which
+	 * are missing and are defined in the source row.
+	 *
+	 * @param targetRowIndex a used row index.
+	 * @param sourceRowIndex a used row index.
+	 */
+	private void defineAsInSource(int targetRowIndex, int sourceRowIndex) {
+		checkArgument(targetRowIndex >= 0 && targetRowIndex < m_rows.getBound() && m_defined[targetRowIndex] != null);
+		checkArgument(sourceRowIndex >= 0 && sourceRowIndex < m_rows.getBound() && m_defined[sourceRowIndex] != null);
+		final BitSet target = m_defined[targetRowIndex];
+		final BitSet added = (BitSet) m_defined[sourceRowIndex].clone();
+		added.andNot(target);
+		for (int columnIndex = added.nextSetBit(0); columnIndex >= 0; columnIndex = added.nextSetBit(columnIndex + 1)) {
+			m_rows.increment(targetRowIndex);
+			m_columns.increment(columnIndex);
+			++m_valueCount;
+		}
+		target.or(added);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SparseMatrixDRead<?, ?>)) {
+			return false;
+		}
+		final SparseMatrixDRead<?, ?> m2 = (SparseMatrixDRead<?, ?>) obj;
+		return asTable().equals(m2.asTable());
+	}
+
+	@Override
+	public int hashCode() {
+		return asTable().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		final ToStringHelper helper = Objects.toStringHelper(this);
+		helper.addValue(Matrixes.toString(this));
+		return helper.toString();
+	}
+
+}
@@ -0,0 +1,351 @@
+package org.decision_deck.utils.matrix;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.decision_deck.utils.collection.KeyIndexer;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Objects.ToStringHelper;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+
+/**
+ * <p>
+ * A matrix storing its values in a primitive array. Rows and columns are
+ * interned to dense int indexes, and the values are kept, row after row, in a
+ * {@code double} array together with a bit set indicating which positions hold
+ * a value.
+ * </p>
+ * <p>
+ * This implementation is appropriate for matrixes which are complete or almost
+ * complete, such as evaluation matrixes: its memory usage is proportional to
+ * the number of rows times the number of columns, and does not depend on the
+ * number of values. Reading a value using {@link #getValue(Object, Object)}
+ * or any of the {@link SparseMatrixDIndexedRead} methods does not allocate
+ * memory.
+ * </p>
+ * <p>
+ * The table view of this object is read-only.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+public class SparseMatrixDArray<R, C> implements SparseMatrixD<R, C>, SparseMatrixDIndexedRead<R, C> {
+
+	private final KeyIndexer<R> m_rows = new KeyIndexer<R>();
+
+	private final KeyIndexer<C> m_columns = new KeyIndexer<C>();
+
+	/**
+	 * The number of columns for which room is reserved in each row of
+	 * {@link #m_values}.
+	 */
+	private int m_stride = 4;
+
+	/**
+	 * The value at (row index r, column index c) is at position r × stride + c.
+	 */
+	private double[] m_values = new double[16];
+
+	/**
+	 * Has the same layout as {@link #m_values}.
+	 */
+	private BitSet m_present = new BitSet();
+
+	private int m_valueCount = 0;
+
+	private Table<R, C, Double> m_tableView;
+
+	SparseMatrixDArray() {
+		/** Should be created through factory. */
+	}
+
+	@Override
+	public Table<R, C, Double> asTable() {
+		if (m_tableView == null) {
+			m_tableView = new MatrixTableView<R, C>(this) {
+				@Override
+				Iterator<Cell<R, C, Double>> cellIterator() {
+					return new AbstractIterator<Cell<R, C, Double>>() {
+						private int m_position = m_present.nextSetBit(0);
+
+						@Override
+						protected Cell<R, C, Double> computeNext() {
+							if (m_position < 0) {
+								return endOfData();
+							}
+							final int row = m_position / m_stride;
+							final int column = m_position % m_stride;
+							final Cell<R, C, Double> cell = Tables.immutableCell(m_rows.getKey(row),
+									m_columns.getKey(column), Double.valueOf(m_values[m_position]));
+							m_position = m_present.nextSetBit(m_position + 1);
+							return cell;
+						}
+					};
+				}
+			};
+		}
+		return m_tableView;
+	}
+
+	@Override
+	public boolean approxEquals(SparseMatrixDRead<R, C> m2, double imprecision) {
+		return Matrixes.approxEqual(this, m2, imprecision);
+	}
+
+	@Override
+	public Set<C> getColumns() {
+		return m_columns.keySet();
+	}
+
+	@Override
+	public Set<R> getRows() {
+		return m_rows.keySet();
+	}
+
+	/**
+	 * Retrieves the position of the value at the given row and column in the
+	 * arrays of this object.
+	 *
+	 * @param row    may be {@code null}.
+	 * @param column may be {@code null}.
+	 * @return {@code -1} if there is no value at that position.
+	 */
+	private int getPosition(Object row, Object column) {
+		final int rowIndex = m_rows.indexOf(row);
+		if (rowIndex < 0) {
+			return -1;
+		}
+		final int columnIndex = m_columns.indexOf(column);
+		if (columnIndex < 0) {
+			return -1;
+		}
+		final int position = rowIndex * m_stride + columnIndex;
+		return m_present.get(position) ? position : -1;
+	}
+
+	@Override
+	public Double getEntry(R row, C column) {
+		final int position = getPosition(row, column);
+		if (position < 0) {
+			return null;
+		}
+		return Double.valueOf(m_values[position]);
+	}
+
+	@Override
+	public double getValue(R row, C column) {
+		final int position = getPosition(row, column);
+		if (position < 0) {
+			throw new IllegalStateException("Expected value at " + row + ", " + column + ".");
+		}
+		return m_values[position];
+	}
+
+	@Override
+	public int rowIndex(R row) {
+		return m_rows.indexOf(row);
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		return m_columns.indexOf(column);
+	}
+
+	@Override
+	public int getRowBound() {
+		return m_rows.getBound();
+	}
+
+	@Override
+	public int getColumnBound() {
+		return m_columns.getBound();
+	}
+
+	@Override
+	public R getRow(int rowIndex) {
+		return m_rows.getKey(rowIndex);
+	}
+
+	@Override
+	public C getColumn(int columnIndex) {
+		return m_columns.getKey(columnIndex);
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		if (rowIndex < 0 || rowIndex >= m_rows.getBound() || columnIndex < 0
+				|| columnIndex >= m_columns.getBound()) {
+			return false;
+		}
+		return m_present.get(rowIndex * m_stride + columnIndex);
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		if (!hasValue(rowIndex, columnIndex)) {
+			throw new IllegalStateException("Expected value at index " + rowIndex + ", " + columnIndex + ".");
+		}
+		return m_values[rowIndex * m_stride + columnIndex];
+	}
+
+	@Override
+	public boolean forEachValue(ValueVisitor visitor) {
+		checkNotNull(visitor);
+		for (int position = m_present.nextSetBit(0); position >= 0; position = m_present.nextSetBit(position + 1)) {
+			if (!visitor.visit(position / m_stride, position % m_stride, m_values[position])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_valueCount;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return m_valueCount == (long) m_rows.size() * m_columns.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_valueCount == 0;
+	}
+
+	@Override
+	public Double put(R row, C column, double value) {
+		checkNotNull(row);
+		checkNotNull(column);
+		final int rowIndex = m_rows.intern(row);
+		final int columnIndex = m_columns.intern(column);
+		ensureCapacity(m_rows.getBound(), m_columns.getBound());
+		final int position = rowIndex * m_stride + columnIndex;
+		final Double previous;
+		if (m_present.get(position)) {
+			previous = Double.valueOf(m_values[position]);
+		} else {
+			previous = null;
+			m_present.set(position);
+			m_rows.increment(rowIndex);
+			m_columns.increment(columnIndex);
+			++m_valueCount;
+		}
+		m_values[position] = value;
+		return previous;
+	}
+
+	/**
+	 * Ensures the arrays have room for the given number of rows and columns,
+	 * possibly changing the stride.
+	 *
+	 * @param nbRows    the number of rows.
+	 * @param nbColumns the number of columns.
+	 */
+	private void ensureCapacity(int nbRows, int nbColumns) {
+		if (nbColumns > m_stride) {
+			final int newStride = Math.max(nbColumns, m_stride * 2);
+			final int nbRowsAllocated = m_values.length / m_stride;
+			final double[] newValues = new double[Math.max(nbRows, nbRowsAllocated) * newStride];
+			final BitSet newPresent = new BitSet();
+			for (int position = m_present.nextSetBit(0); position >= 0; position = m_present
+					.nextSetBit(position + 1)) {
+				final int newPosition = (position / m_stride) * newStride + position % m_stride;
+				newValues[newPosition] = m_values[position];
+				newPresent.set(newPosition);
+			}
+			m_stride = newStride;
+			m_values = newValues;
+			m_present = newPresent;
+		}
+		if (nbRows * m_stride > m_values.length) {
+			m_values = Arrays.copyOf(m_values, Math.max(nbRows * m_stride, m_values.length * 2));
+		}
+	}
+
+	@Override
+	public Double remove(R row, C column) {
+		final int position = getPosition(row, column);
+		if (position < 0) {
+			return null;
+		}
+		final Double previous = Double.valueOf(m_values[position]);
+		clear(position);
+		return previous;
+	}
+
+	/**
+	 * Removes the value at the given position, which must hold a value.
+	 *
+	 * @param position the position in the arrays.
+	 */
+	private void clear(int position) {
+		m_present.clear(position);
+		m_rows.decrement(position / m_stride);
+		m_columns.decrement(position % m_stride);
+		--m_valueCount;
+	}
+
+	@Override
+	public boolean removeRow(R row) {
+		final int rowIndex = m_rows.indexOf(row);
+		if (rowIndex < 0) {
+			return false;
+		}
+		final int start = rowIndex * m_stride;
+		final int end = start + m_columns.getBound();
+		for (int position = m_present.nextSetBit(start); position >= 0
+				&& position < end; position = m_present.nextSetBit(position + 1)) {
+			clear(position);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean removeColumn(C column) {
+		final int columnIndex = m_columns.indexOf(column);
+		if (columnIndex < 0) {
+			return false;
+		}
+		for (int rowIndex = 0; rowIndex < m_rows.getBound(); ++rowIndex) {
+			final int position = rowIndex * m_stride + columnIndex;
+			if (m_present.get(position)) {
+				clear(position);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SparseMatrixDRead<?, ?>)) {
+			return false;
+		}
+		final SparseMatrixDRead<?, ?> m2 = (SparseMatrixDRead<?, ?>) obj;
+		return asTable().equals(m2.asTable());
+	}
+
+	@Override
+	public int hashCode() {
+		return asTable().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		final ToStringHelper helper = Objects.toStringHelper(this);
+		helper.addValue(Matrixes.toString(this));
+		return helper.toString();
+	}
+
+}
@@ -0,0 +1,358 @@
+package org.decision_deck.utils.matrix;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Objects.ToStringHelper;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+
+/**
+ * <p>
+ * An immutable matrix using the compressed sparse row layout: the values are
+ * stored row after row in a {@code double} array, together with an array
+ * giving the column index of each value, sorted within each row, and an array
+ * giving, for each row, the position of its first value. A value is looked up
+ * by binary search among the column indexes of its row.
+ * </p>
+ * <p>
+ * Besides the indexes of the rows and columns, this object uses twelve bytes
+ * per value. Being immutable, it may be read concurrently by several threads
+ * without synchronization. Its table view is read-only and is created on
+ * demand.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ * @see Matrixes#freeze(SparseMatrixDRead)
+ */
+public class SparseMatrixDCompressed<R, C> implements SparseMatrixDIndexedRead<R, C> {
+
+	private final ImmutableMap<R, Integer> m_rowIndexes;
+
+	private final ImmutableMap<C, Integer> m_columnIndexes;
+
+	private final Object[] m_rows;
+
+	private final Object[] m_columns;
+
+	/**
+	 * The values of row r are at positions m_rowStarts[r] (inclusive) to
+	 * m_rowStarts[r + 1] (exclusive). Has one more entry than there are rows.
+	 */
+	private final int[] m_rowStarts;
+
+	/**
+	 * The column index of each value, increasing within each row.
+	 */
+	private final int[] m_valueColumns;
+
+	private final double[] m_values;
+
+	private volatile Table<R, C, Double> m_tableView;
+
+	private SparseMatrixDCompressed(ImmutableMap<R, Integer> rowIndexes, ImmutableMap<C, Integer> columnIndexes,
+			int[] rowStarts, int[] valueColumns, double[] values) {
+		m_rowIndexes = rowIndexes;
+		m_columnIndexes = columnIndexes;
+		m_rows = rowIndexes.keySet().toArray();
+		m_columns = columnIndexes.keySet().toArray();
+		m_rowStarts = rowStarts;
+		m_valueColumns = valueColumns;
+		m_values = values;
+	}
+
+	/**
+	 * Returns an immutable copy of the given matrix. The rows and columns of the
+	 * copy iterate in the same order as those of the source.
+	 *
+	 * @param        <R> the row type.
+	 * @param        <C> the column type.
+	 * @param source not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <R, C> SparseMatrixDCompressed<R, C> copyOf(SparseMatrixDRead<R, C> source) {
+		checkNotNull(source);
+		if (source instanceof SparseMatrixDCompressed<?, ?>) {
+			return (SparseMatrixDCompressed<R, C>) source;
+		}
+		final ImmutableMap<R, Integer> rowIndexes = indexesOf(source.getRows());
+		final ImmutableMap<C, Integer> columnIndexes = indexesOf(source.getColumns());
+
+		final SparseMatrixDIndexedRead<R, C> indexed = Matrixes.asIndexed(source);
+		final int[] rowsToTarget = new int[indexed.getRowBound()];
+		for (int sourceRow = 0; sourceRow < rowsToTarget.length; ++sourceRow) {
+			final Integer index = rowIndexes.get(indexed.getRow(sourceRow));
+			rowsToTarget[sourceRow] = index == null ? -1 : index.intValue();
+		}
+		final int[] columnsToTarget = new int[indexed.getColumnBound()];
+		for (int sourceColumn = 0; sourceColumn < columnsToTarget.length; ++sourceColumn) {
+			final Integer index = columnIndexes.get(indexed.getColumn(sourceColumn));
+			columnsToTarget[sourceColumn] = index == null ? -1 : index.intValue();
+		}
+
+		final int[] rowStarts = new int[rowIndexes.size() + 1];
+		indexed.forEachValue(new ValueVisitor() {
+			@Override
+			public boolean visit(int row, int column, double value) {
+				final int target = rowsToTarget[row];
+				if (target >= 0 && columnsToTarget[column] >= 0) {
+					++rowStarts[target + 1];
+				}
+				return true;
+			}
+		});
+		for (int row = 0; row < rowIndexes.size(); ++row) {
+			rowStarts[row + 1] += rowStarts[row];
+		}
+
+		final int nbValues = rowStarts[rowIndexes.size()];
+		final int[] valueColumns = new int[nbValues];
+		final double[] values = new double[nbValues];
+		final int[] cursors = Arrays.copyOf(rowStarts, rowIndexes.size());
+		indexed.forEachValue(new ValueVisitor() {
+			@Override
+			public boolean visit(int row, int column, double value) {
+				final int target = rowsToTarget[row];
+				final int targetColumn = columnsToTarget[column];
+				if (target >= 0 && targetColumn >= 0) {
+					valueColumns[cursors[target]] = targetColumn;
+					values[cursors[target]] = value;
+					++cursors[target];
+				}
+				return true;
+			}
+		});
+		for (int row = 0; row < rowIndexes.size(); ++row) {
+			sortRow(valueColumns, values, rowStarts[row], rowStarts[row + 1]);
+		}
+		return new SparseMatrixDCompressed<R, C>(rowIndexes, columnIndexes, rowStarts, valueColumns, values);
+	}
+
+	static <K> ImmutableMap<K, Integer> indexesOf(Set<K> keys) {
+		final ImmutableMap.Builder<K, Integer> builder = ImmutableMap.builder();
+		int index = 0;
+		for (K key : keys) {
+			builder.put(key, Integer.valueOf(index));
+			++index;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Sorts the given part of the arrays by increasing column index.
+	 *
+	 * @param valueColumns the column indexes, each one being unique in the given
+	 *                     part.
+	 * @param values       the values, moved together with their column indexes.
+	 * @param from         inclusive.
+	 * @param to           exclusive.
+	 */
+	static private void sortRow(int[] valueColumns, double[] values, int from, int to) {
+		boolean sorted = true;
+		for (int position = from + 1; position < to && sorted; ++position) {
+			sorted = valueColumns[position - 1] < valueColumns[position];
+		}
+		if (sorted) {
+			return;
+		}
+		/** Packs the column index with the original offset, to sort both at once. */
+		final long[] packed = new long[to - from];
+		for (int position = from; position < to; ++position) {
+			packed[position - from] = ((long) valueColumns[position] << 32) | (position - from);
+		}
+		Arrays.sort(packed);
+		final double[] original = Arrays.copyOfRange(values, from, to);
+		for (int i = 0; i < packed.length; ++i) {
+			valueColumns[from + i] = (int) (packed[i] >>> 32);
+			values[from + i] = original[(int) packed[i]];
+		}
+	}
+
+	/**
+	 * Retrieves the position of the value at the given indexes in the arrays of
+	 * this object.
+	 *
+	 * @param rowIndex    any int.
+	 * @param columnIndex any int.
+	 * @return a negative number if there is no value at that position.
+	 */
+	private int getPosition(int rowIndex, int columnIndex) {
+		if (rowIndex < 0 || rowIndex >= m_rows.length || columnIndex < 0) {
+			return -1;
+		}
+		return Arrays.binarySearch(m_valueColumns, m_rowStarts[rowIndex], m_rowStarts[rowIndex + 1], columnIndex);
+	}
+
+	@Override
+	public Table<R, C, Double> asTable() {
+		Table<R, C, Double> tableView = m_tableView;
+		if (tableView == null) {
+			tableView = new MatrixTableView<R, C>(this) {
+				@Override
+				Iterator<Cell<R, C, Double>> cellIterator() {
+					return new AbstractIterator<Cell<R, C, Double>>() {
+						private int m_row = 0;
+						private int m_position = 0;
+
+						@Override
+						protected Cell<R, C, Double> computeNext() {
+							if (m_position >= m_values.length) {
+								return endOfData();
+							}
+							while (m_position >= m_rowStarts[m_row + 1]) {
+								++m_row;
+							}
+							final Cell<R, C, Double> cell = Tables.immutableCell(getRow(m_row),
+									getColumn(m_valueColumns[m_position]), Double.valueOf(m_values[m_position]));
+							++m_position;
+							return cell;
+						}
+					};
+				}
+			};
+			m_tableView = tableView;
+		}
+		return tableView;
+	}
+
+	@Override
+	public boolean approxEquals(SparseMatrixDRead<R, C> m2, double imprecision) {
+		return Matrixes.approxEqual(this, m2, imprecision);
+	}
+
+	@Override
+	public ImmutableSet<C> getColumns() {
+		return m_columnIndexes.keySet();
+	}
+
+	@Override
+	public ImmutableSet<R> getRows() {
+		return m_rowIndexes.keySet();
+	}
+
+	@Override
+	public Double getEntry(R row, C column) {
+		final int position = getPosition(rowIndex(row), columnIndex(column));
+		if (position < 0) {
+			return null;
+		}
+		return Double.valueOf(m_values[position]);
+	}
+
+	@Override
+	public double getValue(R row, C column) {
+		final int position = getPosition(rowIndex(row), columnIndex(column));
+		if (position < 0) {
+			throw new IllegalStateException("Expected value at " + row + ", " + column + ".");
+		}
+		return m_values[position];
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_values.length;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return m_values.length == (long) m_rows.length * m_columns.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_values.length == 0;
+	}
+
+	@Override
+	public int rowIndex(R row) {
+		final Integer index = m_rowIndexes.get(row);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		final Integer index = m_columnIndexes.get(column);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public int getRowBound() {
+		return m_rows.length;
+	}
+
+	@Override
+	public int getColumnBound() {
+		return m_columns.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public R getRow(int rowIndex) {
+		return (R) m_rows[rowIndex];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public C getColumn(int columnIndex) {
+		return (C) m_columns[columnIndex];
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		return getPosition(rowIndex, columnIndex) >= 0;
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		final int position = getPosition(rowIndex, columnIndex);
+		if (position < 0) {
+			throw new IllegalStateException("Expected value at index " + rowIndex + ", " + columnIndex + ".");
+		}
+		return m_values[position];
+	}
+
+	@Override
+	public boolean forEachValue(ValueVisitor visitor) {
+		checkNotNull(visitor);
+		for (int row = 0; row < m_rows.length; ++row) {
+			for (int position = m_rowStarts[row]; position < m_rowStarts[row + 1]; ++position) {
+				if (!visitor.visit(row, m_valueColumns[position], m_values[position])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SparseMatrixDRead<?, ?>)) {
+			return false;
+		}
+		final SparseMatrixDRead<?, ?> m2 = (SparseMatrixDRead<?, ?>) obj;
+		return asTable().equals(m2.asTable());
+	}
+
+	@Override
+	public int hashCode() {
+		return asTable().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		final ToStringHelper helper = Objects.toStringHelper(this);
+		helper.addValue(Matrixes.toString(this));
+		return helper.toString();
+	}
+
+}
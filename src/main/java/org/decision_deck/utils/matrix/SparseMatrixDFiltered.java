@@ -14,7 +14,30 @@ import com.google.common.collect.Table;
 import com.google.common.collect.Table.Cell;
 import com.google.common.collect_suppl.TablesFilters;
 
-public class SparseMatrixDFiltered<R, C> implements SparseMatrixDRead<R, C> {
+/**
+ * <p>
+ * A read-only view of a matrix restricted to the rows and columns satisfying
+ * given predicates.
+ * </p>
+ * <p>
+ * The indexes of this matrix are those of the delegate. As a consequence, the
+ * index based methods may return indexes for rows or columns which are excluded
+ * from this view (and which hold no value in this view). When the delegate
+ * implements {@link SparseMatrixDIndexedRead}, or is a forwarding matrix of this
+ * package reading through to such a matrix, the index based methods read that
+ * matrix directly and do not allocate. Otherwise, each call to an index based
+ * method assigns the indexes anew to the rows and columns the delegate currently
+ * has, in a time linear in their number; {@link Matrixes#asIndexed} then indexes
+ * this view once instead, so that the algorithms of {@link Matrixes} remain
+ * efficient.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+public class SparseMatrixDFiltered<R, C> implements SparseMatrixDIndexedRead<R, C> {
 
 	private final SparseMatrixDRead<R, C> m_delegate;
 	/**
@@ -23,6 +46,12 @@ public class SparseMatrixDFiltered<R, C> implements SparseMatrixDRead<R, C> {
 	private final Predicate<R> m_rowPredicate;
 	private final Predicate<C> m_columnPredicate;
 
+	/**
+	 * The matrix the delegate reads through to, if it is natively indexed,
+	 * otherwise {@code null}.
+	 */
+	private final SparseMatrixDIndexedRead<R, C> m_indexedDelegate;
+
 	@Override
 	public String toString() {
 		final ToStringHelper helper = Objects.toStringHelper(this);
@@ -51,6 +80,7 @@ public class SparseMatrixDFiltered<R, C> implements SparseMatrixDRead<R, C> {
 		m_delegate = delegate;
 		m_rowPredicate = rowPredicate == null ? Predicates.<R>alwaysTrue() : rowPredicate;
 		m_columnPredicate = columnPredicate == null ? Predicates.<C>alwaysTrue() : columnPredicate;
+		m_indexedDelegate = Matrixes.getNativelyIndexed(delegate);
 	}
 
 	@Override
@@ -212,4 +242,104 @@ public class SparseMatrixDFiltered<R, C> implements SparseMatrixDRead<R, C> {
 		return entry.doubleValue();
 	}
 
+	/**
+	 * @return {@code true} iff the index based methods of this view read a natively
+	 *         indexed matrix.
+	 */
+	boolean hasNativeIndexes() {
+		return m_indexedDelegate != null;
+	}
+
+	/**
+	 * Returns the natively indexed matrix the delegate reads through to, or, if
+	 * there is none, an adapter indexing the current rows and columns of the
+	 * delegate. The adapter is not kept, as it would not see later changes of the
+	 * delegate.
+	 */
+	private SparseMatrixDIndexedRead<R, C> getIndexedDelegate() {
+		return m_indexedDelegate != null ? m_indexedDelegate : Matrixes.asIndexed(m_delegate);
+	}
+
+	@Override
+	public int rowIndex(R row) {
+		if (row == null || !m_rowPredicate.apply(row)) {
+			return -1;
+		}
+		return getIndexedDelegate().rowIndex(row);
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		if (column == null || !m_columnPredicate.apply(column)) {
+			return -1;
+		}
+		return getIndexedDelegate().columnIndex(column);
+	}
+
+	@Override
+	public int getRowBound() {
+		return getIndexedDelegate().getRowBound();
+	}
+
+	@Override
+	public int getColumnBound() {
+		return getIndexedDelegate().getColumnBound();
+	}
+
+	@Override
+	public R getRow(int rowIndex) {
+		final R row = getIndexedDelegate().getRow(rowIndex);
+		return row != null && m_rowPredicate.apply(row) ? row : null;
+	}
+
+	@Override
+	public C getColumn(int columnIndex) {
+		final C column = getIndexedDelegate().getColumn(columnIndex);
+		return column != null && m_columnPredicate.apply(column) ? column : null;
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		final SparseMatrixDIndexedRead<R, C> delegate = getIndexedDelegate();
+		if (!delegate.hasValue(rowIndex, columnIndex)) {
+			return false;
+		}
+		return m_rowPredicate.apply(delegate.getRow(rowIndex))
+				&& m_columnPredicate.apply(delegate.getColumn(columnIndex));
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		if (!hasValue(rowIndex, columnIndex)) {
+			throw new IllegalArgumentException("No value at index " + rowIndex + ", " + columnIndex + ".");
+		}
+		return getIndexedDelegate().getValue(rowIndex, columnIndex);
+	}
+
+	@Override
+	public boolean forEachValue(final ValueVisitor visitor) {
+		checkNotNull(visitor);
+		final SparseMatrixDIndexedRead<R, C> delegate = getIndexedDelegate();
+		/** Evaluates the predicates once per index rather than once per value. */
+		final boolean[] rowsKept = new boolean[delegate.getRowBound()];
+		for (int rowIndex = 0; rowIndex < rowsKept.length; ++rowIndex) {
+			final R row = delegate.getRow(rowIndex);
+			rowsKept[rowIndex] = row != null && m_rowPredicate.apply(row);
+		}
+		final boolean[] columnsKept = new boolean[delegate.getColumnBound()];
+		for (int columnIndex = 0; columnIndex < columnsKept.length; ++columnIndex) {
+			final C column = delegate.getColumn(columnIndex);
+			columnsKept[columnIndex] = column != null && m_columnPredicate.apply(column);
+		}
+		return delegate.forEachValue(new ValueVisitor() {
+			@Override
+			public boolean visit(int row, int column, double value) {
+				if (!rowsKept[row] || !columnsKept[column]) {
+					return true;
+				}
+				return visitor.visit(row, column, value);
+			}
+		});
+	}
+
 }
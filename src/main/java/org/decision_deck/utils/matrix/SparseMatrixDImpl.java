@@ -1,9 +1,14 @@
 package org.decision_deck.utils.matrix;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.Collections;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
+import org.decision_deck.utils.collection.KeyIndexer;
+
 import com.google.common.base.Objects;
 import com.google.common.base.Objects.ToStringHelper;
 import com.google.common.base.Supplier;
@@ -12,7 +17,25 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
 
-public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C> {
+/**
+ * <p>
+ * A matrix storing its values in a table of hash maps, appropriate for matrixes
+ * which have few values compared to their number of positions.
+ * </p>
+ * <p>
+ * The rows and columns are interned to int indexes as they are added, and an
+ * index is freed when the last value of its row or column is removed, thus a
+ * modification of this matrix changes the index of no other row or column.
+ * Reading a value through the {@link SparseMatrixDIndexedRead} methods still
+ * looks up the hash maps holding the values.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the row type.
+ * @param <C> the column type.
+ */
+public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C>, SparseMatrixDIndexedRead<R, C> {
 
 	private final Table<R, C, Double> m_table = Tables.newCustomTable(Maps.<R, Map<C, Double>>newLinkedHashMap(),
 			new Supplier<Map<C, Double>>() {
@@ -22,14 +45,25 @@ public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C> {
 				}
 			});
 
+	private final Table<R, C, Double> m_tableView = Tables.unmodifiableTable(m_table);
+
+	/**
+	 * The rows, each counted by its number of values.
+	 */
+	private final KeyIndexer<R> m_rows = new KeyIndexer<R>();
+
+	/**
+	 * The columns, each counted by its number of values.
+	 */
+	private final KeyIndexer<C> m_columns = new KeyIndexer<C>();
+
 	SparseMatrixDImpl() {
 		/** Should be created through factory. */
 	}
 
 	@Override
 	public Table<R, C, Double> asTable() {
-		/** TODO return an read-only view */
-		return m_table;
+		return m_tableView;
 	}
 
 	@Override
@@ -69,7 +103,12 @@ public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C> {
 
 	@Override
 	public Double remove(R row, C column) {
-		return m_table.remove(row, column);
+		final Double previous = m_table.remove(row, column);
+		if (previous != null) {
+			m_rows.decrement(m_rows.indexOf(row));
+			m_columns.decrement(m_columns.indexOf(column));
+		}
+		return previous;
 	}
 
 	@Override
@@ -89,7 +128,12 @@ public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C> {
 	 *         mapping existed for the keys
 	 */
 	public Double doPut(R row, C column, double value) {
-		return m_table.put(row, column, Double.valueOf(value));
+		final Double previous = m_table.put(row, column, Double.valueOf(value));
+		if (previous == null) {
+			m_rows.increment(m_rows.intern(row));
+			m_columns.increment(m_columns.intern(column));
+		}
+		return previous;
 	}
 
 	@Override
@@ -126,6 +170,10 @@ public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C> {
 
 	@Override
 	public boolean removeColumn(C column) {
+		for (R row : m_table.column(column).keySet()) {
+			m_rows.decrement(m_rows.indexOf(row));
+		}
+		m_columns.remove(column);
 		return m_table.columnKeySet().remove(column);
 		// if (!getColumns().contains(column)) {
 		// return false;
@@ -145,4 +193,62 @@ public class SparseMatrixDImpl<R, C> implements SparseMatrixD<R, C> {
 		throw new IllegalStateException("Expected value at " + row + ", " + column + ".");
 	}
 
+	@Override
+	public int rowIndex(R row) {
+		return m_rows.indexOf(row);
+	}
+
+	@Override
+	public int columnIndex(C column) {
+		return m_columns.indexOf(column);
+	}
+
+	@Override
+	public int getRowBound() {
+		return m_rows.getBound();
+	}
+
+	@Override
+	public int getColumnBound() {
+		return m_columns.getBound();
+	}
+
+	@Override
+	public R getRow(int rowIndex) {
+		return m_rows.getKey(rowIndex);
+	}
+
+	@Override
+	public C getColumn(int columnIndex) {
+		return m_columns.getKey(columnIndex);
+	}
+
+	@Override
+	public boolean hasValue(int rowIndex, int columnIndex) {
+		if (rowIndex < 0 || rowIndex >= m_rows.getBound() || columnIndex < 0
+				|| columnIndex >= m_columns.getBound()) {
+			return false;
+		}
+		return m_table.contains(m_rows.getKey(rowIndex), m_columns.getKey(columnIndex));
+	}
+
+	@Override
+	public double getValue(int rowIndex, int columnIndex) {
+		return getValue(m_rows.getKey(rowIndex), m_columns.getKey(columnIndex));
+	}
+
+	@Override
+	public boolean forEachValue(ValueVisitor visitor) {
+		checkNotNull(visitor);
+		for (Entry<R, Map<C, Double>> row : m_table.rowMap().entrySet()) {
+			final int rowIndex = m_rows.indexOf(row.getKey());
+			for (Entry<C, Double> entry : row.getValue().entrySet()) {
+				if (!visitor.visit(rowIndex, m_columns.indexOf(entry.getKey()), entry.getValue().doubleValue())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 }
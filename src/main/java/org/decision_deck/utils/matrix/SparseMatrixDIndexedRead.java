@@ -0,0 +1,119 @@
+package org.decision_deck.utils.matrix;
+
+/**
+ * <P>
+ * A matrix which, in addition to the {@link SparseMatrixDRead} methods, gives
+ * access to its values through int indexes designating its rows and columns.
+ * The index based methods use primitive types only and thus do not allocate
+ * objects, which makes them appropriate for intensive reading.
+ * </P>
+ * <P>
+ * Each row of this matrix is associated with a row index, which is non negative
+ * and lower than {@link #getRowBound()}, and similarly for columns. Some indexes
+ * in that range may be unused, in which case no value exists at positions using
+ * them. The indexes are only valid as long as this matrix is not modified: a
+ * modification of the matrix (or, for a view, of the underlying matrix) may
+ * change the index of every row and column.
+ * </P>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <R> the type of objects used to designate the row part of a position.
+ * @param <C> the type of objects used to designate the column part of a
+ *        position.
+ */
+public interface SparseMatrixDIndexedRead<R, C> extends SparseMatrixDRead<R, C> {
+	/**
+	 * Receives the values of a matrix, one at a time.
+	 *
+	 * @see SparseMatrixDIndexedRead#forEachValue(ValueVisitor)
+	 */
+	public interface ValueVisitor {
+		/**
+		 * Called for each value in the visited matrix.
+		 *
+		 * @param row    the row index of the value.
+		 * @param column the column index of the value.
+		 * @param value  the value.
+		 * @return {@code false} to stop the visit, {@code true} to continue.
+		 */
+		public boolean visit(int row, int column, double value);
+	}
+
+	/**
+	 * Retrieves the index associated with the given row.
+	 *
+	 * @param row may be {@code null}.
+	 * @return the index of the given row, or {@code -1} if the given object is
+	 *         not a row of this matrix. Some implementations may also return an
+	 *         index for an object which is not a row, in which case no value exists
+	 *         at that index.
+	 */
+	public int rowIndex(R row);
+
+	/**
+	 * Retrieves the index associated with the given column.
+	 *
+	 * @param column may be {@code null}.
+	 * @return the index of the given column, or {@code -1} if the given object
+	 *         is not a column of this matrix. Some implementations may also return
+	 *         an index for an object which is not a column, in which case no value
+	 *         exists at that index.
+	 */
+	public int columnIndex(C column);
+
+	/**
+	 * @return an upper bound (exclusive) of the row indexes.
+	 */
+	public int getRowBound();
+
+	/**
+	 * @return an upper bound (exclusive) of the column indexes.
+	 */
+	public int getColumnBound();
+
+	/**
+	 * Retrieves the row associated with the given index.
+	 *
+	 * @param rowIndex a non negative index lower than the row bound.
+	 * @return the row, or {@code null} if the index is unused.
+	 */
+	public R getRow(int rowIndex);
+
+	/**
+	 * Retrieves the column associated with the given index.
+	 *
+	 * @param columnIndex a non negative index lower than the column bound.
+	 * @return the column, or {@code null} if the index is unused.
+	 */
+	public C getColumn(int columnIndex);
+
+	/**
+	 * Checks whether a value exists at the given position.
+	 *
+	 * @param rowIndex    any int.
+	 * @param columnIndex any int.
+	 * @return {@code true} iff a value exists at that position.
+	 */
+	public boolean hasValue(int rowIndex, int columnIndex);
+
+	/**
+	 * Returns the value at the given position. Throws an exception if there is
+	 * none.
+	 *
+	 * @param rowIndex    a non negative index lower than the row bound.
+	 * @param columnIndex a non negative index lower than the column bound.
+	 * @return the double value at that position.
+	 */
+	public double getValue(int rowIndex, int columnIndex);
+
+	/**
+	 * Gives each value of this matrix to the given visitor, until the visitor asks
+	 * to stop. The matrix must not be modified during the visit.
+	 *
+	 * @param visitor not {@code null}.
+	 * @return {@code true} iff every value has been visited, equivalently, iff
+	 *         the visitor never returned {@code false}.
+	 */
+	public boolean forEachValue(ValueVisitor visitor);
+}
@@ -0,0 +1,435 @@
+package org.decision_deck.utils.relation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.decision_deck.utils.Pair;
+import org.decision_deck.utils.collection.KeyIndexer;
+
+import com.google.common.base.Objects;
+
+/**
+ * <p>
+ * A binary relation storing its pairs as bits. The elements of the from set and
+ * of the to set are interned to dense int indexes, and each element of the from
+ * set is associated to a row of bits indexed by the elements of the to set,
+ * stored as an array of {@code long}. Checking whether a pair is related takes
+ * constant time and does not allocate memory, and the relation uses one bit per
+ * possible pair instead of an object per related pair.
+ * </p>
+ * <p>
+ * The from and to sets iterate in insertion order, as with
+ * {@link BinaryRelationImpl}. The related pairs iterate by from element, in the
+ * order of the from set, then by index of the to element, which, when no
+ * element has been removed from the to set, is the order of the to set. The
+ * pairs are created during the iteration.
+ * </p>
+ * <p>
+ * The from and to sets are views that support addition and removal. Removing an
+ * element from one of these sets also removes the pairs it belongs to, and frees
+ * its index, which may be reused by an element added later. This differs from
+ * {@link BinaryRelationImpl}, whose pairs are kept when an element is removed
+ * from its from or to set; {@link BinaryRelationSparse} behaves as this class.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <F> the from elements.
+ * @param <T> the to elements.
+ */
+public class BinaryRelationBits<F, T> implements BinaryRelation<F, T> {
+
+	/**
+	 * <p>
+	 * A set of elements interned to dense indexes. Indexes are between zero
+	 * (inclusive) and {@link #getBound()} (exclusive); some indexes in that range
+	 * may be unused.
+	 * </p>
+	 *
+	 * @param <K> the type of elements.
+	 */
+	private abstract static class Domain<K> extends AbstractSet<K> {
+		private final KeyIndexer<K> m_indexer = new KeyIndexer<K>();
+
+		/**
+		 * Called when the given index is released, before it is made available for
+		 * reuse. The implementation must clear every bit associated to that index.
+		 *
+		 * @param index a used index.
+		 */
+		abstract void clearIndex(int index);
+
+		/**
+		 * @param key may be {@code null}.
+		 * @return the index, or {@code -1} iff the key is unknown.
+		 */
+		int indexOf(Object key) {
+			return m_indexer.indexOf(key);
+		}
+
+		/**
+		 * Retrieves the index of the given key, assigning a new index to it if it
+		 * is unknown.
+		 *
+		 * @param key not {@code null}.
+		 * @return a non negative index.
+		 */
+		int intern(K key) {
+			return m_indexer.intern(key);
+		}
+
+		/**
+		 * @param index a used index.
+		 * @return the key currently associated with the given index.
+		 */
+		K getKey(int index) {
+			return m_indexer.getKey(index);
+		}
+
+		int getBound() {
+			return m_indexer.getBound();
+		}
+
+		@Override
+		public boolean add(K key) {
+			if (m_indexer.indexOf(key) >= 0) {
+				return false;
+			}
+			intern(key);
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object key) {
+			final int index = m_indexer.indexOf(key);
+			if (index < 0) {
+				return false;
+			}
+			clearIndex(index);
+			m_indexer.remove(key);
+			return true;
+		}
+
+		@Override
+		public boolean contains(Object key) {
+			return m_indexer.indexOf(key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return m_indexer.size();
+		}
+
+		@Override
+		public void clear() {
+			final Iterator<K> iterator = iterator();
+			while (iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+
+		@Override
+		public Iterator<K> iterator() {
+			final Iterator<K> keys = m_indexer.keyIterator();
+			return new Iterator<K>() {
+				private int m_last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return keys.hasNext();
+				}
+
+				@Override
+				public K next() {
+					final K key = keys.next();
+					m_last = m_indexer.indexOf(key);
+					return key;
+				}
+
+				@Override
+				public void remove() {
+					checkState(m_last >= 0);
+					clearIndex(m_last);
+					keys.remove();
+					m_last = -1;
+				}
+			};
+		}
+	}
+
+	private static final long[] NO_BITS = new long[0];
+
+	private final Domain<F> m_from = new Domain<F>() {
+		@Override
+		int intern(F key) {
+			final int index = super.intern(key);
+			if (index >= m_rows.length) {
+				m_rows = Arrays.copyOf(m_rows, m_rows.length * 2);
+			}
+			if (m_rows[index] == null) {
+				m_rows[index] = NO_BITS;
+			}
+			return index;
+		}
+
+		@Override
+		void clearIndex(int index) {
+			for (long word : m_rows[index]) {
+				m_size -= Long.bitCount(word);
+			}
+			m_rows[index] = NO_BITS;
+		}
+	};
+
+	private final Domain<T> m_to = new Domain<T>() {
+		@Override
+		void clearIndex(int index) {
+			final int w = index >>> 6;
+			final long mask = 1L << index;
+			for (int i = 0; i < m_from.getBound(); ++i) {
+				final long[] row = m_rows[i];
+				if (w < row.length && (row[w] & mask) != 0) {
+					row[w] &= ~mask;
+					--m_size;
+				}
+			}
+		}
+	};
+
+	/**
+	 * For each from index lower than the bound of the from set, the to indexes
+	 * it is related to, as a bit set. A row grows when a bit beyond its end is
+	 * set; the rows of unused indexes are empty.
+	 */
+	private long[][] m_rows = new long[4][];
+
+	/**
+	 * The number of related pairs.
+	 */
+	private int m_size = 0;
+
+	private final Set<Pair<F, T>> m_pairs = new AbstractSet<Pair<F, T>>() {
+		@Override
+		public Iterator<Pair<F, T>> iterator() {
+			return new PairIterator();
+		}
+
+		@Override
+		public int size() {
+			return m_size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Pair<?, ?>)) {
+				return false;
+			}
+			final Pair<?, ?> pair = (Pair<?, ?>) o;
+			return isSet(m_from.indexOf(pair.getElt1()), m_to.indexOf(pair.getElt2()));
+		}
+
+		@Override
+		public boolean add(Pair<F, T> pair) {
+			return set(pair.getElt1(), pair.getElt2());
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!(o instanceof Pair<?, ?>)) {
+				return false;
+			}
+			final Pair<?, ?> pair = (Pair<?, ?>) o;
+			return unset(m_from.indexOf(pair.getElt1()), m_to.indexOf(pair.getElt2()));
+		}
+
+		@Override
+		public void clear() {
+			for (int i = 0; i < m_from.getBound(); ++i) {
+				Arrays.fill(m_rows[i], 0L);
+			}
+			m_size = 0;
+		}
+	};
+
+	private class PairIterator implements Iterator<Pair<F, T>> {
+		private final Iterator<F> m_fromKeys = m_from.m_indexer.keySet().iterator();
+
+		private int m_row = -1;
+
+		/**
+		 * The index of the current word in the current row.
+		 */
+		private int m_word = -1;
+
+		/**
+		 * The bits of the current word that remain to be returned.
+		 */
+		private long m_remaining = 0;
+
+		private int m_lastRow = -1;
+
+		private int m_lastColumn = -1;
+
+		@Override
+		public boolean hasNext() {
+			while (m_remaining == 0) {
+				if (m_row >= 0 && m_word + 1 < m_rows[m_row].length) {
+					++m_word;
+					m_remaining = m_rows[m_row][m_word];
+				} else if (m_fromKeys.hasNext()) {
+					m_row = m_from.indexOf(m_fromKeys.next());
+					m_word = -1;
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Pair<F, T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final int column = (m_word << 6) + Long.numberOfTrailingZeros(m_remaining);
+			m_remaining &= m_remaining - 1;
+			m_lastRow = m_row;
+			m_lastColumn = column;
+			return Pair.create(m_from.getKey(m_row), m_to.getKey(column));
+		}
+
+		@Override
+		public void remove() {
+			checkState(m_lastRow >= 0);
+			final boolean done = unset(m_lastRow, m_lastColumn);
+			assert done;
+			m_lastRow = -1;
+		}
+	}
+
+	static public <F, T> BinaryRelationBits<F, T> create() {
+		return new BinaryRelationBits<F, T>();
+	}
+
+	/**
+	 * Creates a new relation containing the same from set, to set and related
+	 * pairs as the given one.
+	 *
+	 * @param          <F> the from elements.
+	 * @param          <T> the to elements.
+	 * @param source not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <F, T> BinaryRelationBits<F, T> copyOf(BinaryRelation<F, T> source) {
+		final BinaryRelationBits<F, T> copy = new BinaryRelationBits<F, T>();
+		copy.getFrom().addAll(source.getFrom());
+		copy.getTo().addAll(source.getTo());
+		for (Pair<F, T> pair : source.asPairs()) {
+			copy.set(pair.getElt1(), pair.getElt2());
+		}
+		return copy;
+	}
+
+	private boolean isSet(int row, int column) {
+		if (row < 0 || column < 0) {
+			return false;
+		}
+		final long[] bits = m_rows[row];
+		final int w = column >>> 6;
+		return w < bits.length && (bits[w] & (1L << column)) != 0;
+	}
+
+	/**
+	 * Relates the given elements, adding them to the from and to sets if
+	 * necessary.
+	 *
+	 * @return {@code true} iff the pair was not related yet.
+	 */
+	private boolean set(F from, T to) {
+		final int row = m_from.intern(from);
+		final int column = m_to.intern(to);
+		final int w = column >>> 6;
+		if (w >= m_rows[row].length) {
+			m_rows[row] = Arrays.copyOf(m_rows[row], Math.max(m_rows[row].length * 2, w + 1));
+		}
+		final long mask = 1L << column;
+		if ((m_rows[row][w] & mask) != 0) {
+			return false;
+		}
+		m_rows[row][w] |= mask;
+		++m_size;
+		return true;
+	}
+
+	private boolean unset(int row, int column) {
+		if (!isSet(row, column)) {
+			return false;
+		}
+		m_rows[row][column >>> 6] &= ~(1L << column);
+		--m_size;
+		return true;
+	}
+
+	@Override
+	public Iterator<Pair<F, T>> iterator() {
+		return m_pairs.iterator();
+	}
+
+	@Override
+	public Set<F> getFrom() {
+		return m_from;
+	}
+
+	@Override
+	public Set<T> getTo() {
+		return m_to;
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_from.size() * m_to.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_from.isEmpty() && m_to.isEmpty();
+	}
+
+	@Override
+	public Set<Pair<F, T>> asPairs() {
+		return m_pairs;
+	}
+
+	@Override
+	public boolean contains(F from, T to) {
+		checkNotNull(from);
+		checkNotNull(to);
+		return isSet(m_from.indexOf(from), m_to.indexOf(to));
+	}
+
+	@Override
+	public String toString() {
+		return asPairs().toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof BinaryRelation<?, ?>)) {
+			return false;
+		}
+		final BinaryRelation<?, ?> b2 = (BinaryRelation<?, ?>) obj;
+		return b2.getFrom().equals(m_from) && b2.getTo().equals(m_to) && b2.asPairs().equals(m_pairs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(m_from, m_to, m_pairs);
+	}
+}
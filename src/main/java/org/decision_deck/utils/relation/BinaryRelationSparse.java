@@ -0,0 +1,409 @@
+package org.decision_deck.utils.relation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.decision_deck.utils.Pair;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * A binary relation indexing its pairs by from element and by to element, meant
+ * for sparse relations. Each element of the from set is associated to the set
+ * of its successors, the to elements it is related to, and each element of the
+ * to set is associated to the set of its predecessors. The neighbourhood of an
+ * element is thus obtained, through {@link #successors(Object)} and
+ * {@link #predecessors(Object)}, in constant time and without scanning the
+ * related pairs. Checking whether a pair is related does not allocate memory.
+ * </p>
+ * <p>
+ * As required by {@link BinaryRelation#asPairs()}, removing a pair does not
+ * modify the from and to sets. The from and to sets are views that support
+ * addition and removal. Removing an element from one of these sets also removes
+ * the pairs it belongs to, so that the from and to sets, the related pairs and
+ * the neighbourhoods always agree.
+ * </p>
+ * <p>
+ * The from and to sets and the neighbourhoods iterate in insertion order. The
+ * related pairs iterate by from element, in the order of the from set, then in
+ * the order of the successors of that element. The pairs are created during the
+ * iteration.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <F> the from elements.
+ * @param <T> the to elements.
+ */
+public class BinaryRelationSparse<F, T> implements BinaryRelation<F, T> {
+
+	/**
+	 * A read-only view of the neighbours of an element, which is looked up at each
+	 * access: the view stays valid when the element is removed then added back.
+	 *
+	 * @param <K> the type of the element.
+	 * @param <O> the type of its neighbours.
+	 */
+	private static class Neighbours<K, O> extends AbstractSet<O> {
+		private final Map<K, Set<O>> m_index;
+
+		private final K m_key;
+
+		public Neighbours(Map<K, Set<O>> index, K key) {
+			m_index = checkNotNull(index);
+			m_key = checkNotNull(key);
+		}
+
+		private Set<O> get() {
+			final Set<O> neighbours = m_index.get(m_key);
+			if (neighbours == null) {
+				return Collections.emptySet();
+			}
+			return neighbours;
+		}
+
+		@Override
+		public Iterator<O> iterator() {
+			return Iterators.unmodifiableIterator(get().iterator());
+		}
+
+		@Override
+		public int size() {
+			return get().size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return get().isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return get().contains(o);
+		}
+	}
+
+	/**
+	 * A view of the from or to set, whose elements are the keys of the given
+	 * index.
+	 *
+	 * @param <K> the type of the elements of this set.
+	 * @param <O> the type of the elements of the other set.
+	 */
+	private class Domain<K, O> extends AbstractSet<K> {
+		private final Map<K, Set<O>> m_index;
+
+		private final Map<O, Set<K>> m_reverse;
+
+		public Domain(Map<K, Set<O>> index, Map<O, Set<K>> reverse) {
+			m_index = index;
+			m_reverse = reverse;
+		}
+
+		/**
+		 * Removes the given element from the neighbourhoods of its neighbours, and
+		 * counts the pairs thus removed.
+		 */
+		private void unlink(K key, Set<O> neighbours) {
+			for (O neighbour : neighbours) {
+				final boolean done = m_reverse.get(neighbour).remove(key);
+				assert done;
+			}
+			m_size -= neighbours.size();
+		}
+
+		@Override
+		public boolean add(K key) {
+			checkNotNull(key);
+			if (m_index.containsKey(key)) {
+				return false;
+			}
+			m_index.put(key, Sets.<O> newLinkedHashSet());
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object key) {
+			final Set<O> neighbours = m_index.remove(key);
+			if (neighbours == null) {
+				return false;
+			}
+			@SuppressWarnings("unchecked")
+			final K k = (K) key;
+			unlink(k, neighbours);
+			return true;
+		}
+
+		@Override
+		public boolean contains(Object key) {
+			return m_index.containsKey(key);
+		}
+
+		@Override
+		public int size() {
+			return m_index.size();
+		}
+
+		@Override
+		public Iterator<K> iterator() {
+			final Iterator<Map.Entry<K, Set<O>>> entries = m_index.entrySet().iterator();
+			return new Iterator<K>() {
+				private Map.Entry<K, Set<O>> m_last;
+
+				@Override
+				public boolean hasNext() {
+					return entries.hasNext();
+				}
+
+				@Override
+				public K next() {
+					m_last = entries.next();
+					return m_last.getKey();
+				}
+
+				@Override
+				public void remove() {
+					checkState(m_last != null);
+					entries.remove();
+					unlink(m_last.getKey(), m_last.getValue());
+					m_last = null;
+				}
+			};
+		}
+	}
+
+	/**
+	 * The keys are the from set.
+	 */
+	private final Map<F, Set<T>> m_successors = Maps.newLinkedHashMap();
+
+	/**
+	 * The keys are the to set.
+	 */
+	private final Map<T, Set<F>> m_predecessors = Maps.newLinkedHashMap();
+
+	/**
+	 * The number of related pairs.
+	 */
+	private int m_size = 0;
+
+	private final Set<F> m_from = new Domain<F, T>(m_successors, m_predecessors);
+
+	private final Set<T> m_to = new Domain<T, F>(m_predecessors, m_successors);
+
+	private final Set<Pair<F, T>> m_pairs = new AbstractSet<Pair<F, T>>() {
+		@Override
+		public Iterator<Pair<F, T>> iterator() {
+			return new PairIterator();
+		}
+
+		@Override
+		public int size() {
+			return m_size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Pair<?, ?>)) {
+				return false;
+			}
+			final Pair<?, ?> pair = (Pair<?, ?>) o;
+			final Set<T> successors = m_successors.get(pair.getElt1());
+			return successors != null && successors.contains(pair.getElt2());
+		}
+
+		@Override
+		public boolean add(Pair<F, T> pair) {
+			final F from = pair.getElt1();
+			final T to = pair.getElt2();
+			m_from.add(from);
+			m_to.add(to);
+			if (!m_successors.get(from).add(to)) {
+				return false;
+			}
+			m_predecessors.get(to).add(from);
+			++m_size;
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!(o instanceof Pair<?, ?>)) {
+				return false;
+			}
+			final Pair<?, ?> pair = (Pair<?, ?>) o;
+			final Set<T> successors = m_successors.get(pair.getElt1());
+			if (successors == null || !successors.remove(pair.getElt2())) {
+				return false;
+			}
+			m_predecessors.get(pair.getElt2()).remove(pair.getElt1());
+			--m_size;
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			for (Set<T> successors : m_successors.values()) {
+				successors.clear();
+			}
+			for (Set<F> predecessors : m_predecessors.values()) {
+				predecessors.clear();
+			}
+			m_size = 0;
+		}
+	};
+
+	private class PairIterator implements Iterator<Pair<F, T>> {
+		private final Iterator<Map.Entry<F, Set<T>>> m_entries = m_successors.entrySet().iterator();
+
+		private F m_from;
+
+		private Iterator<T> m_current = Collections.emptyIterator();
+
+		private Pair<F, T> m_last;
+
+		@Override
+		public boolean hasNext() {
+			while (!m_current.hasNext()) {
+				if (!m_entries.hasNext()) {
+					return false;
+				}
+				final Map.Entry<F, Set<T>> entry = m_entries.next();
+				m_from = entry.getKey();
+				m_current = entry.getValue().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public Pair<F, T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			m_last = Pair.create(m_from, m_current.next());
+			return m_last;
+		}
+
+		@Override
+		public void remove() {
+			checkState(m_last != null);
+			m_current.remove();
+			m_predecessors.get(m_last.getElt2()).remove(m_last.getElt1());
+			--m_size;
+			m_last = null;
+		}
+	}
+
+	static public <F, T> BinaryRelationSparse<F, T> create() {
+		return new BinaryRelationSparse<F, T>();
+	}
+
+	/**
+	 * Creates a new relation containing the same from set, to set and related
+	 * pairs as the given one.
+	 *
+	 * @param        <F> the from elements.
+	 * @param        <T> the to elements.
+	 * @param source not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <F, T> BinaryRelationSparse<F, T> copyOf(BinaryRelation<F, T> source) {
+		final BinaryRelationSparse<F, T> copy = new BinaryRelationSparse<F, T>();
+		copy.getFrom().addAll(source.getFrom());
+		copy.getTo().addAll(source.getTo());
+		copy.asPairs().addAll(source.asPairs());
+		return copy;
+	}
+
+	/**
+	 * Retrieves the to elements that the given from element is related to. The
+	 * returned set is a read-only view backed by this relation. It is empty when
+	 * the given element is not in the from set.
+	 *
+	 * @param from not {@code null}.
+	 * @return not {@code null}.
+	 */
+	public Set<T> successors(F from) {
+		return new Neighbours<F, T>(m_successors, from);
+	}
+
+	/**
+	 * Retrieves the from elements that are related to the given to element. The
+	 * returned set is a read-only view backed by this relation. It is empty when
+	 * the given element is not in the to set.
+	 *
+	 * @param to not {@code null}.
+	 * @return not {@code null}.
+	 */
+	public Set<F> predecessors(T to) {
+		return new Neighbours<T, F>(m_predecessors, to);
+	}
+
+	@Override
+	public Iterator<Pair<F, T>> iterator() {
+		return m_pairs.iterator();
+	}
+
+	@Override
+	public Set<F> getFrom() {
+		return m_from;
+	}
+
+	@Override
+	public Set<T> getTo() {
+		return m_to;
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_from.size() * m_to.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_from.isEmpty() && m_to.isEmpty();
+	}
+
+	@Override
+	public Set<Pair<F, T>> asPairs() {
+		return m_pairs;
+	}
+
+	@Override
+	public boolean contains(F from, T to) {
+		checkNotNull(from);
+		checkNotNull(to);
+		final Set<T> successors = m_successors.get(from);
+		return successors != null && successors.contains(to);
+	}
+
+	@Override
+	public String toString() {
+		return asPairs().toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof BinaryRelation<?, ?>)) {
+			return false;
+		}
+		final BinaryRelation<?, ?> b2 = (BinaryRelation<?, ?>) obj;
+		return b2.getFrom().equals(m_from) && b2.getTo().equals(m_to) && b2.asPairs().equals(m_pairs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(m_from, m_to, m_pairs);
+	}
+}
@@ -0,0 +1,168 @@
+package org.decision_deck.utils.relation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.decision_deck.utils.Pair;
+
+/**
+ * <p>
+ * Tracks the incomparable pairs of a preorder whose set of elements does not
+ * change, as the preorder is completed. The pairs are considered in the order
+ * of {@link RelationUtils#getIncomp(Preorder)}: a pair (x, y) such that x comes
+ * before y in the from set, sorted by x then by y.
+ * </p>
+ * <p>
+ * For each element x, this object counts the elements after x that are
+ * incomparable to x, and keeps these counts in a Fenwick tree. The pair at a
+ * given position is found by descending the tree to the row of x, then by
+ * counting the bits of the incomparable elements of x, a word of 64 elements at
+ * a time. After pairs are added to the preorder, only the counts of the elements
+ * whose up or down set changed are recomputed.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <E> the type of elements.
+ */
+final class IncomparablePairs<E> {
+	private final PreorderRelation<E> m_relation;
+
+	/**
+	 * The number of elements, fixed.
+	 */
+	private final int m_n;
+
+	/**
+	 * For each element x, the number of elements after x that are incomparable to
+	 * x.
+	 */
+	private final int[] m_counts;
+
+	/**
+	 * The Fenwick tree of the counts, indexed from one.
+	 */
+	private final int[] m_tree;
+
+	private int m_total;
+
+	IncomparablePairs(Preorder<E> preorder) {
+		m_relation = preorder.getRelation();
+		m_n = m_relation.size();
+		m_counts = new int[m_n];
+		m_tree = new int[m_n + 1];
+		m_total = 0;
+		for (int x = 0; x < m_n; ++x) {
+			m_counts[x] = countRow(x);
+			m_total += m_counts[x];
+			for (int i = x + 1; i <= m_n; i += i & -i) {
+				m_tree[i] += m_counts[x];
+			}
+		}
+	}
+
+	/**
+	 * @return the number of incomparable (unordered) pairs.
+	 */
+	int size() {
+		return m_total;
+	}
+
+	/**
+	 * Returns the word w of the elements incomparable to x, restricted to the
+	 * elements after x.
+	 */
+	private long getIncomparableWord(int x, int w) {
+		long word = ~m_relation.getComparableWord(m_relation.find(x), w);
+		if (w == (x + 1) >>> 6) {
+			word &= -1L << (x + 1);
+		}
+		if (w == (m_n - 1) >>> 6 && (m_n & 63) != 0) {
+			word &= (1L << m_n) - 1;
+		}
+		return word;
+	}
+
+	private int countRow(int x) {
+		if (x + 1 >= m_n) {
+			return 0;
+		}
+		int count = 0;
+		for (int w = (x + 1) >>> 6; w <= (m_n - 1) >>> 6; ++w) {
+			count += Long.bitCount(getIncomparableWord(x, w));
+		}
+		return count;
+	}
+
+	/**
+	 * Retrieves the incomparable pair at the given position, in the order of
+	 * {@link RelationUtils#getIncomp(Preorder)}.
+	 *
+	 * @param position a non negative number lower than {@link #size()}.
+	 * @return not {@code null}.
+	 */
+	Pair<E, E> get(int position) {
+		checkArgument(position >= 0 && position < m_total);
+		int remaining = position;
+		/** The number of rows before the row found. */
+		int x = 0;
+		for (int step = Integer.highestOneBit(m_n); step > 0; step >>>= 1) {
+			if (x + step <= m_n && m_tree[x + step] <= remaining) {
+				x += step;
+				remaining -= m_tree[x];
+			}
+		}
+		for (int w = (x + 1) >>> 6;; ++w) {
+			long word = getIncomparableWord(x, w);
+			final int bits = Long.bitCount(word);
+			if (remaining >= bits) {
+				remaining -= bits;
+				continue;
+			}
+			for (int i = 0; i < remaining; ++i) {
+				word &= word - 1;
+			}
+			final int y = (w << 6) + Long.numberOfTrailingZeros(word);
+			return Pair.create(m_relation.getElement(x), m_relation.getElement(y));
+		}
+	}
+
+	/**
+	 * Updates the counts after pairs have been added to the preorder, each pair
+	 * added relating an element below or equivalent to a or b to an element above
+	 * or equivalent to a or b.
+	 *
+	 * @param a an element of the preorder.
+	 * @param b an element of the preorder.
+	 */
+	void update(E a, E b) {
+		final int aIndex = m_relation.indexOf(checkNotNull(a));
+		final int bIndex = m_relation.indexOf(checkNotNull(b));
+		checkArgument(aIndex >= 0 && bIndex >= 0);
+		final long[][] rows = new long[][] { m_relation.getUpRow(aIndex), m_relation.getDownRow(aIndex),
+				m_relation.getUpRow(bIndex), m_relation.getDownRow(bIndex) };
+		final long[] changed = new long[(m_n + 63) >>> 6];
+		for (long[] row : rows) {
+			for (int w = 0; w < row.length; ++w) {
+				changed[w] |= row[w];
+			}
+		}
+		for (int w = 0; w < changed.length; ++w) {
+			long word = changed[w];
+			while (word != 0) {
+				final int x = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				final int count = countRow(x);
+				final int delta = count - m_counts[x];
+				if (delta == 0) {
+					continue;
+				}
+				m_counts[x] = count;
+				m_total += delta;
+				for (int i = x + 1; i <= m_n; i += i & -i) {
+					m_tree[i] += delta;
+				}
+			}
+		}
+	}
+}
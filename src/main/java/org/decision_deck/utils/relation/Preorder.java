@@ -3,11 +3,20 @@ package org.decision_deck.utils.relation;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import org.decision_deck.utils.Pair;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
+ * <p>
  * A reflexive and transitive binary relation. Not necessarily complete.
+ * </p>
+ * <p>
+ * The equivalence classes are kept in a union-find structure, and each class
+ * knows, as bit sets, the elements above and below it. Checking whether a pair
+ * is related thus takes near-constant time. Adding a pair that is not yet
+ * related updates the bit sets of every class below its first element and above
+ * its second one, in a time proportional to the number of classes times the
+ * number of elements divided by 64; adding a pair already related takes
+ * near-constant time. The related pairs are only created when iterated.
+ * </p>
  * 
  * @param <E> the type of elements in this relation.
  * 
@@ -16,15 +25,12 @@ import org.slf4j.LoggerFactory;
 public class Preorder<E> extends BinaryRelationForwarder<E, E> implements BinaryRelation<E, E> {
 
 	/**
-	 * Owned by this object. A preorder: a transitive, reflexive relation.
+	 * Owned by this object.
 	 */
-	private final BinaryRelation<E, E> m_relation;
-
-	private final BinaryRelationRo<E, E> m_relationRo;
+	private final PreorderRelation<E> m_relation;
 
 	public Preorder() {
-		m_relation = new BinaryRelationImpl<E, E>();
-		m_relationRo = new BinaryRelationRo<E, E>(m_relation);
+		m_relation = new PreorderRelation<E>();
 	}
 
 	/**
@@ -37,24 +43,9 @@ public class Preorder<E> extends BinaryRelationForwarder<E, E> implements Binary
 	public void addTransitive(E x, E y) {
 		checkNotNull(x);
 		checkNotNull(y);
-		m_relation.asPairs().add(Pair.create(x, x));
-		m_relation.asPairs().add(Pair.create(y, y));
-		if (contains(x, y)) {
-			return;
-		}
-		for (E w : getFrom()) {
-			if (!contains(w, x)) {
-				continue;
-			}
-			for (E z : getTo()) {
-				if (!contains(y, z)) {
-					continue;
-				}
-				final Pair<E, E> pair = Pair.create(w, z);
-				m_relation.asPairs().add(pair);
-				s_logger.debug("Added pair {}.", pair);
-			}
-		}
+		final int xIndex = m_relation.intern(x);
+		final int yIndex = m_relation.intern(y);
+		m_relation.add(xIndex, yIndex);
 		assert (contains(x, y));
 	}
 
@@ -72,16 +63,22 @@ public class Preorder<E> extends BinaryRelationForwarder<E, E> implements Binary
 
 	@Override
 	protected BinaryRelation<E, E> delegate() {
-		return m_relationRo;
+		return m_relation;
+	}
+
+	/**
+	 * Returns the storage of this preorder, which is read-only.
+	 *
+	 * @return not {@code null}.
+	 */
+	PreorderRelation<E> getRelation() {
+		return m_relation;
 	}
 
 	static public <E> Preorder<E> create() {
 		return new Preorder<E>();
 	}
 
-	@SuppressWarnings({ "unused", "all" })
-	private static final Logger s_logger = LoggerFactory.getLogger(Preorder.class);
-
 	static public <E> Preorder<E> copyOf(BinaryRelation<E, E> source) {
 		final Preorder<E> pr = new Preorder<E>();
 		for (Pair<E, E> pair : source.asPairs()) {
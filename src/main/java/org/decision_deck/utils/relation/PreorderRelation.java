@@ -0,0 +1,437 @@
+package org.decision_deck.utils.relation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.decision_deck.utils.Pair;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * The read-only storage of a {@link Preorder}. Elements are interned to dense
+ * indexes, in insertion order. The equivalence classes of the preorder are kept
+ * in a union-find structure, and each class is associated to two bit sets
+ * indexed by element: the elements it is related to (its up set) and the
+ * elements related to it (its down set). Both include the members of the class
+ * itself. Since the relation is transitive, all members of a class have the
+ * same up and down sets, so that the sets are stored only once per class.
+ * </p>
+ * <p>
+ * Checking whether a pair is related takes near-constant time and does not
+ * allocate memory. Adding a pair (x, y) adds the up set of y to the up set of
+ * every class in the down set of x and, symmetrically, the down set of x to the
+ * down set of every class in the up set of y, a word of 64 elements at a time.
+ * If this creates a cycle, the classes that are now both above and below x are
+ * merged. The related pairs are produced lazily, and their number is
+ * maintained incrementally.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <E> the type of elements in this relation.
+ */
+final class PreorderRelation<E> implements BinaryRelation<E, E> {
+
+	/**
+	 * Insertion-ordered.
+	 */
+	private final Map<E, Integer> m_indexes = Maps.newLinkedHashMap();
+
+	private final Set<E> m_elements = Collections.unmodifiableSet(m_indexes.keySet());
+
+	private Object[] m_keys = new Object[4];
+
+	/**
+	 * The parent of each index in the union-find forest. An index is the root of
+	 * its class iff it is its own parent.
+	 */
+	private int[] m_parents = new int[4];
+
+	/**
+	 * For each root, the number of elements in its class.
+	 */
+	private int[] m_classSizes = new int[4];
+
+	/**
+	 * For each root, the elements its class is related to; {@code null} for the
+	 * other indexes. A row may be shorter than needed to index all elements, the
+	 * missing words being zero.
+	 */
+	private long[][] m_up = new long[4][];
+
+	/**
+	 * For each root, the elements related to its class; {@code null} for the
+	 * other indexes.
+	 */
+	private long[][] m_down = new long[4][];
+
+	/**
+	 * The number of related pairs.
+	 */
+	private int m_size = 0;
+
+	private final Set<Pair<E, E>> m_pairs = new AbstractSet<Pair<E, E>>() {
+		@Override
+		public Iterator<Pair<E, E>> iterator() {
+			return new PairIterator();
+		}
+
+		@Override
+		public int size() {
+			return m_size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Pair<?, ?>)) {
+				return false;
+			}
+			final Pair<?, ?> pair = (Pair<?, ?>) o;
+			return PreorderRelation.this.contains(indexOf(pair.getElt1()), indexOf(pair.getElt2()));
+		}
+	};
+
+	private class PairIterator implements Iterator<Pair<E, E>> {
+		private int m_from = -1;
+
+		private long[] m_row;
+
+		/**
+		 * The index of the current word in the current row.
+		 */
+		private int m_word = -1;
+
+		/**
+		 * The bits of the current word that remain to be returned.
+		 */
+		private long m_remaining = 0;
+
+		@Override
+		public boolean hasNext() {
+			while (m_remaining == 0) {
+				if (m_from >= 0 && m_word + 1 < m_row.length) {
+					++m_word;
+					m_remaining = m_row[m_word];
+				} else if (m_from + 1 < size()) {
+					++m_from;
+					m_row = m_up[find(m_from)];
+					m_word = -1;
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Pair<E, E> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final int to = (m_word << 6) + Long.numberOfTrailingZeros(m_remaining);
+			m_remaining &= m_remaining - 1;
+			return Pair.create(getElement(m_from), getElement(to));
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * @param element may be {@code null}.
+	 * @return the index, or {@code -1} iff the element is unknown.
+	 */
+	int indexOf(Object element) {
+		final Integer index = m_indexes.get(element);
+		return index == null ? -1 : index.intValue();
+	}
+
+	/**
+	 * @param index a non negative index lower than the number of elements.
+	 * @return the element at that index.
+	 */
+	@SuppressWarnings("unchecked")
+	E getElement(int index) {
+		return (E) m_keys[index];
+	}
+
+	/**
+	 * @return the number of elements.
+	 */
+	int size() {
+		return m_indexes.size();
+	}
+
+	/**
+	 * Retrieves the index of the given element, adding it, in relation with
+	 * itself, if it is unknown.
+	 *
+	 * @param element not {@code null}.
+	 * @return a non negative index.
+	 */
+	int intern(E element) {
+		checkNotNull(element);
+		final Integer existing = m_indexes.get(element);
+		if (existing != null) {
+			return existing.intValue();
+		}
+		final int index = m_indexes.size();
+		if (index >= m_keys.length) {
+			final int newLength = m_keys.length * 2;
+			m_keys = Arrays.copyOf(m_keys, newLength);
+			m_parents = Arrays.copyOf(m_parents, newLength);
+			m_classSizes = Arrays.copyOf(m_classSizes, newLength);
+			m_up = Arrays.copyOf(m_up, newLength);
+			m_down = Arrays.copyOf(m_down, newLength);
+		}
+		m_indexes.put(element, Integer.valueOf(index));
+		m_keys[index] = element;
+		m_parents[index] = index;
+		m_classSizes[index] = 1;
+		m_up[index] = new long[(index >>> 6) + 1];
+		m_up[index][index >>> 6] = 1L << index;
+		m_down[index] = new long[(index >>> 6) + 1];
+		m_down[index][index >>> 6] = 1L << index;
+		++m_size;
+		return index;
+	}
+
+	/**
+	 * @param index a valid index.
+	 * @return the root of the class of the given index.
+	 */
+	int find(int index) {
+		int i = index;
+		while (m_parents[i] != i) {
+			m_parents[i] = m_parents[m_parents[i]];
+			i = m_parents[i];
+		}
+		return i;
+	}
+
+	/**
+	 * @param x any int.
+	 * @param y any int.
+	 * @return {@code true} iff both indexes are valid and the element at x is
+	 *         related to the element at y.
+	 */
+	boolean contains(int x, int y) {
+		if (x < 0 || y < 0) {
+			return false;
+		}
+		return isSet(m_up[find(x)], y);
+	}
+
+	/**
+	 * Returns the elements the class of the given index is related to. The
+	 * returned row must not be modified, and may be shorter than needed to index
+	 * all elements, the missing words being zero.
+	 *
+	 * @param index a valid index.
+	 * @return not {@code null}.
+	 */
+	long[] getUpRow(int index) {
+		return m_up[find(index)];
+	}
+
+	/**
+	 * Returns the elements related to the class of the given index. The returned
+	 * row must not be modified, and may be shorter than needed to index all
+	 * elements, the missing words being zero.
+	 *
+	 * @param index a valid index.
+	 * @return not {@code null}.
+	 */
+	long[] getDownRow(int index) {
+		return m_down[find(index)];
+	}
+
+	/**
+	 * Returns a word of the elements comparable to the class of the given root,
+	 * that is, related to it in either direction. This method does not modify
+	 * the union-find structure, and may thus be called concurrently as long as
+	 * this relation is not modified.
+	 *
+	 * @param root a root, as returned by {@link #find(int)}.
+	 * @param w    a non negative word index.
+	 * @return the bits of the elements 64·w to 64·w + 63 that are comparable to
+	 *         the class.
+	 */
+	long getComparableWord(int root, int w) {
+		final long[] up = m_up[root];
+		final long[] down = m_down[root];
+		return (w < up.length ? up[w] : 0L) | (w < down.length ? down[w] : 0L);
+	}
+
+	private static boolean isSet(long[] row, int index) {
+		final int w = index >>> 6;
+		return w < row.length && (row[w] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Relates the element at x to the element at y, and adds all pairs resulting
+	 * from transitivity.
+	 *
+	 * @param x a valid index.
+	 * @param y a valid index.
+	 */
+	void add(int x, int y) {
+		final int rootX = find(x);
+		final int rootY = find(y);
+		if (isSet(m_up[rootX], y)) {
+			return;
+		}
+		/** Copied, as the rows of x and y may be modified while being read. */
+		final long[] upY = m_up[rootY].clone();
+		final long[] downX = m_down[rootX].clone();
+		for (int w = 0; w < downX.length; ++w) {
+			long word = downX[w];
+			while (word != 0) {
+				final int c = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (m_parents[c] == c) {
+					m_size += or(m_up, c, upY) * m_classSizes[c];
+				}
+			}
+		}
+		for (int w = 0; w < upY.length; ++w) {
+			long word = upY[w];
+			while (word != 0) {
+				final int d = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (m_parents[d] == d) {
+					or(m_down, d, downX);
+				}
+			}
+		}
+		if (isSet(m_up[rootY], x)) {
+			mergeCycle(rootX);
+		}
+	}
+
+	/**
+	 * Sets the given row to the disjunction of itself and the given bits.
+	 *
+	 * @return the number of bits added to the row.
+	 */
+	private static int or(long[][] rows, int index, long[] bits) {
+		long[] row = rows[index];
+		if (row.length < bits.length) {
+			row = Arrays.copyOf(row, bits.length);
+			rows[index] = row;
+		}
+		int added = 0;
+		for (int w = 0; w < bits.length; ++w) {
+			added += Long.bitCount(bits[w] & ~row[w]);
+			row[w] |= bits[w];
+		}
+		return added;
+	}
+
+	/**
+	 * Merges into a single class all the classes that are both above and below
+	 * the given one. Their up and down sets are equal, by transitivity, thus the
+	 * related pairs do not change.
+	 *
+	 * @param root a root.
+	 */
+	private void mergeCycle(int root) {
+		final long[] up = m_up[root];
+		final long[] down = m_down[root];
+		int merged = root;
+		final int words = Math.min(up.length, down.length);
+		for (int w = 0; w < words; ++w) {
+			long word = up[w] & down[w];
+			while (word != 0) {
+				final int c = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (m_parents[c] != c || c == merged) {
+					continue;
+				}
+				assert Arrays.equals(trim(m_up[c]), trim(m_up[merged]));
+				final int big = m_classSizes[c] > m_classSizes[merged] ? c : merged;
+				final int small = big == c ? merged : c;
+				m_parents[small] = big;
+				m_classSizes[big] += m_classSizes[small];
+				m_up[small] = null;
+				m_down[small] = null;
+				merged = big;
+			}
+		}
+	}
+
+	private static long[] trim(long[] row) {
+		int length = row.length;
+		while (length > 0 && row[length - 1] == 0) {
+			--length;
+		}
+		return Arrays.copyOf(row, length);
+	}
+
+	@Override
+	public Iterator<Pair<E, E>> iterator() {
+		return m_pairs.iterator();
+	}
+
+	@Override
+	public Set<E> getFrom() {
+		return m_elements;
+	}
+
+	@Override
+	public Set<E> getTo() {
+		return m_elements;
+	}
+
+	@Override
+	public int getValueCount() {
+		return size() * size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_indexes.isEmpty();
+	}
+
+	@Override
+	public Set<Pair<E, E>> asPairs() {
+		return m_pairs;
+	}
+
+	@Override
+	public boolean contains(E from, E to) {
+		checkNotNull(from);
+		checkNotNull(to);
+		return contains(indexOf(from), indexOf(to));
+	}
+
+	@Override
+	public String toString() {
+		return asPairs().toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof BinaryRelation<?, ?>)) {
+			return false;
+		}
+		final BinaryRelation<?, ?> b2 = (BinaryRelation<?, ?>) obj;
+		return b2.getFrom().equals(m_elements) && b2.getTo().equals(m_elements) && b2.asPairs().equals(m_pairs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(m_elements, m_elements, m_pairs);
+	}
+}
@@ -2,37 +2,179 @@ package org.decision_deck.utils.relation;
 
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.decision_deck.utils.Pair;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
 public class RelationUtils {
 
-	public static <E> int getNbIncomparable(Preorder<E> r) {
-		final Set<E> from = r.getFrom();
-		final Set<E> to = r.getTo();
-		int incomp = 0;
-		for (E f : from) {
-			for (E t : to) {
-				if (!r.contains(f, t) && !r.contains(t, f)) {
-					++incomp;
-				}
+	/**
+	 * Maximal number of classes handled by a single task when counting the
+	 * incomparable elements in parallel.
+	 */
+	private static final int CLASSES_PER_TASK = 64;
+
+	/**
+	 * Counts the incomparable elements of the class roots in the given range, by
+	 * halves until the range is small enough.
+	 */
+	private static final class CountTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final PreorderRelation<?> m_relation;
+		private final int[] m_roots;
+		private final int[] m_counts;
+		private final int m_from;
+		private final int m_to;
+
+		public CountTask(PreorderRelation<?> relation, int[] roots, int[] counts, int from, int to) {
+			m_relation = relation;
+			m_roots = roots;
+			m_counts = counts;
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_to - m_from <= CLASSES_PER_TASK) {
+				countIncomparable(m_relation, m_roots, m_counts, m_from, m_to);
+				return;
 			}
+			final int middle = (m_from + m_to) >>> 1;
+			invokeAll(new CountTask(m_relation, m_roots, m_counts, m_from, middle),
+					new CountTask(m_relation, m_roots, m_counts, middle, m_to));
+		}
+	}
+
+	/**
+	 * Counts, for each class root in the given range, the elements that are
+	 * incomparable to that class, as the number of elements minus the number of
+	 * bits set in the union of its up and down sets.
+	 */
+	private static void countIncomparable(PreorderRelation<?> relation, int[] roots, int[] counts, int from,
+			int to) {
+		final int n = relation.size();
+		final int words = (n + 63) >>> 6;
+		for (int i = from; i < to; ++i) {
+			final int root = roots[i];
+			int comparable = 0;
+			for (int w = 0; w < words; ++w) {
+				comparable += Long.bitCount(relation.getComparableWord(root, w));
+			}
+			counts[root] = n - comparable;
+		}
+	}
+
+	/**
+	 * Retrieves the number of incomparable (unordered) pairs of elements in the
+	 * given preorder, computed as half of n² minus the number of bits set in the
+	 * union of the relation and its transpose.
+	 *
+	 * @param   <E> the type of elements.
+	 * @param r not {@code null}.
+	 * @return a non negative number.
+	 */
+	public static <E> int getNbIncomparable(Preorder<E> r) {
+		return getNbIncomparable(r, null);
+	}
+
+	/**
+	 * Retrieves the number of incomparable (unordered) pairs of elements in the
+	 * given preorder, using the given pool, if any, to count in parallel.
+	 *
+	 * @param      <E> the type of elements.
+	 * @param r    not {@code null}.
+	 * @param pool {@code null} for a sequential computation.
+	 * @return a non negative number.
+	 */
+	public static <E> int getNbIncomparable(Preorder<E> r, ForkJoinPool pool) {
+		long incomp = 0;
+		for (int count : getIncomparabilityCounts(r, pool)) {
+			incomp += count;
 		}
 		assert (incomp % 2 == 0);
-		return incomp / 2;
+		return Ints.checkedCast(incomp / 2);
 	}
 
+	/**
+	 * Retrieves, for each element of the given preorder, the number of elements it
+	 * is incomparable to.
+	 *
+	 * @param   <E> the type of elements.
+	 * @param r not {@code null}.
+	 * @return not {@code null}, indexed in the iteration order of the from set of
+	 *         the given preorder.
+	 */
+	public static <E> int[] getIncomparabilityCounts(Preorder<E> r) {
+		return getIncomparabilityCounts(r, null);
+	}
+
+	/**
+	 * Retrieves, for each element of the given preorder, the number of elements it
+	 * is incomparable to, using the given pool, if any, to count in parallel. The
+	 * count is computed once per equivalence class.
+	 *
+	 * @param      <E> the type of elements.
+	 * @param r    not {@code null}.
+	 * @param pool {@code null} for a sequential computation.
+	 * @return not {@code null}, indexed in the iteration order of the from set of
+	 *         the given preorder.
+	 */
+	public static <E> int[] getIncomparabilityCounts(Preorder<E> r, ForkJoinPool pool) {
+		final PreorderRelation<E> relation = r.getRelation();
+		final int n = relation.size();
+		final int[] rootOf = new int[n];
+		final int[] roots = new int[n];
+		int nbRoots = 0;
+		for (int x = 0; x < n; ++x) {
+			rootOf[x] = relation.find(x);
+			if (rootOf[x] == x) {
+				roots[nbRoots] = x;
+				++nbRoots;
+			}
+		}
+		final int[] rootCounts = new int[n];
+		if (pool == null) {
+			countIncomparable(relation, roots, rootCounts, 0, nbRoots);
+		} else {
+			pool.invoke(new CountTask(relation, roots, rootCounts, 0, nbRoots));
+		}
+		final int[] counts = new int[n];
+		for (int x = 0; x < n; ++x) {
+			counts[x] = rootCounts[rootOf[x]];
+		}
+		return counts;
+	}
+
+	/**
+	 * <p>
+	 * Completes the given preorder by repeatedly choosing, using a random
+	 * generator created with the given seed, an incomparable pair among those
+	 * returned by {@link #getIncomp(Preorder)}, and a way of ordering it. The
+	 * same seed always produces the same completion of a given preorder.
+	 * </p>
+	 * <p>
+	 * The incomparable pairs are tracked incrementally rather than listed anew at
+	 * each step.
+	 * </p>
+	 *
+	 * @param    <E> the type of elements.
+	 * @param p    not {@code null}.
+	 * @param seed the seed of the random generator.
+	 */
 	public static <E> void completeRandomly(Preorder<E> p, long seed) {
 		final Random r = new Random(seed);
+		final IncomparablePairs<E> i = new IncomparablePairs<E>(p);
 		while (true) {
-			final Set<Pair<E, E>> i = getIncomp(p);
-			if (i.isEmpty()) {
+			if (i.size() == 0) {
 				break;
 			}
-			final Pair<E, E> randomIncomp = Iterables.get(i, r.nextInt(i.size()));
+			final Pair<E, E> randomIncomp = i.get(r.nextInt(i.size()));
 			final int order = r.nextInt(3);
 			switch (order) {
 			case 0:
@@ -47,15 +189,38 @@ public class RelationUtils {
 			default:
 				throw new IllegalStateException();
 			}
+			i.update(randomIncomp.getElt1(), randomIncomp.getElt2());
 		}
 	}
 
+	/**
+	 * Retrieves the incomparable pairs of elements of the given preorder. Each
+	 * unordered pair is returned once, as a pair (x, y) such that x comes before y
+	 * in the from set, and the pairs are sorted by x then by y.
+	 *
+	 * @param   <E> the type of elements.
+	 * @param p not {@code null}.
+	 * @return not {@code null}.
+	 */
 	public static <E> Set<Pair<E, E>> getIncomp(Preorder<E> p) {
+		final PreorderRelation<E> relation = p.getRelation();
+		final int n = relation.size();
 		final Set<Pair<E, E>> incomp = Sets.newLinkedHashSet();
-		for (E f : p.getFrom()) {
-			for (E t : p.getTo()) {
-				if (!p.contains(f, t) && !p.contains(t, f) && !incomp.contains(Pair.create(t, f))) {
-					incomp.add(Pair.create(f, t));
+		for (int x = 0; x < n - 1; ++x) {
+			final int root = relation.find(x);
+			final E f = relation.getElement(x);
+			for (int w = (x + 1) >>> 6; w <= (n - 1) >>> 6; ++w) {
+				long word = ~relation.getComparableWord(root, w);
+				if (w == (x + 1) >>> 6) {
+					word &= -1L << (x + 1);
+				}
+				if (w == (n - 1) >>> 6 && (n & 63) != 0) {
+					word &= (1L << n) - 1;
+				}
+				while (word != 0) {
+					final int y = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					incomp.add(Pair.create(f, relation.getElement(y)));
 				}
 			}
 		}
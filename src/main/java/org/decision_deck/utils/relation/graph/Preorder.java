@@ -13,10 +13,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NavigableSet;
 import java.util.Set;
 
+import org.decision_deck.utils.collection.OrderStatisticTree.Node;
 import org.decision_deck.utils.collection.extensional_order.ExtentionalTotalOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,7 +26,6 @@ import com.google.common.base.MoreObjects.ToStringHelper;
 import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
@@ -61,6 +60,13 @@ import com.google.common.collect.Sets;
  * referencing mechanisms. However, a method is provided to obtain a list view.
  * </p>
  * <p>
+ * The ranks are stored in an order-statistic tree (see {@link RankTree}), and
+ * the rank numbers are not stored: they are computed from the position of the
+ * rank in the tree. Retrieving a rank or the rank of an element, inserting a
+ * new rank and removing a rank thus take a time logarithmic in the number of
+ * ranks, and never renumber the other elements.
+ * </p>
+ * <p>
  * This could be made to implement writable Collection.
  * </p>
  *
@@ -74,14 +80,16 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	private static final Logger s_logger = LoggerFactory.getLogger(Preorder.class);
 
 	/**
-	 * All ranks are set, no {@code null} values, no empty set.
+	 * All ranks are set, no {@code null} values, no empty set. Index zero holds
+	 * rank one.
 	 */
-	private final List<Set<E>> m_byRanks = Lists.newLinkedList();
+	private final RankTree<E> m_byRanks = new RankTree<E>();
 
 	/**
-	 * Values are from 1 for the rank with greatest elements.
+	 * The node holding the rank of each element. The rank number of a node is
+	 * not stored: it is found in the tree.
 	 */
-	private final Map<E, Integer> m_ranks = new HashMap<E, Integer>();
+	private final Map<E, Node<Set<E>>> m_ranks = new HashMap<E, Node<Set<E>>>();
 
 	/**
 	 * Creates an empty preorder. Its number of ranks is zero.
@@ -185,7 +193,7 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	public int compare(E element1, E element2) {
 		checkArgument(m_ranks.containsKey(element1), "Unknown " + element1);
 		checkArgument(m_ranks.containsKey(element2), "Unknown " + element2);
-		return s_compareByRank.compare(m_ranks.get(element1), m_ranks.get(element2));
+		return s_compareByRank.compare(getRank(element1), getRank(element2));
 	}
 
 	/**
@@ -219,7 +227,11 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	 */
 	public Integer getRank(E element) {
 		checkNotNull(element);
-		return m_ranks.get(element);
+		final Node<Set<E>> node = m_ranks.get(element);
+		if (node == null) {
+			return null;
+		}
+		return Integer.valueOf(m_byRanks.getIndex(node) + 1);
 	}
 
 	/**
@@ -271,6 +283,16 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 		return order;
 	}
 
+	/**
+	 * Retrieves an immutable copy of this preorder, which gives a dense id to each
+	 * element and compares and sorts elements without boxing.
+	 *
+	 * @return not {@code null}.
+	 */
+	public PreorderSnapshot<E> getSnapshot() {
+		return new PreorderSnapshot<E>(m_byRanks, size());
+	}
+
 	@Override
 	public int hashCode() {
 		return m_byRanks.hashCode();
@@ -328,19 +350,14 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 			if (currentRank == rank && m_byRanks.get(currentRank - 1).size() == 1) {
 				return false;
 			}
-			assert (currentRank <= rank);
+			assert (currentRank >= rank);
 			remove(content);
 		}
 
-		for (int rankToMove = rank - 1; rankToMove < m_byRanks.size(); ++rankToMove) {
-			final Set<E> elementsToMove = m_byRanks.get(rankToMove);
-			for (E e : elementsToMove) {
-				assert (m_ranks.get(e).intValue() == rankToMove + 1);
-				m_ranks.put(e, Integer.valueOf(rankToMove + 2));
-			}
-		}
-		m_byRanks.add(rank - 1, Sets.<E>newLinkedHashSet());
-		put(content, rank);
+		final Node<Set<E>> node = m_byRanks.insert(rank - 1);
+		node.getValue().add(content);
+		m_ranks.put(content, node);
+		s_logger.debug("Added element {} at new rank " + rank + ".", content);
 
 		return true;
 	}
@@ -366,7 +383,7 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	 */
 	public void lower(E element) {
 		checkNotNull(element);
-		final Integer oldRank = m_ranks.get(element);
+		final Integer oldRank = getRank(element);
 		if (oldRank == null) {
 			throw new IllegalStateException("Unknown object.");
 		}
@@ -400,23 +417,24 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 		checkNotNull(element);
 		checkArgument(rank >= 1);
 		checkArgument(rank <= getRanksCount() + 1);
-		final Integer oldRank = m_ranks.get(element);
-		if (oldRank != null) {
-			final int oldR = oldRank.intValue();
+		final Node<Set<E>> oldNode = m_ranks.get(element);
+		if (oldNode != null) {
+			final int oldR = m_byRanks.getIndex(oldNode) + 1;
 			if (oldR == rank) {
 				return false;
 			}
 			checkArgument(oldR != getRanksCount() || get(getRanksCount()).size() != 1,
 					"Asking to put the unique element at rank " + oldR + " into new rank " + rank
 							+ ", this is impossible.");
-			final boolean wasThere = m_byRanks.get(oldR - 1).remove(element);
+			final boolean wasThere = oldNode.getValue().remove(element);
 			assert (wasThere);
-			if (m_byRanks.get(oldR - 1).isEmpty()) {
-				m_byRanks.remove(oldR - 1);
+			if (oldNode.getValue().isEmpty()) {
+				m_byRanks.removeNode(oldNode);
 			}
 		}
-		final boolean added = getOrInitRank(rank).add(element);
-		m_ranks.put(element, Integer.valueOf(rank));
+		final Node<Set<E>> node = getOrInitRank(rank);
+		final boolean added = node.getValue().add(element);
+		m_ranks.put(element, node);
 		s_logger.debug("Added element {} at rank " + rank + ".", element);
 		return added;
 	}
@@ -447,11 +465,7 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 		if (getRanksCount() >= 1 && get(1).equals(elements)) {
 			return false;
 		}
-		for (Entry<E, Integer> entry : m_ranks.entrySet()) {
-			final int oldR = entry.getValue().intValue();
-			entry.setValue(Integer.valueOf(oldR + 1));
-		}
-		m_byRanks.add(0, Sets.<E>newLinkedHashSet());
+		m_byRanks.insert(0);
 		/**
 		 * NB at this stage an invariant is broken, as the new set is empty. But the put
 		 * method does not mind. Also note that the method will move the element if it
@@ -500,14 +514,11 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	 */
 	public boolean putAsHighest(E element) {
 		checkNotNull(element);
-		if (m_ranks.get(element) != null && m_ranks.get(element).intValue() == 1) {
+		final Integer rank = getRank(element);
+		if (rank != null && rank.intValue() == 1) {
 			return false;
 		}
-		for (Entry<E, Integer> entry : m_ranks.entrySet()) {
-			final int oldR = entry.getValue().intValue();
-			entry.setValue(Integer.valueOf(oldR + 1));
-		}
-		m_byRanks.add(0, Sets.<E>newLinkedHashSet());
+		m_byRanks.insert(0);
 		/**
 		 * NB at this stage an invariant is broken, as the new set is empty. But the put
 		 * method does not mind. Also note that the method will move the element if it
@@ -528,7 +539,8 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	 * @return {@code true} iff this object changed as a result of this call.
 	 */
 	public boolean putAsLowest(E element) {
-		if (m_ranks.get(element) != null && m_ranks.get(element).intValue() == getRanksCount()) {
+		final Integer rank = getRank(element);
+		if (rank != null && rank.intValue() == getRanksCount()) {
 			return false;
 		}
 		final boolean changed = put(element, getRanksCount() + 1);
@@ -545,7 +557,7 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	 */
 	public void raise(E element) {
 		checkNotNull(element);
-		final Integer oldRank = m_ranks.get(element);
+		final Integer oldRank = getRank(element);
 		if (oldRank == null) {
 			throw new IllegalStateException("Unknown object.");
 		}
@@ -570,27 +582,14 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 	@Override
 	public boolean remove(Object element) {
 		checkNotNull(element);
-		final Integer previous = m_ranks.remove(element);
+		final Node<Set<E>> previous = m_ranks.remove(element);
 		if (previous == null) {
 			return false;
 		}
-		final int oldR = previous.intValue();
-		final boolean wasThere = m_byRanks.get(oldR - 1).remove(previous);
+		final boolean wasThere = previous.getValue().remove(element);
 		assert (wasThere);
-		if (m_byRanks.get(oldR - 1).isEmpty()) {
-			m_byRanks.remove(oldR - 1);
-			for (int rankToMove = oldR; rankToMove < m_byRanks.size(); ++rankToMove) {
-				final Set<E> elementsToMove = m_byRanks.get(rankToMove);
-				for (E e : elementsToMove) {
-					assert (m_ranks.get(e).intValue() == rankToMove + 1);
-					m_ranks.put(e, Integer.valueOf(rankToMove));
-				}
-			}
-			// final Iterable<E> elementsToMove =
-			// Iterables.concat(m_byRanks.subList(oldR, m_byRanks.size()));
-			// for (E e : elementsToMove) {
-			// m_ranks.put(e, Integer.valueOf(m_ranks.get(e).intValue() - 1));
-			// }
+		if (previous.getValue().isEmpty()) {
+			m_byRanks.removeNode(previous);
 		}
 		return true;
 	}
@@ -607,17 +606,34 @@ public class Preorder<E> extends AbstractCollection<E> implements Comparator<E>,
 		return helper.toString();
 	}
 
+	/**
+	 * Adds the given elements as a new rank, lower than all existing ones. None of
+	 * the given elements may already be in this preorder.
+	 *
+	 * @param elements not {@code null}, not empty.
+	 */
+	void addAsLowest(Collection<E> elements) {
+		checkArgument(!elements.isEmpty());
+		final Node<Set<E>> node = m_byRanks.insert(m_byRanks.size());
+		for (E element : elements) {
+			checkNotNull(element);
+			final Node<Set<E>> previous = m_ranks.put(element, node);
+			checkArgument(previous == null, "Already present: " + element + ".");
+			node.getValue().add(element);
+		}
+	}
+
 	private Set<E> getLowests() {
 		final Set<E> worsts = getRanksCount() > 0 ? get(getRanksCount()) : Collections.<E>emptySet();
 		return worsts;
 	}
 
-	private Set<E> getOrInitRank(int rank) {
+	private Node<Set<E>> getOrInitRank(int rank) {
 		assert (rank <= getRanksCount() + 1) : "Rank too low: " + rank + ", lowest is " + getRanksCount() + ".";
 		if (rank == getRanksCount() + 1) {
-			m_byRanks.add(Sets.<E>newLinkedHashSet());
+			return m_byRanks.insert(rank - 1);
 		}
-		return m_byRanks.get(rank - 1);
+		return m_byRanks.getNode(rank - 1);
 	}
 
 }
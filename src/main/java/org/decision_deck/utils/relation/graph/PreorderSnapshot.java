@@ -0,0 +1,261 @@
+package org.decision_deck.utils.relation.graph;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * An immutable copy of a {@link Preorder}, meant for comparing and sorting a
+ * large number of elements. Each element is given a dense id, from zero to the
+ * number of elements, exclusive, in the iteration order of the preorder, and
+ * the rank of each id is stored in an array of {@code int}. The ids are found
+ * through an open addressing hash table which stores no boxed integer.
+ * </p>
+ * <p>
+ * Comparing two ids, through {@link #compare(int, int)}, reads two array cells.
+ * Comparing two elements, as a {@link Comparator}, first finds their ids.
+ * Sorting a collection of elements, with {@link #sort(Iterable)}, uses a bucket
+ * sort on ranks, which takes a time linear in the number of elements to sort
+ * plus the number of ranks.
+ * </p>
+ * <p>
+ * The ordering is the one of the preorder: an element is lower than an other
+ * one iff its rank number is greater. This object does not reflect the changes
+ * made to the preorder after its creation.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <E> the type of elements.
+ */
+public final class PreorderSnapshot<E> implements Comparator<E> {
+	/**
+	 * Compares two ints.
+	 *
+	 * @see PreorderSnapshot#compare(int, int)
+	 */
+	public interface IntComparator {
+		/**
+		 * Compares two ints, with the same contract as
+		 * {@link Comparator#compare(Object, Object)}.
+		 *
+		 * @param first  the first int.
+		 * @param second the second int.
+		 * @return a negative number, zero, or a positive number as the first int is
+		 *         less than, equal to, or greater than the second one.
+		 */
+		public int compare(int first, int second);
+	}
+
+	/**
+	 * The elements, by id.
+	 */
+	private final Object[] m_elements;
+
+	/**
+	 * The rank of each id, from one for the greatest elements.
+	 */
+	private final int[] m_ranks;
+
+	private final int m_ranksCount;
+
+	/**
+	 * Open addressing hash table, with linear probing, mapping elements to ids.
+	 * The length is a power of two, at least twice the number of elements. A slot
+	 * is empty iff its key is {@code null}.
+	 */
+	private final Object[] m_tableKeys;
+
+	private final int[] m_tableIds;
+
+	private final IntComparator m_idComparator = new IntComparator() {
+		@Override
+		public int compare(int first, int second) {
+			return PreorderSnapshot.this.compare(first, second);
+		}
+	};
+
+	PreorderSnapshot(List<Set<E>> byRanks, int size) {
+		m_elements = new Object[size];
+		m_ranks = new int[size];
+		m_ranksCount = byRanks.size();
+		final int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+		m_tableKeys = new Object[capacity];
+		m_tableIds = new int[capacity];
+		int id = 0;
+		int rank = 1;
+		for (Set<E> elements : byRanks) {
+			for (E element : elements) {
+				m_elements[id] = element;
+				m_ranks[id] = rank;
+				int slot = slot(element);
+				while (m_tableKeys[slot] != null) {
+					slot = (slot + 1) & (capacity - 1);
+				}
+				m_tableKeys[slot] = element;
+				m_tableIds[slot] = id;
+				++id;
+			}
+			++rank;
+		}
+		checkArgument(id == size);
+	}
+
+	private int slot(Object element) {
+		final int hash = element.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (m_tableKeys.length - 1);
+	}
+
+	/**
+	 * @return the number of elements in this snapshot.
+	 */
+	public int size() {
+		return m_elements.length;
+	}
+
+	/**
+	 * @return the number of ranks in this snapshot.
+	 */
+	public int getRanksCount() {
+		return m_ranksCount;
+	}
+
+	/**
+	 * Retrieves the id of the given element.
+	 *
+	 * @param element not {@code null}.
+	 * @return the id, or {@code -1} iff the element is not in this snapshot.
+	 */
+	public int getId(Object element) {
+		checkNotNull(element);
+		int slot = slot(element);
+		while (m_tableKeys[slot] != null) {
+			if (m_tableKeys[slot].equals(element)) {
+				return m_tableIds[slot];
+			}
+			slot = (slot + 1) & (m_tableKeys.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @param id a non negative id lower than {@link #size()}.
+	 * @return the element having that id.
+	 */
+	@SuppressWarnings("unchecked")
+	public E getElement(int id) {
+		return (E) m_elements[id];
+	}
+
+	/**
+	 * @param id a non negative id lower than {@link #size()}.
+	 * @return the rank of the element having that id, from one for the greatest
+	 *         elements.
+	 */
+	public int getRank(int id) {
+		return m_ranks[id];
+	}
+
+	/**
+	 * Compares the elements having the given ids, with the ordering of the
+	 * preorder.
+	 *
+	 * @param id1 a non negative id lower than {@link #size()}.
+	 * @param id2 a non negative id lower than {@link #size()}.
+	 * @return a negative number iff the first element has a greater rank number,
+	 *         thus is lower; zero iff they have the same rank.
+	 */
+	public int compare(int id1, int id2) {
+		return m_ranks[id2] - m_ranks[id1];
+	}
+
+	/**
+	 * @return a comparator of ids, equivalent to {@link #compare(int, int)}.
+	 */
+	public IntComparator getIdComparator() {
+		return m_idComparator;
+	}
+
+	@Override
+	public int compare(E element1, E element2) {
+		final int id1 = getId(element1);
+		final int id2 = getId(element2);
+		checkArgument(id1 >= 0, "Unknown " + element1);
+		checkArgument(id2 >= 0, "Unknown " + element2);
+		return compare(id1, id2);
+	}
+
+	/**
+	 * Sorts the given ids in place, from the lowest to the greatest, keeping the
+	 * relative order of ids having the same rank.
+	 *
+	 * @param ids not {@code null}, each between zero and {@link #size()},
+	 *            exclusive.
+	 */
+	public void sortIds(int[] ids) {
+		final int[] sorted = new int[ids.length];
+		final int[] starts = getBucketStarts(ids);
+		for (int id : ids) {
+			final int bucket = m_ranksCount - m_ranks[id];
+			sorted[starts[bucket]] = id;
+			++starts[bucket];
+		}
+		System.arraycopy(sorted, 0, ids, 0, ids.length);
+	}
+
+	/**
+	 * Returns the position of the first id of each bucket, the bucket zero holding
+	 * the lowest rank.
+	 */
+	private int[] getBucketStarts(int[] ids) {
+		final int[] starts = new int[m_ranksCount + 1];
+		for (int id : ids) {
+			++starts[m_ranksCount - m_ranks[id] + 1];
+		}
+		for (int bucket = 1; bucket <= m_ranksCount; ++bucket) {
+			starts[bucket] += starts[bucket - 1];
+		}
+		return Arrays.copyOf(starts, m_ranksCount);
+	}
+
+	/**
+	 * Sorts the given elements from the lowest to the greatest, keeping the
+	 * relative order of elements having the same rank. This gives the same
+	 * result as a stable sort with this snapshot used as a comparator.
+	 *
+	 * @param elements not {@code null}, all in this snapshot. Duplicates are
+	 *                 accepted.
+	 * @return a new fixed-size list, not {@code null}.
+	 */
+	public List<E> sort(Iterable<? extends E> elements) {
+		final List<? extends E> list = elements instanceof List ? (List<? extends E>) elements
+				: Lists.newArrayList(elements);
+		final int[] ids = new int[list.size()];
+		int i = 0;
+		for (E element : list) {
+			final int id = getId(element);
+			checkArgument(id >= 0, "Unknown " + element);
+			ids[i] = id;
+			++i;
+		}
+		final int[] starts = getBucketStarts(ids);
+		final Object[] sorted = new Object[ids.length];
+		i = 0;
+		for (E element : list) {
+			final int bucket = m_ranksCount - m_ranks[ids[i]];
+			sorted[starts[bucket]] = element;
+			++starts[bucket];
+			++i;
+		}
+		@SuppressWarnings("unchecked")
+		final List<E> result = (List<E>) Arrays.asList(sorted);
+		return result;
+	}
+}
@@ -2,38 +2,15 @@ package org.decision_deck.utils.relation.graph;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.Collection;
-import java.util.Set;
+import java.util.List;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicates;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 
 public class Preorders {
 	static public enum ComparisonState {
 		BETTER, EQUIVALENT, INCOMPARABLE, WORST
 	}
 
-	static private class FctGetIntersectionComparisonTo<E> implements Function<E, ComparisonState> {
-		private final E m_e;
-		private final Preorder<E> m_p1;
-		private final Preorder<E> m_p2;
-
-		public FctGetIntersectionComparisonTo(E e, Preorder<E> p1, Preorder<E> p2) {
-			m_p1 = p1;
-			m_p2 = p2;
-			m_e = e;
-		}
-
-		@Override
-		public ComparisonState apply(E input) {
-			return getIntersection(m_e, input, m_p1, m_p2);
-		}
-	}
-
 	static public ComparisonState asComparisonState(int comparisonResult) {
 		if (comparisonResult < 0) {
 			return ComparisonState.WORST;
@@ -64,6 +41,7 @@ public class Preorders {
 	}
 
 	/**
+	 * <p>
 	 * Retrieves the intersection of two preorders. If two elements compare in a
 	 * strongly conflicting way according to the two given preorders, that is, if
 	 * one preorder gives an element strictly better than an other one and the other
@@ -71,6 +49,13 @@ public class Preorders {
 	 * resulting preorder is not complete and this method returns {@code null}.
 	 * If the given preorders do not contain the same elements, the method returns
 	 * necessarily {@code null} as the resulting intersection is not complete.
+	 * </p>
+	 * <p>
+	 * The elements are sorted by their pair of ranks (rank in p1, rank in p2),
+	 * with two counting sorts, then a single sweep checks that the ranks in p2 do
+	 * not decrease, which is equivalent to the absence of conflict, and builds
+	 * the classes of the result, which are the runs of equal pairs of ranks.
+	 * </p>
 	 * 
 	 * @param p1 not {@code null}.
 	 * @param p2 not {@code null}.
@@ -80,78 +65,89 @@ public class Preorders {
 	static public <E> Preorder<E> getIntersection(Preorder<E> p1, Preorder<E> p2) {
 		checkNotNull(p1);
 		checkNotNull(p2);
-		if (!p1.asSet().equals(p2.asSet())) {
+		final PreorderSnapshot<E> s1 = p1.getSnapshot();
+		final PreorderSnapshot<E> s2 = p2.getSnapshot();
+		final int n = s1.size();
+		if (s2.size() != n) {
 			return null;
 		}
-		final Set<E> elements = p1.asSet();
 
-		final Preorder<E> inter = new Preorder<E>();
-		if (elements.isEmpty()) {
-			return inter;
+		/**
+		 * The ids of s1 are sorted by rank in p1. Sorting them stably by rank in p2
+		 * then by rank in p1 sorts them by (rank in p1, rank in p2). As both
+		 * snapshots have the same size, they have the same elements iff every element
+		 * of s1 is in s2.
+		 */
+		final int[] ranks2 = new int[n];
+		for (int id = 0; id < n; ++id) {
+			final int id2 = s2.getId(s1.getElement(id));
+			if (id2 == -1) {
+				return null;
+			}
+			ranks2[id] = s2.getRank(id2);
+		}
+		final int[] byRank2 = sortByRank(identity(n), ranks2, s2.getRanksCount());
+		final int[] ranks1 = new int[n];
+		for (int id = 0; id < n; ++id) {
+			ranks1[id] = s1.getRank(id);
 		}
+		final int[] sorted = sortByRank(byRank2, ranks1, s1.getRanksCount());
 
-		final E first = elements.iterator().next();
-		inter.putAsHighest(first);
-		// treated.add(first);
-		for (final E e : Sets.difference(elements, ImmutableSet.of(first))) {
-			final Function<E, ComparisonState> getIntersectionComparison = new FctGetIntersectionComparisonTo<E>(e, p1,
-					p2);
-			int rank = 1;
-			ComparisonState lastComparison;
-			for (;; ++rank) {
-				final Set<E> rankCompared = inter.get(rank);
-				final Collection<ComparisonState> comparisons = Collections2.transform(rankCompared,
-						getIntersectionComparison);
-				assert (!comparisons.isEmpty());
-				lastComparison = comparisons.iterator().next();
-				// final ComparisonState allComparisons =
-				// CollectionVariousUtils.getOmnipresentElement(comparisons);
-				// if (allComparisons == null || allComparisons ==
-				// ComparisonState.INCOMPARABLE) {
-				// return null;
-				// }
-				if (Iterables.any(comparisons, Predicates.or(Predicates.not(Predicates.equalTo(lastComparison)),
-						Predicates.equalTo(ComparisonState.INCOMPARABLE)))) {
+		/**
+		 * The intersection is complete iff the ranks in p2 do not decrease along
+		 * that order. Its classes are then the runs of equal pairs of ranks.
+		 */
+		final Preorder<E> inter = new Preorder<E>();
+		final List<E> currentClass = Lists.newArrayList();
+		for (int i = 0; i < n; ++i) {
+			final int id = sorted[i];
+			if (i > 0) {
+				final int previous = sorted[i - 1];
+				if (ranks2[id] < ranks2[previous]) {
 					return null;
 				}
-				if (lastComparison == ComparisonState.BETTER) {
-					break;
-				}
-				if (lastComparison == ComparisonState.EQUIVALENT) {
-					break;
-				}
-				assert (lastComparison == ComparisonState.WORST);
-				if (rank == inter.getRanksCount()) {
-					break;
-				}
-			}
-			assert (1 <= rank && rank <= inter.getRanksCount());
-			for (int rankDesc = rank + 1; rankDesc <= inter.getRanksCount(); ++rankDesc) {
-				final Set<E> rankCompared = inter.get(rankDesc);
-				final Collection<ComparisonState> comparisons = Collections2.transform(rankCompared,
-						getIntersectionComparison);
-				assert (!comparisons.isEmpty());
-				if (Iterables.any(comparisons, Predicates.not(Predicates.equalTo(ComparisonState.BETTER)))) {
-					return null;
+				if (ranks1[id] != ranks1[previous] || ranks2[id] != ranks2[previous]) {
+					inter.addAsLowest(currentClass);
+					currentClass.clear();
 				}
 			}
-
-			switch (lastComparison) {
-			case BETTER:
-				inter.insertAsNewRank(e, rank);
-				break;
-			case EQUIVALENT:
-				inter.put(e, rank);
-				break;
-			case WORST:
-				assert (rank == inter.getRanksCount());
-				inter.putAsLowest(e);
-				break;
-			case INCOMPARABLE:
-			default:
-				throw new IllegalStateException();
-			}
+			currentClass.add(s1.getElement(id));
+		}
+		if (!currentClass.isEmpty()) {
+			inter.addAsLowest(currentClass);
 		}
 		return inter;
 	}
+
+	private static int[] identity(int n) {
+		final int[] ids = new int[n];
+		for (int id = 0; id < n; ++id) {
+			ids[id] = id;
+		}
+		return ids;
+	}
+
+	/**
+	 * Sorts stably the given ids by increasing rank, with a counting sort.
+	 *
+	 * @param ids        not {@code null}.
+	 * @param ranks      the rank of each id, between one and the ranks count.
+	 * @param ranksCount the number of ranks.
+	 * @return a new array.
+	 */
+	private static int[] sortByRank(int[] ids, int[] ranks, int ranksCount) {
+		final int[] starts = new int[ranksCount + 2];
+		for (int id : ids) {
+			++starts[ranks[id] + 1];
+		}
+		for (int rank = 1; rank <= ranksCount + 1; ++rank) {
+			starts[rank] += starts[rank - 1];
+		}
+		final int[] sorted = new int[ids.length];
+		for (int id : ids) {
+			sorted[starts[ranks[id]]] = id;
+			++starts[ranks[id]];
+		}
+		return sorted;
+	}
 }
@@ -0,0 +1,110 @@
+package org.decision_deck.utils.relation.graph;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.decision_deck.utils.collection.OrderStatisticTree;
+import org.decision_deck.utils.collection.OrderStatisticTree.Node;
+
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * The ranks of a {@link Preorder}, as a list of sets of elements, stored in an
+ * {@link OrderStatisticTree}. Each node of the tree holds one rank; the
+ * position of a node in the list is implicit, so that no rank number is stored
+ * and inserting or removing a rank does not renumber the other ones.
+ * </p>
+ * <p>
+ * Retrieving the set at a given position, retrieving the position of a node,
+ * inserting a new set at a given position and removing a node all take a time
+ * logarithmic in the number of ranks. Iterating takes amortized constant time
+ * per rank.
+ * </p>
+ * <p>
+ * The list view is read-only: ranks are modified through
+ * {@link #insert(int)} and {@link #removeNode(Node)}. The sets it contains may be
+ * modified.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <E> the type of elements.
+ */
+final class RankTree<E> extends AbstractList<Set<E>> {
+	private final OrderStatisticTree<Set<E>> m_tree = new OrderStatisticTree<Set<E>>();
+
+	@Override
+	public int size() {
+		return m_tree.size();
+	}
+
+	/**
+	 * @param index between zero and the size of this list, exclusive.
+	 * @return not {@code null}, holding the elements at that rank as its value.
+	 */
+	Node<Set<E>> getNode(int index) {
+		return m_tree.getNode(index);
+	}
+
+	@Override
+	public Set<E> get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size() + ".");
+		}
+		return m_tree.getNode(index).getValue();
+	}
+
+	/**
+	 * @param node a node of this tree, not removed.
+	 * @return the position of the given node in this list.
+	 */
+	int getIndex(Node<Set<E>> node) {
+		return m_tree.getIndex(node);
+	}
+
+	/**
+	 * Inserts a new rank, with no elements, at the given position. The ranks
+	 * previously at that position or after move one position forward.
+	 *
+	 * @param index between zero and the size of this list, inclusive.
+	 * @return the new node, holding a modifiable, empty set as its value.
+	 */
+	Node<Set<E>> insert(int index) {
+		return m_tree.insert(index, Sets.<E> newLinkedHashSet());
+	}
+
+	/**
+	 * Removes the given node from this tree. The ranks after it move one position
+	 * backward.
+	 *
+	 * @param node a node of this tree, not removed.
+	 */
+	void removeNode(Node<Set<E>> node) {
+		m_tree.remove(node);
+	}
+
+	@Override
+	public Iterator<Set<E>> iterator() {
+		return new Iterator<Set<E>>() {
+			private Node<Set<E>> m_next = m_tree.first();
+
+			@Override
+			public boolean hasNext() {
+				return m_next != null;
+			}
+
+			@Override
+			public Set<E> next() {
+				if (m_next == null) {
+					throw new NoSuchElementException();
+				}
+				final Node<Set<E>> current = m_next;
+				m_next = m_tree.next(current);
+				return current.getValue();
+			}
+		};
+	}
+}
@@ -0,0 +1,273 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.decision_deck.utils.Pair;
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.decision_deck.utils.relation.graph.Edge;
+import org.jgrapht.DirectedGraph;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * A snapshot of the adjacency of a graph, or of a homogeneous binary relation,
+ * where each vertex is mapped to a dense index and each row of the adjacency
+ * matrix is stored as a bit set in a {@code long} array. The bit {@code j} of
+ * row {@code i} is set iff there is an arc from vertex {@code i} to vertex
+ * {@code j}.
+ * </p>
+ * <p>
+ * This object is not backed by its source: later changes to the source are not
+ * reflected.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <V> the vertex type.
+ */
+final class BitAdjacency<V> {
+
+	private final Object[] m_vertices;
+
+	private final Map<V, Integer> m_indexes;
+
+	private final long[][] m_rows;
+
+	private BitAdjacency(Set<V> vertices) {
+		m_vertices = vertices.toArray();
+		m_indexes = Maps.newHashMapWithExpectedSize(m_vertices.length);
+		for (int i = 0; i < m_vertices.length; ++i) {
+			@SuppressWarnings("unchecked")
+			final V vertex = (V) m_vertices[i];
+			m_indexes.put(vertex, Integer.valueOf(i));
+		}
+		m_rows = new long[m_vertices.length][getWordCount(m_vertices.length)];
+	}
+
+	private BitAdjacency(BitAdjacency<V> indexing) {
+		m_vertices = indexing.m_vertices;
+		m_indexes = indexing.m_indexes;
+		m_rows = new long[m_vertices.length][getWordCount(m_vertices.length)];
+	}
+
+	static public <V> BitAdjacency<V> of(DiGraph<V> graph) {
+		checkNotNull(graph);
+		final BitAdjacency<V> adjacency = new BitAdjacency<V>(graph.vertexSet());
+		adjacency.addArcs(graph);
+		return adjacency;
+	}
+
+	/**
+	 * Returns an adjacency with no arcs over the given vertices, indexed in their
+	 * iteration order.
+	 *
+	 * @param          <V> the vertex type.
+	 * @param vertices not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static <V> BitAdjacency<V> empty(Set<V> vertices) {
+		checkNotNull(vertices);
+		return new BitAdjacency<V>(vertices);
+	}
+
+	/**
+	 * @return an adjacency with no arcs sharing the vertex indexes of this one.
+	 */
+	BitAdjacency<V> emptyCopy() {
+		return new BitAdjacency<V>(this);
+	}
+
+	/**
+	 * Adds the arcs of the given graph, whose vertices must be indexed by this
+	 * object.
+	 *
+	 * @param graph not {@code null}.
+	 */
+	void addArcs(DiGraph<V> graph) {
+		for (V source : graph.vertexSet()) {
+			final int i = indexOf(source);
+			for (Edge<V> edge : graph.outgoingEdgesOf(source)) {
+				set(i, indexOf(edge.getTarget()));
+			}
+		}
+	}
+
+	static public <V, E> BitAdjacency<V> of(DirectedGraph<V, E> graph) {
+		checkNotNull(graph);
+		final BitAdjacency<V> adjacency = new BitAdjacency<V>(graph.vertexSet());
+		for (int i = 0; i < adjacency.size(); ++i) {
+			for (E edge : graph.outgoingEdgesOf(adjacency.getVertex(i))) {
+				adjacency.set(i, adjacency.indexOf(graph.getEdgeTarget(edge)));
+			}
+		}
+		return adjacency;
+	}
+
+	/**
+	 * Returns the adjacency of the given relation, whose vertices are the elements
+	 * of its from set followed by the elements of its to set.
+	 *
+	 * @param          <V> the vertex type.
+	 * @param relation not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <V> BitAdjacency<V> of(BinaryRelation<V, V> relation) {
+		checkNotNull(relation);
+		final BitAdjacency<V> adjacency = new BitAdjacency<V>(
+				Sets.newLinkedHashSet(Sets.union(relation.getFrom(), relation.getTo())));
+		for (Pair<V, V> pair : relation.asPairs()) {
+			adjacency.set(adjacency.indexOf(pair.getElt1()), adjacency.indexOf(pair.getElt2()));
+		}
+		return adjacency;
+	}
+
+	/**
+	 * @param vertexCount at least zero.
+	 * @return the number of {@code long} words in a row.
+	 */
+	static int getWordCount(int vertexCount) {
+		return (vertexCount + Long.SIZE - 1) >>> 6;
+	}
+
+	/**
+	 * @return the number of vertices, which are indexed from zero to this number
+	 *         (exclusive).
+	 */
+	public int size() {
+		return m_vertices.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getVertex(int index) {
+		return (V) m_vertices[index];
+	}
+
+	/**
+	 * @param vertex may be {@code null}.
+	 * @return -1 if the given vertex is unknown.
+	 */
+	public int indexOf(Object vertex) {
+		final Integer index = m_indexes.get(vertex);
+		return index == null ? -1 : index.intValue();
+	}
+
+	/**
+	 * Returns the bits of the given row. The returned array is the one used by this
+	 * object, thus changes to one are reflected to the other.
+	 *
+	 * @param index a vertex index.
+	 * @return not {@code null}.
+	 */
+	public long[] getRow(int index) {
+		return m_rows[index];
+	}
+
+	/**
+	 * @return the rows used by this object, not a copy.
+	 */
+	long[][] getRows() {
+		return m_rows;
+	}
+
+	/**
+	 * Returns the arcs of this object in compressed form: the targets of the arcs
+	 * going out of vertex v are at positions starts[v] (inclusive) to starts[v + 1]
+	 * (exclusive) in the returned array, in increasing order.
+	 *
+	 * @param starts not {@code null}, with one more entry than there are vertices;
+	 *               receives the starting positions.
+	 * @return not {@code null}, the targets.
+	 */
+	int[] getTargets(int[] starts) {
+		for (int i = 0; i < m_rows.length; ++i) {
+			int count = 0;
+			for (long word : m_rows[i]) {
+				count += Long.bitCount(word);
+			}
+			starts[i + 1] = starts[i] + count;
+		}
+		final int[] targets = new int[starts[m_rows.length]];
+		int position = 0;
+		for (int i = 0; i < m_rows.length; ++i) {
+			for (int w = 0; w < m_rows[i].length; ++w) {
+				long word = m_rows[i][w];
+				while (word != 0) {
+					targets[position++] = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+		}
+		return targets;
+	}
+
+	/**
+	 * @return the rows of the transposed adjacency: the bit {@code i} of row
+	 *         {@code j} is set iff there is an arc from {@code i} to {@code j}.
+	 */
+	long[][] getTransposedRows() {
+		final long[][] transposed = new long[m_rows.length][getWordCount(m_rows.length)];
+		for (int i = 0; i < m_rows.length; ++i) {
+			final int iWord = i >>> 6;
+			final long iBit = 1L << i;
+			for (int w = 0; w < m_rows[i].length; ++w) {
+				long word = m_rows[i][w];
+				while (word != 0) {
+					transposed[(w << 6) + Long.numberOfTrailingZeros(word)][iWord] |= iBit;
+					word &= word - 1;
+				}
+			}
+		}
+		return transposed;
+	}
+
+	/**
+	 * @return a deep copy of the rows of this object.
+	 */
+	long[][] copyRows() {
+		final long[][] copy = new long[m_rows.length][];
+		for (int i = 0; i < m_rows.length; ++i) {
+			copy[i] = m_rows[i].clone();
+		}
+		return copy;
+	}
+
+	public boolean get(int source, int target) {
+		return (m_rows[source][target >>> 6] & (1L << target)) != 0;
+	}
+
+	public void set(int source, int target) {
+		m_rows[source][target >>> 6] |= 1L << target;
+	}
+
+	/**
+	 * Adds to the given graph an arc for every bit set in the given rows and
+	 * cleared in the rows of this object. The given graph must contain the
+	 * vertices of this object.
+	 *
+	 * @param rows  not {@code null}, with as many rows as this object has.
+	 * @param graph not {@code null}.
+	 * @return the number of arcs added.
+	 */
+	int addNewArcs(long[][] rows, DiGraph<V> graph) {
+		int added = 0;
+		for (int i = 0; i < m_rows.length; ++i) {
+			final V source = getVertex(i);
+			for (int w = 0; w < m_rows[i].length; ++w) {
+				long word = rows[i][w] & ~m_rows[i][w];
+				while (word != 0) {
+					final int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					graph.addEdge(source, getVertex(j));
+					++added;
+				}
+			}
+		}
+		return added;
+	}
+
+}
@@ -0,0 +1,405 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.decision_deck.utils.collection.KeyIndexer;
+import org.decision_deck.utils.relation.graph.Edge;
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * <p>
+ * A directed graph, without multiple edges but possibly with loops, that
+ * stores no edge object. The vertices are mapped to dense indexes, and the
+ * successors and predecessors of each vertex are stored as sorted arrays of
+ * indexes. Thus, an edge costs eight bytes, and {@link #containsEdge} is a
+ * binary search that allocates nothing.
+ * </p>
+ * <p>
+ * The sets of edges returned by this object are unmodifiable views that create
+ * {@link Edge} objects only when iterated. As edges are compared by value, this
+ * is transparent to users, except that iterating twice over the same set gives
+ * equal but different edge objects.
+ * </p>
+ * <p>
+ * The jgrapht graph returned by {@link #getGraph()} is a copy.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <V> the vertex type.
+ */
+public class CompactDiGraph<V> implements DiGraph<V> {
+
+	private final KeyIndexer<V> m_vertices = new KeyIndexer<V>();
+
+	/**
+	 * The successors of each vertex index, sorted, in positions 0 (inclusive) to
+	 * m_outSizes (exclusive).
+	 */
+	private int[][] m_out = new int[0][];
+
+	private int[] m_outSizes = new int[0];
+
+	/**
+	 * The predecessors of each vertex index, sorted, in positions 0 (inclusive)
+	 * to m_inSizes (exclusive).
+	 */
+	private int[][] m_in = new int[0][];
+
+	private int[] m_inSizes = new int[0];
+
+	private int m_edgeCount = 0;
+
+	static private final int[] EMPTY = new int[0];
+
+	static public <V> CompactDiGraph<V> create() {
+		return new CompactDiGraph<V>();
+	}
+
+	static public <V> CompactDiGraph<V> copyOf(DiGraph<V> source) {
+		final CompactDiGraph<V> g = new CompactDiGraph<V>();
+		GraphUtils.copyToBetter(source, g);
+		return g;
+	}
+
+	private CompactDiGraph() {
+		/** Should be created through factory. */
+	}
+
+	private int indexOf(Object vertex) {
+		return m_vertices.indexOf(vertex);
+	}
+
+	private int checkedIndexOf(V vertex) {
+		checkNotNull(vertex);
+		final int index = indexOf(vertex);
+		checkArgument(index >= 0, "Unknown vertex: " + vertex + ".");
+		return index;
+	}
+
+	private V getVertex(int index) {
+		return m_vertices.getKey(index);
+	}
+
+	/**
+	 * Inserts the given value in the given sorted array, if absent.
+	 *
+	 * @param arrays the arrays, one of which is modified or replaced.
+	 * @param sizes  the number of values in each array, modified.
+	 * @param index  the array to modify.
+	 * @param value  the value to insert.
+	 * @return {@code true} iff the value was absent.
+	 */
+	static private boolean insert(int[][] arrays, int[] sizes, int index, int value) {
+		int[] array = arrays[index];
+		final int size = sizes[index];
+		final int position = Arrays.binarySearch(array, 0, size, value);
+		if (position >= 0) {
+			return false;
+		}
+		final int insertion = -position - 1;
+		if (size == array.length) {
+			array = Arrays.copyOf(array, Math.max(4, size * 2));
+			arrays[index] = array;
+		}
+		System.arraycopy(array, insertion, array, insertion + 1, size - insertion);
+		array[insertion] = value;
+		sizes[index] = size + 1;
+		return true;
+	}
+
+	/**
+	 * Removes the given value from the given sorted array, if present.
+	 *
+	 * @param arrays the arrays.
+	 * @param sizes  the number of values in each array, modified.
+	 * @param index  the array to modify.
+	 * @param value  the value to remove.
+	 * @return {@code true} iff the value was present.
+	 */
+	static private boolean delete(int[][] arrays, int[] sizes, int index, int value) {
+		final int[] array = arrays[index];
+		final int size = sizes[index];
+		final int position = Arrays.binarySearch(array, 0, size, value);
+		if (position < 0) {
+			return false;
+		}
+		System.arraycopy(array, position + 1, array, position, size - position - 1);
+		sizes[index] = size - 1;
+		return true;
+	}
+
+	@Override
+	public Edge<V> addEdge(V sourceVertex, V targetVertex) {
+		final int source = checkedIndexOf(sourceVertex);
+		final int target = checkedIndexOf(targetVertex);
+		if (!insert(m_out, m_outSizes, source, target)) {
+			return null;
+		}
+		final boolean added = insert(m_in, m_inSizes, target, source);
+		assert added;
+		++m_edgeCount;
+		return Edge.create(sourceVertex, targetVertex);
+	}
+
+	@Override
+	public boolean addVertex(V v) {
+		checkNotNull(v);
+		if (m_vertices.indexOf(v) >= 0) {
+			return false;
+		}
+		final int index = m_vertices.intern(v);
+		if (index == m_out.length) {
+			final int capacity = Math.max(16, index * 2);
+			m_out = Arrays.copyOf(m_out, capacity);
+			m_outSizes = Arrays.copyOf(m_outSizes, capacity);
+			m_in = Arrays.copyOf(m_in, capacity);
+			m_inSizes = Arrays.copyOf(m_inSizes, capacity);
+		}
+		m_out[index] = EMPTY;
+		m_in[index] = EMPTY;
+		return true;
+	}
+
+	@Override
+	public boolean containsEdge(V sourceVertex, V targetVertex) {
+		final int source = indexOf(sourceVertex);
+		final int target = indexOf(targetVertex);
+		if (source < 0 || target < 0) {
+			return false;
+		}
+		return Arrays.binarySearch(m_out[source], 0, m_outSizes[source], target) >= 0;
+	}
+
+	@Override
+	public boolean containsVertex(V v) {
+		return m_vertices.indexOf(v) >= 0;
+	}
+
+	private boolean containsEdgeObject(Object o) {
+		if (!(o instanceof Edge<?>)) {
+			return false;
+		}
+		final Edge<?> edge = (Edge<?>) o;
+		final int source = indexOf(edge.getSource());
+		final int target = indexOf(edge.getTarget());
+		return source >= 0 && target >= 0 && Arrays.binarySearch(m_out[source], 0, m_outSizes[source], target) >= 0;
+	}
+
+	@Override
+	public Set<Edge<V>> edgeSet() {
+		return new AbstractSet<Edge<V>>() {
+			@Override
+			public boolean contains(Object o) {
+				return containsEdgeObject(o);
+			}
+
+			@Override
+			public int size() {
+				return m_edgeCount;
+			}
+
+			@Override
+			public Iterator<Edge<V>> iterator() {
+				final Iterator<V> sources = m_vertices.keySet().iterator();
+				return new AbstractIterator<Edge<V>>() {
+					private int m_source = -1;
+					private int m_position = 0;
+
+					@Override
+					protected Edge<V> computeNext() {
+						while (m_source < 0 || m_position >= m_outSizes[m_source]) {
+							if (!sources.hasNext()) {
+								return endOfData();
+							}
+							m_source = indexOf(sources.next());
+							m_position = 0;
+						}
+						return Edge.create(getVertex(m_source), getVertex(m_out[m_source][m_position++]));
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Set<Edge<V>> edgesOf(final V vertex) {
+		final int index = checkedIndexOf(vertex);
+		return new AbstractSet<Edge<V>>() {
+			@Override
+			public boolean contains(Object o) {
+				if (!containsEdgeObject(o)) {
+					return false;
+				}
+				final Edge<?> edge = (Edge<?>) o;
+				return edge.getSource().equals(vertex) || edge.getTarget().equals(vertex);
+			}
+
+			@Override
+			public int size() {
+				final boolean loop = Arrays.binarySearch(m_out[index], 0, m_outSizes[index], index) >= 0;
+				return m_inSizes[index] + m_outSizes[index] - (loop ? 1 : 0);
+			}
+
+			@Override
+			public Iterator<Edge<V>> iterator() {
+				return new AbstractIterator<Edge<V>>() {
+					private int m_inPosition = 0;
+					private int m_outPosition = 0;
+
+					@Override
+					protected Edge<V> computeNext() {
+						if (m_inPosition < m_inSizes[index]) {
+							return Edge.create(getVertex(m_in[index][m_inPosition++]), vertex);
+						}
+						while (m_outPosition < m_outSizes[index]) {
+							final int target = m_out[index][m_outPosition++];
+							if (target != index) {
+								/** A loop has already been returned as incoming edge. */
+								return Edge.create(vertex, getVertex(target));
+							}
+						}
+						return endOfData();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Edge<V> removeEdge(V sourceVertex, V targetVertex) {
+		final int source = indexOf(sourceVertex);
+		final int target = indexOf(targetVertex);
+		if (source < 0 || target < 0 || !delete(m_out, m_outSizes, source, target)) {
+			return null;
+		}
+		final boolean removed = delete(m_in, m_inSizes, target, source);
+		assert removed;
+		--m_edgeCount;
+		return Edge.create(sourceVertex, targetVertex);
+	}
+
+	@Override
+	public boolean removeVertex(V v) {
+		final int index = indexOf(v);
+		if (index < 0) {
+			return false;
+		}
+		for (int position = 0; position < m_outSizes[index]; ++position) {
+			final int target = m_out[index][position];
+			if (target != index) {
+				delete(m_in, m_inSizes, target, index);
+			}
+		}
+		for (int position = 0; position < m_inSizes[index]; ++position) {
+			final int source = m_in[index][position];
+			if (source != index) {
+				delete(m_out, m_outSizes, source, index);
+			}
+		}
+		final boolean loop = Arrays.binarySearch(m_out[index], 0, m_outSizes[index], index) >= 0;
+		m_edgeCount -= m_outSizes[index] + m_inSizes[index] - (loop ? 1 : 0);
+		m_out[index] = EMPTY;
+		m_outSizes[index] = 0;
+		m_in[index] = EMPTY;
+		m_inSizes[index] = 0;
+		m_vertices.remove(v);
+		return true;
+	}
+
+	@Override
+	public Set<V> vertexSet() {
+		return m_vertices.keySet();
+	}
+
+	@Override
+	public Set<Edge<V>> incomingEdgesOf(final V vertex) {
+		final int index = checkedIndexOf(vertex);
+		return new AbstractSet<Edge<V>>() {
+			@Override
+			public boolean contains(Object o) {
+				return containsEdgeObject(o) && ((Edge<?>) o).getTarget().equals(vertex);
+			}
+
+			@Override
+			public int size() {
+				return m_inSizes[index];
+			}
+
+			@Override
+			public Iterator<Edge<V>> iterator() {
+				return new AbstractIterator<Edge<V>>() {
+					private int m_position = 0;
+
+					@Override
+					protected Edge<V> computeNext() {
+						if (m_position >= m_inSizes[index]) {
+							return endOfData();
+						}
+						return Edge.create(getVertex(m_in[index][m_position++]), vertex);
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Set<Edge<V>> outgoingEdgesOf(final V vertex) {
+		final int index = checkedIndexOf(vertex);
+		return new AbstractSet<Edge<V>>() {
+			@Override
+			public boolean contains(Object o) {
+				return containsEdgeObject(o) && ((Edge<?>) o).getSource().equals(vertex);
+			}
+
+			@Override
+			public int size() {
+				return m_outSizes[index];
+			}
+
+			@Override
+			public Iterator<Edge<V>> iterator() {
+				return new AbstractIterator<Edge<V>>() {
+					private int m_position = 0;
+
+					@Override
+					protected Edge<V> computeNext() {
+						if (m_position >= m_outSizes[index]) {
+							return endOfData();
+						}
+						return Edge.create(vertex, getVertex(m_out[index][m_position++]));
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns a copy of this graph, as this object does not use a jgrapht graph.
+	 * Changes to the returned graph are not reflected in this object.
+	 *
+	 * @return not {@code null}, a new graph.
+	 */
+	@Override
+	public DirectedGraph<V, Edge<V>> getGraph() {
+		final DefaultDirectedGraph<V, Edge<V>> g = new DefaultDirectedGraph<V, Edge<V>>(
+				new GraphUtils.SimpleEdgeFactory<V>());
+		for (V vertex : vertexSet()) {
+			g.addVertex(vertex);
+		}
+		for (Edge<V> edge : edgeSet()) {
+			g.addEdge(edge.getSource(), edge.getTarget());
+		}
+		return g;
+	}
+
+}
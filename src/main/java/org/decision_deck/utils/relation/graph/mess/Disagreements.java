@@ -0,0 +1,179 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.decision_deck.utils.relation.graph.Edge;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * Compares two graphs on the union of their vertices, using one bit set per
+ * vertex and graph. The ordered pairs connected differently are obtained by a
+ * XOR of the rows of both graphs. The strong disagreements are obtained from
+ * the asymmetric parts of both graphs: the pairs (a, b) such that the first
+ * graph has an edge from a to b and not from b to a while the second graph has
+ * an edge from b to a and not from a to b, or conversely.
+ * </p>
+ * <p>
+ * The vertices are indexed in the iteration order of the union of the vertex
+ * sets of the first graph and the second graph, so that the results are
+ * reported in the same order as a nested iteration over that union would.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <V> the vertex type.
+ */
+final class Disagreements<V> {
+
+	/**
+	 * Maximal number of rows counted by a single task.
+	 */
+	private static final int ROWS_PER_TASK = 64;
+
+	private final class CountTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		private final boolean m_strong;
+		private final int m_from;
+		private final int m_to;
+
+		public CountTask(boolean strong, int from, int to) {
+			m_strong = strong;
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected Long compute() {
+			if (m_to - m_from <= ROWS_PER_TASK) {
+				return Long.valueOf(countRows(m_strong, m_from, m_to));
+			}
+			final int middle = (m_from + m_to) >>> 1;
+			final CountTask first = new CountTask(m_strong, m_from, middle);
+			first.fork();
+			final long second = new CountTask(m_strong, middle, m_to).compute().longValue();
+			return Long.valueOf(first.join().longValue() + second);
+		}
+	}
+
+	private final BitAdjacency<V> m_first;
+
+	private final BitAdjacency<V> m_second;
+
+	/**
+	 * The transposed rows of the first graph, {@code null} if not needed.
+	 */
+	private final long[][] m_firstTransposed;
+
+	/**
+	 * The transposed rows of the second graph, {@code null} if not needed.
+	 */
+	private final long[][] m_secondTransposed;
+
+	/**
+	 * @param g1     not {@code null}.
+	 * @param g2     not {@code null}.
+	 * @param strong whether the strong disagreements will be queried.
+	 */
+	Disagreements(DiGraph<V> g1, DiGraph<V> g2, boolean strong) {
+		m_first = BitAdjacency.empty(Sets.union(g1.vertexSet(), g2.vertexSet()));
+		m_first.addArcs(g1);
+		m_second = m_first.emptyCopy();
+		m_second.addArcs(g2);
+		m_firstTransposed = strong ? m_first.getTransposedRows() : null;
+		m_secondTransposed = strong ? m_second.getTransposedRows() : null;
+	}
+
+	private long getWord(int row, int w) {
+		return m_first.getRow(row)[w] ^ m_second.getRow(row)[w];
+	}
+
+	private long getStrongWord(int row, int w) {
+		final long ab1 = m_first.getRow(row)[w];
+		final long ba1 = m_firstTransposed[row][w];
+		final long ab2 = m_second.getRow(row)[w];
+		final long ba2 = m_secondTransposed[row][w];
+		return (ab1 & ~ba1 & ba2 & ~ab2) | (ba1 & ~ab1 & ab2 & ~ba2);
+	}
+
+	/**
+	 * @return the ordered pairs that have an edge in exactly one of the graphs.
+	 */
+	Set<Edge<V>> getDisagreements() {
+		final Set<Edge<V>> disagreements = Sets.newLinkedHashSet();
+		for (int i = 0; i < m_first.size(); ++i) {
+			final V source = m_first.getVertex(i);
+			for (int w = 0; w < m_first.getRow(i).length; ++w) {
+				long word = getWord(i, w);
+				while (word != 0) {
+					final int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					disagreements.add(Edge.create(source, m_first.getVertex(j)));
+				}
+			}
+		}
+		return disagreements;
+	}
+
+	/**
+	 * @return the unordered pairs on which the graphs strongly disagree.
+	 */
+	Set<Set<V>> getStrongDisagreements() {
+		final Set<Set<V>> disagreements = Sets.newLinkedHashSet();
+		for (int i = 0; i < m_first.size(); ++i) {
+			final V source = m_first.getVertex(i);
+			/** The relation is symmetric: only consider the targets after i. */
+			for (int w = i >>> 6; w < m_first.getRow(i).length; ++w) {
+				long word = getStrongWord(i, w);
+				if (w == i >>> 6) {
+					word &= -2L << i;
+				}
+				while (word != 0) {
+					final int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					disagreements.add(ImmutableSet.of(source, m_first.getVertex(j)));
+				}
+			}
+		}
+		return disagreements;
+	}
+
+	/**
+	 * @param strong whether to count the strong disagreements, as unordered pairs,
+	 *               or the disagreements, as ordered pairs.
+	 * @param pool   {@code null} for a sequential computation.
+	 * @return the number of disagreements.
+	 */
+	long count(boolean strong, ForkJoinPool pool) {
+		final long count;
+		if (pool == null || m_first.size() < TransitiveClosureBitset.PARALLEL_THRESHOLD) {
+			count = countRows(strong, 0, m_first.size());
+		} else {
+			count = pool.invoke(new CountTask(strong, 0, m_first.size())).longValue();
+		}
+		if (strong) {
+			assert count % 2 == 0;
+			return count / 2;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of bits set in the given rows, counting ordered pairs in
+	 *         both cases.
+	 */
+	private long countRows(boolean strong, int from, int to) {
+		long count = 0;
+		for (int i = from; i < to; ++i) {
+			for (int w = 0; w < m_first.getRow(i).length; ++w) {
+				count += Long.bitCount(strong ? getStrongWord(i, w) : getWord(i, w));
+			}
+		}
+		return count;
+	}
+}
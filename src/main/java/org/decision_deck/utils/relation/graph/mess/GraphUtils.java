@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.decision_deck.utils.Pair;
 import org.decision_deck.utils.PredicateUtils;
@@ -22,12 +23,11 @@ import org.decision_deck.utils.relation.BinaryRelation;
 import org.decision_deck.utils.relation.BinaryRelationImpl;
 import org.decision_deck.utils.relation.graph.Edge;
 import org.decision_deck.utils.relation.graph.Preorder;
+import org.decision_deck.utils.relation.graph.PreorderSnapshot;
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.EdgeFactory;
 import org.jgrapht.Graph;
 import org.jgrapht.Graphs;
-import org.jgrapht.alg.CycleDetector;
-import org.jgrapht.alg.TransitiveClosure;
 import org.jgrapht.ext.IntegerNameProvider;
 import org.jgrapht.ext.StringNameProvider;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -35,11 +35,9 @@ import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 import org.jgrapht.graph.SimpleDirectedGraph;
 
 import com.google.common.base.Predicates;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Sets.SetView;
 import com.google.common.io.CharSink;
 
 /**
@@ -71,7 +69,8 @@ public class GraphUtils {
 
 		/**
 		 * Creates a new matrix decorating the given matrix by ensuring every element it
-		 * contains is zero or one.
+		 * contains is zero or one. Use {@link Matrixes#newBooleanBits()} as delegate
+		 * for large matrixes.
 		 *
 		 * @param delegate not {@code null}, must be empty.
 		 */
@@ -122,21 +121,22 @@ public class GraphUtils {
 	}
 
 	static public <V> void addClique(DiGraph<V> target, Set<V> vertices) {
+		for (V v : vertices) {
+			target.addVertex(v);
+		}
 		for (V v1 : vertices) {
-			target.addVertex(v1);
 			for (V v2 : vertices) {
-				target.addVertex(v2);
 				target.addEdge(v1, v2);
-				target.addEdge(v2, v1);
 			}
 		}
 	}
 
 	static public <V, E> void addClique(DirectedGraph<V, E> target, Set<V> vertices) {
+		for (V v : vertices) {
+			target.addVertex(v);
+		}
 		for (V v1 : vertices) {
-			target.addVertex(v1);
 			for (V v2 : vertices) {
-				target.addVertex(v2);
 				target.addEdge(v1, v2);
 			}
 		}
@@ -145,8 +145,12 @@ public class GraphUtils {
 	static public <V> void addEdges(DiGraph<V> target, Set<V> from, Set<V> to) {
 		for (V v1 : from) {
 			target.addVertex(v1);
+		}
+		for (V v2 : to) {
+			target.addVertex(v2);
+		}
+		for (V v1 : from) {
 			for (V v2 : to) {
-				target.addVertex(v2);
 				target.addEdge(v1, v2);
 			}
 		}
@@ -155,8 +159,12 @@ public class GraphUtils {
 	static public <V, E> void addEdges(DirectedGraph<V, E> target, Set<V> from, Set<V> to) {
 		for (V v1 : from) {
 			target.addVertex(v1);
+		}
+		for (V v2 : to) {
+			target.addVertex(v2);
+		}
+		for (V v1 : from) {
 			for (V v2 : to) {
-				target.addVertex(v2);
 				target.addEdge(v1, v2);
 			}
 		}
@@ -192,40 +200,92 @@ public class GraphUtils {
 		}
 	}
 
+	/**
+	 * Number of vertices from which the closure uses the bit set engine,
+	 * {@link TransitiveClosureBitset}, or {@link ReachabilityIndex}, rather than
+	 * {@link TransitiveClosureNew}.
+	 */
+	private static final int BITSET_CLOSURE_THRESHOLD = 64;
+
+	/**
+	 * Average number of outgoing edges per vertex up to which a large graph is
+	 * closed using its strongly connected components, with
+	 * {@link ReachabilityIndex}, rather than with bit sets.
+	 */
+	private static final int SPARSE_CLOSURE_DEGREE = 8;
+
+	/**
+	 * Adds to the given graph the edges of its transitive closure, except loops.
+	 * Large graphs are closed with {@link ReachabilityIndex} if they are sparse,
+	 * and with {@link TransitiveClosureBitset} otherwise.
+	 *
+	 * @param      <V> the vertex type.
+	 * @param orig not {@code null}.
+	 */
 	static public <V> void computeTransitiveClosure(DiGraph<V> orig) {
-		TransitiveClosureNew.INSTANCE.closeSimpleDirectedGraph(orig);
+		final int vertexCount = orig.vertexSet().size();
+		if (isLargeAndSparse(orig)) {
+			ReachabilityIndex.of(orig).closeDiGraph(orig);
+		} else if (vertexCount >= BITSET_CLOSURE_THRESHOLD) {
+			TransitiveClosureBitset.INSTANCE.closeDiGraph(orig);
+		} else {
+			TransitiveClosureNew.INSTANCE.closeSimpleDirectedGraph(orig);
+		}
 	}
 
-	static public <V> void computeTransitiveReduct(BinaryRelation<V, V> relation) {
-		assert (getTransitiveClosure(relation).asPairs().equals(relation.asPairs()));
-		// final Set<V> cycles = new CycleDetector<V, E>(g).findCycles();
-		// checkArgument(cycles.isEmpty(), cycles);
-		// final Set<V> vertices = ImmutableSet.copyOf(g.vertexSet());
-		final SetView<V> vertices = Sets.union(relation.getFrom(), relation.getTo());
-		for (V v1 : vertices) {
-			for (V v2 : Sets.difference(vertices, ImmutableSet.of(v1))) {
-				for (V v3 : Sets.difference(vertices, ImmutableSet.of(v1, v2))) {
-					if (relation.contains(v1, v2) && relation.contains(v2, v3) && relation.contains(v1, v3)) {
-						// final boolean hasRev1 = g.containsEdge(v2, v1);
-						// final boolean hasRev2 = g.containsEdge(v3, v2);
-						// final boolean hasRev3 = g.containsEdge(v3, v1);
-						// if (hasRev1 != hasRev2 || hasRev1 != hasRev3) {
-						// throw new IllegalArgumentException("Found cycle in "
-						// + v1 + v2 + v3 + ".");
-						// }
-						// if (!hasRev1) {
-						final boolean removed = relation.asPairs().remove(Pair.create(v1, v3));
-						assert (removed);
-						// }
-					}
-				}
-			}
+	/**
+	 * @return {@code true} iff the given graph is large enough for the bit set
+	 *         engine and sparse enough to be closed with
+	 *         {@link ReachabilityIndex}.
+	 */
+	private static boolean isLargeAndSparse(DiGraph<?> graph) {
+		final int vertexCount = graph.vertexSet().size();
+		return vertexCount >= BITSET_CLOSURE_THRESHOLD
+				&& graph.edgeSet().size() <= (long) vertexCount * SPARSE_CLOSURE_DEGREE;
+	}
+
+	/**
+	 * Adds to the given graph the edges of its transitive closure, except loops,
+	 * using the given pool to compute the closure of large dense graphs. Sparse
+	 * graphs, and graphs with less than
+	 * {@link TransitiveClosureBitset#PARALLEL_THRESHOLD} vertices, are closed as
+	 * with {@link #computeTransitiveClosure(DiGraph)}.
+	 *
+	 * @param      <V> the vertex type.
+	 * @param orig not {@code null}.
+	 * @param pool not {@code null}.
+	 */
+	static public <V> void computeTransitiveClosure(DiGraph<V> orig, ForkJoinPool pool) {
+		checkNotNull(pool);
+		if (!isLargeAndSparse(orig) && orig.vertexSet().size() >= TransitiveClosureBitset.PARALLEL_THRESHOLD) {
+			TransitiveClosureBitset.INSTANCE.closeDiGraph(orig, pool);
+		} else {
+			computeTransitiveClosure(orig);
 		}
-		// final SimpleDirectedGraph<V, Edge<V>> g =
-		// GraphUtils.getSimpleDiGraph(relation);
-		// transitiveReduct(g);
-		// final BinaryRelation<V, V> reducedRelation =
-		// GraphUtils.getBinaryRelation(g);
+	}
+
+	/**
+	 * Returns an object answering reachability queries on the given graph, as it
+	 * is now, without computing its transitive closure.
+	 *
+	 * @param   <V> the vertex type.
+	 * @param g not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <V> ReachabilityIndex<V> getReachability(DiGraph<V> g) {
+		return ReachabilityIndex.of(g);
+	}
+
+	/**
+	 * Removes from the given relation the pairs that are not part of its
+	 * transitive reduction, as computed by {@link TransitiveReduction}. The pairs
+	 * relating equivalent elements (elements on a common cycle) are kept.
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 */
+	static public <V> void computeTransitiveReduct(BinaryRelation<V, V> relation) {
+		TransitiveReduction.INSTANCE.reduce(relation);
 	}
 
 	static public <V, E> void copyTo(Graph<V, E> source, Graph<V, E> target) {
@@ -439,35 +499,37 @@ public class GraphUtils {
 	 *         two.
 	 */
 	static public <V> Set<Edge<V>> getDisagreements(DiGraph<V> g1, DiGraph<V> g2) {
-		final SetView<V> vertices = Sets.union(g1.vertexSet(), g2.vertexSet());
-		// final FloydWarshallShortestPaths<V, Edge<V>> shortest1 = new
-		// FloydWarshallShortestPaths<V, Edge<V>>(
-		// g1.getGraph());
-		// final FloydWarshallShortestPaths<V, Edge<V>> shortest2 = new
-		// FloydWarshallShortestPaths<V, Edge<V>>(
-		// g2.getGraph());
-		// final StrongConnectivityInspector<V, Edge<V>> inspector1 = new
-		// StrongConnectivityInspector<V, Edge<V,
-		// V>>(g1.getGraph());
-		// final StrongConnectivityInspector<V, Edge<V>> inspector2 = new
-		// StrongConnectivityInspector<V, Edge<V,
-		// V>>(g2.getGraph());
-		final Set<Edge<V>> disagreements = Sets.newLinkedHashSet();
-		for (V source : vertices) {
-			for (V target : vertices) {
-				// final boolean ab = shortest1.getShortestPath(source, target)
-				// != null;
-				// final boolean ba = shortest1.getShortestPath(target, source)
-				// != null;
-				final boolean ab = g1.containsEdge(source, target);
-				final boolean ab2 = g2.containsEdge(source, target);
-
-				if (ab != ab2) {
-					disagreements.add(Edge.create(source, target));
-				}
-			}
-		}
-		return disagreements;
+		return new Disagreements<V>(g1, g2, false).getDisagreements();
+	}
+
+	/**
+	 * Counts the ordered pairs that are connected differently in the two given
+	 * graphs, without creating them.
+	 *
+	 * @param    <V> the vertex type.
+	 * @param g1 not {@code null}.
+	 * @param g2 not {@code null}.
+	 * @return the size of the set returned by
+	 *         {@link #getDisagreements(DiGraph, DiGraph)}.
+	 */
+	static public <V> long countDisagreements(DiGraph<V> g1, DiGraph<V> g2) {
+		return new Disagreements<V>(g1, g2, false).count(false, null);
+	}
+
+	/**
+	 * Same as {@link #countDisagreements(DiGraph, DiGraph)}, counting in parallel
+	 * on the given pool if the graphs have at least
+	 * {@link TransitiveClosureBitset#PARALLEL_THRESHOLD} vertices.
+	 *
+	 * @param      <V> the vertex type.
+	 * @param g1   not {@code null}.
+	 * @param g2   not {@code null}.
+	 * @param pool not {@code null}.
+	 * @return the number of disagreements.
+	 */
+	static public <V> long countDisagreements(DiGraph<V> g1, DiGraph<V> g2, ForkJoinPool pool) {
+		checkNotNull(pool);
+		return new Disagreements<V>(g1, g2, false).count(false, pool);
 	}
 
 	/**
@@ -484,13 +546,20 @@ public class GraphUtils {
 	static public <E> SparseMatrixFuzzyRead<E, E> getIntersection(Preorder<E> p1, Preorder<E> p2) {
 		final SparseMatrixFuzzy<E, E> res = Matrixes.newSparseFuzzy();
 		checkArgument(p1.asSet().equals(p2.asSet()));
-		final Set<E> elements = p1.asSet();
-		for (E e1 : elements) {
-			for (E e2 : elements) {
-				final boolean geq1 = p1.compare(e1, e2) >= 0;
-				final boolean geq2 = p2.compare(e1, e2) >= 0;
+		final PreorderSnapshot<E> s1 = p1.getSnapshot();
+		final PreorderSnapshot<E> s2 = p2.getSnapshot();
+		final int n = s1.size();
+		final int[] ranks2 = new int[n];
+		for (int id = 0; id < n; ++id) {
+			ranks2[id] = s2.getRank(s2.getId(s1.getElement(id)));
+		}
+		for (int id1 = 0; id1 < n; ++id1) {
+			final E e1 = s1.getElement(id1);
+			for (int id2 = 0; id2 < n; ++id2) {
+				final boolean geq1 = s1.getRank(id1) <= s1.getRank(id2);
+				final boolean geq2 = ranks2[id1] <= ranks2[id2];
 				if (geq1 && geq2) {
-					res.put(e1, e2, 1d);
+					res.put(e1, s1.getElement(id2), 1d);
 				}
 			}
 		}
@@ -526,68 +595,75 @@ public class GraphUtils {
 	 *         two.
 	 */
 	static public <V> Set<Set<V>> getStrongDisagreements(DiGraph<V> g1, DiGraph<V> g2) {
-		final SetView<V> vertices = Sets.union(g1.vertexSet(), g2.vertexSet());
-		// final FloydWarshallShortestPaths<V, Edge<V>> shortest1 = new
-		// FloydWarshallShortestPaths<V, Edge<V>>(
-		// g1.getGraph());
-		// final FloydWarshallShortestPaths<V, Edge<V>> shortest2 = new
-		// FloydWarshallShortestPaths<V, Edge<V>>(
-		// g2.getGraph());
-		// final StrongConnectivityInspector<V, Edge<V>> inspector1 = new
-		// StrongConnectivityInspector<V, Edge<V,
-		// V>>(g1.getGraph());
-		// final StrongConnectivityInspector<V, Edge<V>> inspector2 = new
-		// StrongConnectivityInspector<V, Edge<V,
-		// V>>(g2.getGraph());
-		final Set<Set<V>> disagreements = Sets.newLinkedHashSet();
-		for (V source : vertices) {
-			for (V target : vertices) {
-				// final boolean ab = shortest1.getShortestPath(source, target)
-				// != null;
-				// final boolean ba = shortest1.getShortestPath(target, source)
-				// != null;
-				final boolean ab = g1.containsEdge(source, target);
-				final boolean ba = g1.containsEdge(target, source);
-				if (ab == ba) {
-					/**
-					 * a and b considered equivalent by the first graph, thus no disagreement is
-					 * possible here.
-					 */
-					continue;
-				}
-				// final boolean ab2 = shortest2.getShortestPath(source, target)
-				// != null;
-				// final boolean ba2 = shortest2.getShortestPath(target, source)
-				// != null;
-				final boolean ab2 = g2.containsEdge(source, target);
-				final boolean ba2 = g2.containsEdge(target, source);
-				if (ab2 == ba2) {
-					continue;
-				}
-				/** Just to make it clear. */
-				assert (ab != ba);
-				assert (ab2 != ba2);
-				assert ((ab == ab2 && ba == ba2) || (ab != ab2 && ba != ba2));
+		return new Disagreements<V>(g1, g2, true).getStrongDisagreements();
+	}
 
-				if (ab != ab2) {
-					disagreements.add(ImmutableSet.of(source, target));
-				}
-			}
-		}
-		return disagreements;
+	/**
+	 * Counts the unordered pairs on which the two given graphs strongly disagree,
+	 * without creating them.
+	 *
+	 * @param    <V> the vertex type.
+	 * @param g1 not {@code null}.
+	 * @param g2 not {@code null}.
+	 * @return the size of the set returned by
+	 *         {@link #getStrongDisagreements(DiGraph, DiGraph)}.
+	 */
+	static public <V> long countStrongDisagreements(DiGraph<V> g1, DiGraph<V> g2) {
+		return new Disagreements<V>(g1, g2, true).count(true, null);
 	}
 
+	/**
+	 * Same as {@link #countStrongDisagreements(DiGraph, DiGraph)}, counting in
+	 * parallel on the given pool if the graphs have at least
+	 * {@link TransitiveClosureBitset#PARALLEL_THRESHOLD} vertices.
+	 *
+	 * @param      <V> the vertex type.
+	 * @param g1   not {@code null}.
+	 * @param g2   not {@code null}.
+	 * @param pool not {@code null}.
+	 * @return the number of strong disagreements.
+	 */
+	static public <V> long countStrongDisagreements(DiGraph<V> g1, DiGraph<V> g2, ForkJoinPool pool) {
+		checkNotNull(pool);
+		return new Disagreements<V>(g1, g2, true).count(true, pool);
+	}
+
+	/**
+	 * Returns the transitive closure of the given relation. The loops of the
+	 * given relation are kept, and no other loops are added.
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 * @return not {@code null}, a new relation.
+	 * @see TransitiveClosureBitset#getClosure(BinaryRelation)
+	 */
 	static public <V> BinaryRelation<V, V> getTransitiveClosure(BinaryRelation<V, V> relation) {
-		final SimpleDirectedGraph<V, Edge<V>> g = GraphUtils.getSimpleDiGraph(relation);
-		TransitiveClosure.INSTANCE.closeSimpleDirectedGraph(g);
-		final BinaryRelation<V, V> transitiveRelation = GraphUtils.getBinaryRelation(g);
-		return transitiveRelation;
+		return TransitiveClosureBitset.INSTANCE.getClosure(relation);
 	}
 
+	/**
+	 * Tells whether the given graph contains every edge (x, z), with x different
+	 * than z, such that it contains (x, y) and (y, z). Use
+	 * {@link TransitivityChecker} to obtain a violating triple.
+	 *
+	 * @param   <V> the vertex type.
+	 * @param g not {@code null}.
+	 * @return {@code true} iff closing the graph would leave it unchanged.
+	 */
 	static public <V> boolean isTransitive(DiGraph<V> g) {
-		final DiGraphImpl<V> g2 = DiGraphImpl.copyOf(g);
-		computeTransitiveClosure(g2);
-		return g2.edgeSet().size() == g.edgeSet().size();
+		return TransitivityChecker.INSTANCE.findViolation(g) == null;
+	}
+
+	/**
+	 * Tells whether the given relation contains every pair (x, z), with x
+	 * different than z, such that it contains (x, y) and (y, z).
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 * @return {@code true} iff the relation is transitive, up to loops.
+	 */
+	static public <V> boolean isTransitive(BinaryRelation<V, V> relation) {
+		return TransitivityChecker.INSTANCE.findViolation(relation) == null;
 	}
 
 	static public <E> void removeLoops(BinaryRelation<E, E> r) {
@@ -609,27 +685,16 @@ public class GraphUtils {
 		}
 	}
 
+	/**
+	 * Removes from the given graph the edges that are not part of its transitive
+	 * reduction, as computed by {@link TransitiveReduction}. The edges between
+	 * vertices on a common cycle are kept.
+	 *
+	 * @param   <V> the vertex type.
+	 * @param   <E> the edge type.
+	 * @param g not {@code null}.
+	 */
 	static public <V, E> void transitiveReduct(DirectedGraph<V, E> g) {
-		final Set<V> cycles = new CycleDetector<V, E>(g).findCycles();
-		checkArgument(cycles.isEmpty(), cycles);
-		// final Set<V> vertices = ImmutableSet.copyOf(g.vertexSet());
-		for (V v1 : g.vertexSet()) {
-			for (V v2 : Sets.difference(g.vertexSet(), ImmutableSet.of(v1))) {
-				for (V v3 : Sets.difference(g.vertexSet(), ImmutableSet.of(v1, v2))) {
-					if (g.containsEdge(v1, v2) && g.containsEdge(v2, v3) && g.containsEdge(v1, v3)) {
-						// final boolean hasRev1 = g.containsEdge(v2, v1);
-						// final boolean hasRev2 = g.containsEdge(v3, v2);
-						// final boolean hasRev3 = g.containsEdge(v3, v1);
-						// if (hasRev1 != hasRev2 || hasRev1 != hasRev3) {
-						// throw new IllegalArgumentException("Found cycle in "
-						// + v1 + v2 + v3 + ".");
-						// }
-						// if (!hasRev1) {
-						g.removeEdge(v1, v3);
-						// }
-					}
-				}
-			}
-		}
+		TransitiveReduction.INSTANCE.reduce(g);
 	}
 }
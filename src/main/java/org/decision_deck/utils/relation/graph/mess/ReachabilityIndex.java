@@ -0,0 +1,420 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.decision_deck.utils.relation.graph.Edge;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Answers reachability queries on a graph without materializing its transitive
+ * closure, which is appropriate for large and sparse graphs. The strongly
+ * connected components of the graph are computed (using Tarjan's algorithm),
+ * then the set of components reachable from each component is computed over the
+ * condensation, in reverse topological order, in the style of Nuutila's and
+ * Purdom's algorithms.
+ * </p>
+ * <p>
+ * The components are numbered in the order they are completed, thus every
+ * component reachable from a component has a smaller number. The reachable
+ * components are stored as sorted lists of intervals of component numbers,
+ * which are short when the graph is made of chains or trees. A query takes a
+ * time logarithmic in the number of intervals, and the sets of reachable
+ * vertices are only expanded on iteration.
+ * </p>
+ * <p>
+ * This object is a snapshot: it does not reflect the changes made to the graph
+ * after its creation.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <V> the vertex type.
+ */
+public class ReachabilityIndex<V> {
+
+	private final Object[] m_vertices;
+
+	private final Map<V, Integer> m_indexes;
+
+	/**
+	 * The component of each vertex.
+	 */
+	private final int[] m_components;
+
+	/**
+	 * The members of component c are at positions m_memberStarts[c] (inclusive) to
+	 * m_memberStarts[c + 1] (exclusive) in m_members.
+	 */
+	private final int[] m_memberStarts;
+
+	private final int[] m_members;
+
+	/**
+	 * Whether each component contains a cycle, thus whether its members reach
+	 * themselves.
+	 */
+	private final boolean[] m_cyclic;
+
+	/**
+	 * For each component, the components reachable from it, except itself, as
+	 * sorted and disjoint intervals: lower bound, upper bound (both inclusive),
+	 * lower bound, and so on.
+	 */
+	private final int[][] m_reachable;
+
+	private ReachabilityIndex(Object[] vertices, Map<V, Integer> indexes, int[] starts, int[] targets) {
+		m_vertices = vertices;
+		m_indexes = indexes;
+		final int n = vertices.length;
+		m_components = new int[n];
+		final int componentCount = computeComponents(starts, targets, m_components);
+
+		m_memberStarts = new int[componentCount + 1];
+		for (int v = 0; v < n; ++v) {
+			++m_memberStarts[m_components[v] + 1];
+		}
+		for (int c = 0; c < componentCount; ++c) {
+			m_memberStarts[c + 1] += m_memberStarts[c];
+		}
+		m_members = new int[n];
+		final int[] cursors = Arrays.copyOf(m_memberStarts, componentCount);
+		for (int v = 0; v < n; ++v) {
+			m_members[cursors[m_components[v]]++] = v;
+		}
+
+		m_cyclic = new boolean[componentCount];
+		m_reachable = new int[componentCount][];
+		final int[] seen = new int[componentCount];
+		Arrays.fill(seen, -1);
+		long[] packed = new long[16];
+		for (int c = 0; c < componentCount; ++c) {
+			m_cyclic[c] = m_memberStarts[c + 1] - m_memberStarts[c] > 1;
+			int packedCount = 0;
+			for (int m = m_memberStarts[c]; m < m_memberStarts[c + 1]; ++m) {
+				final int v = m_members[m];
+				for (int e = starts[v]; e < starts[v + 1]; ++e) {
+					final int d = m_components[targets[e]];
+					if (d == c) {
+						m_cyclic[c] = true;
+						continue;
+					}
+					if (seen[d] == c) {
+						continue;
+					}
+					seen[d] = c;
+					assert d < c;
+					final int[] reachableFromD = m_reachable[d];
+					if (packed.length < packedCount + 1 + reachableFromD.length / 2) {
+						packed = Arrays.copyOf(packed,
+								Math.max(packed.length * 2, packedCount + 1 + reachableFromD.length / 2));
+					}
+					packed[packedCount++] = pack(d, d);
+					for (int i = 0; i < reachableFromD.length; i += 2) {
+						packed[packedCount++] = pack(reachableFromD[i], reachableFromD[i + 1]);
+					}
+				}
+			}
+			m_reachable[c] = union(packed, packedCount);
+		}
+	}
+
+	/**
+	 * Returns a reachability index over the given graph.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param graph not {@code null}.
+	 * @return not {@code null}.
+	 */
+	static public <V> ReachabilityIndex<V> of(DiGraph<V> graph) {
+		checkNotNull(graph);
+		final Object[] vertices = graph.vertexSet().toArray();
+		final Map<V, Integer> indexes = Maps.newHashMapWithExpectedSize(vertices.length);
+		for (int i = 0; i < vertices.length; ++i) {
+			@SuppressWarnings("unchecked")
+			final V vertex = (V) vertices[i];
+			indexes.put(vertex, Integer.valueOf(i));
+		}
+		final int[] starts = new int[vertices.length + 1];
+		for (int i = 0; i < vertices.length; ++i) {
+			@SuppressWarnings("unchecked")
+			final V vertex = (V) vertices[i];
+			starts[i + 1] = starts[i] + graph.outgoingEdgesOf(vertex).size();
+		}
+		final int[] targets = new int[starts[vertices.length]];
+		for (int i = 0; i < vertices.length; ++i) {
+			@SuppressWarnings("unchecked")
+			final V vertex = (V) vertices[i];
+			int position = starts[i];
+			for (Edge<V> edge : graph.outgoingEdgesOf(vertex)) {
+				targets[position++] = indexes.get(edge.getTarget()).intValue();
+			}
+		}
+		return new ReachabilityIndex<V>(vertices, indexes, starts, targets);
+	}
+
+	/**
+	 * Computes the strongly connected components with an iterative version of
+	 * Tarjan's algorithm. The components are numbered in the order they are
+	 * completed, thus in reverse topological order of the condensation.
+	 *
+	 * @param starts     the outgoing arcs of vertex v are at positions starts[v]
+	 *                   (inclusive) to starts[v + 1] (exclusive) in targets.
+	 * @param targets    the target of each arc.
+	 * @param components receives the component of each vertex.
+	 * @return the number of components.
+	 */
+	static int computeComponents(int[] starts, int[] targets, int[] components) {
+		final int n = components.length;
+		final int[] order = new int[n];
+		Arrays.fill(order, -1);
+		final int[] low = new int[n];
+		final boolean[] onStack = new boolean[n];
+		final int[] stack = new int[n];
+		final int[] callStack = new int[n];
+		final int[] nextArc = new int[n];
+		int stackSize = 0;
+		int counter = 0;
+		int componentCount = 0;
+		for (int root = 0; root < n; ++root) {
+			if (order[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			order[root] = low[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			callStack[depth] = root;
+			nextArc[depth] = starts[root];
+			++depth;
+			while (depth > 0) {
+				final int v = callStack[depth - 1];
+				if (nextArc[depth - 1] < starts[v + 1]) {
+					final int w = targets[nextArc[depth - 1]++];
+					if (order[w] < 0) {
+						order[w] = low[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						callStack[depth] = w;
+						nextArc[depth] = starts[w];
+						++depth;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], order[w]);
+					}
+					continue;
+				}
+				if (low[v] == order[v]) {
+					int w;
+					do {
+						w = stack[--stackSize];
+						onStack[w] = false;
+						components[w] = componentCount;
+					} while (w != v);
+					++componentCount;
+				}
+				--depth;
+				if (depth > 0) {
+					final int parent = callStack[depth - 1];
+					low[parent] = Math.min(low[parent], low[v]);
+				}
+			}
+		}
+		return componentCount;
+	}
+
+	static private long pack(int lower, int upper) {
+		return ((long) lower << 32) | upper;
+	}
+
+	/**
+	 * @param packed the intervals, packed with {@link #pack(int, int)}, modified
+	 *               by this method.
+	 * @param count  the number of intervals to consider in the given array.
+	 * @return the sorted and disjoint intervals covering exactly the given ones.
+	 */
+	static private int[] union(long[] packed, int count) {
+		Arrays.sort(packed, 0, count);
+		final int[] intervals = new int[count * 2];
+		int size = 0;
+		for (int i = 0; i < count; ++i) {
+			final int lower = (int) (packed[i] >>> 32);
+			final int upper = (int) packed[i];
+			if (size > 0 && lower <= intervals[size - 1] + 1) {
+				intervals[size - 1] = Math.max(intervals[size - 1], upper);
+			} else {
+				intervals[size++] = lower;
+				intervals[size++] = upper;
+			}
+		}
+		return size == intervals.length ? intervals : Arrays.copyOf(intervals, size);
+	}
+
+	private int indexOf(Object vertex) {
+		final Integer index = m_indexes.get(vertex);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@SuppressWarnings("unchecked")
+	private V getVertex(int index) {
+		return (V) m_vertices[index];
+	}
+
+	private boolean reachesComponent(int source, int target) {
+		if (source == target) {
+			return m_cyclic[source];
+		}
+		final int[] intervals = m_reachable[source];
+		int lowerInterval = 0;
+		int upperInterval = intervals.length / 2 - 1;
+		while (lowerInterval <= upperInterval) {
+			final int middle = (lowerInterval + upperInterval) >>> 1;
+			if (target < intervals[middle * 2]) {
+				upperInterval = middle - 1;
+			} else if (target > intervals[middle * 2 + 1]) {
+				lowerInterval = middle + 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the graph contains a non empty path from the given source to
+	 * the given target. A vertex reaches itself iff it is part of a cycle,
+	 * possibly a loop.
+	 *
+	 * @param source may be {@code null}.
+	 * @param target may be {@code null}.
+	 * @return {@code false} if any of the given vertices is not in the graph.
+	 */
+	public boolean reaches(V source, V target) {
+		final int sourceIndex = indexOf(source);
+		final int targetIndex = indexOf(target);
+		if (sourceIndex < 0 || targetIndex < 0) {
+			return false;
+		}
+		return reachesComponent(m_components[sourceIndex], m_components[targetIndex]);
+	}
+
+	/**
+	 * Tells whether the given vertices are in the same strongly connected
+	 * component, thus whether each one reaches the other one or they are equal.
+	 *
+	 * @param v1 may be {@code null}.
+	 * @param v2 may be {@code null}.
+	 * @return {@code false} if any of the given vertices is not in the graph.
+	 */
+	public boolean isStronglyConnected(V v1, V v2) {
+		final int index1 = indexOf(v1);
+		final int index2 = indexOf(v2);
+		return index1 >= 0 && index2 >= 0 && m_components[index1] == m_components[index2];
+	}
+
+	/**
+	 * @return the number of strongly connected components of the graph.
+	 */
+	public int getComponentCount() {
+		return m_cyclic.length;
+	}
+
+	/**
+	 * Retrieves the vertices reachable from the given one by a non empty path. The
+	 * returned set is an unmodifiable view computed on demand: its elements are
+	 * only enumerated when it is iterated.
+	 *
+	 * @param source a vertex of the graph.
+	 * @return not {@code null}.
+	 * @throws IllegalArgumentException if the given vertex is not in the graph.
+	 */
+	public Set<V> getReachable(V source) {
+		final int sourceIndex = indexOf(source);
+		if (sourceIndex < 0) {
+			throw new IllegalArgumentException("Unknown vertex: " + source + ".");
+		}
+		final int component = m_components[sourceIndex];
+		return new AbstractSet<V>() {
+			private int m_size = -1;
+
+			@Override
+			public boolean contains(Object o) {
+				final int index = indexOf(o);
+				return index >= 0 && reachesComponent(component, m_components[index]);
+			}
+
+			@Override
+			public int size() {
+				if (m_size < 0) {
+					int size = m_cyclic[component] ? m_memberStarts[component + 1] - m_memberStarts[component] : 0;
+					final int[] intervals = m_reachable[component];
+					for (int i = 0; i < intervals.length; i += 2) {
+						size += m_memberStarts[intervals[i + 1] + 1] - m_memberStarts[intervals[i]];
+					}
+					m_size = size;
+				}
+				return m_size;
+			}
+
+			@Override
+			public Iterator<V> iterator() {
+				return new AbstractIterator<V>() {
+					/**
+					 * The next interval to enumerate, or -2 for the component itself.
+					 */
+					private int m_nextInterval = m_cyclic[component] ? -2 : 0;
+					private int m_position = 0;
+					private int m_end = 0;
+
+					@Override
+					protected V computeNext() {
+						final int[] intervals = m_reachable[component];
+						while (m_position >= m_end) {
+							if (m_nextInterval < 0) {
+								m_position = m_memberStarts[component];
+								m_end = m_memberStarts[component + 1];
+								m_nextInterval = 0;
+							} else if (m_nextInterval < intervals.length) {
+								/** Members of consecutive components are consecutive. */
+								m_position = m_memberStarts[intervals[m_nextInterval]];
+								m_end = m_memberStarts[intervals[m_nextInterval + 1] + 1];
+								m_nextInterval += 2;
+							} else {
+								return endOfData();
+							}
+						}
+						return getVertex(m_members[m_position++]);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Adds to the given graph the edges of the transitive closure of the graph
+	 * this index has been computed on, except loops.
+	 *
+	 * @param graph not {@code null}, must contain the vertices of this index.
+	 * @return the number of edges added.
+	 */
+	public int closeDiGraph(DiGraph<V> graph) {
+		checkNotNull(graph);
+		int added = 0;
+		for (int i = 0; i < m_vertices.length; ++i) {
+			final V source = getVertex(i);
+			for (V target : getReachable(source)) {
+				if (!target.equals(source) && graph.addEdge(source, target) != null) {
+					++added;
+				}
+			}
+		}
+		return added;
+	}
+}
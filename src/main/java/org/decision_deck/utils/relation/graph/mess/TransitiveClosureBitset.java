@@ -0,0 +1,303 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.decision_deck.utils.Pair;
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.decision_deck.utils.relation.BinaryRelationImpl;
+
+/**
+ * <p>
+ * Constructs the transitive closure of a graph using Warshall's algorithm over
+ * bit sets. The vertices are mapped to dense indexes and each row of the
+ * adjacency matrix is stored as an array of {@code long}, so that the closure
+ * takes a time proportional to n³/64 and n²/8 bytes of memory, whatever the
+ * number of edges. The result is written back to the graph in a single pass
+ * once computed.
+ * </p>
+ * <p>
+ * The closure may be computed in parallel on a given {@link ForkJoinPool}. The
+ * steps of Warshall's algorithm are then grouped by blocks of
+ * {@link #PIVOTS_PER_BLOCK} consecutive intermediate vertices: the rows of the
+ * block are first closed sequentially over its vertices, then the other rows
+ * are split in chunks, each chunk going through the whole block in a single
+ * task. This takes n / {@value #PIVOTS_PER_BLOCK} fork/join phases instead of
+ * n. The result is identical to the sequential one. Graphs
+ * with less than {@link #PARALLEL_THRESHOLD} vertices are closed sequentially
+ * anyway. Writing the result back to the graph is always sequential.
+ * </p>
+ * <p>
+ * As {@link TransitiveClosureNew}, this engine never adds loops: a vertex that
+ * is on a cycle does not get an edge to itself, but existing loops are kept.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ */
+public class TransitiveClosureBitset {
+	/**
+	 * Singleton instance.
+	 */
+	public static final TransitiveClosureBitset INSTANCE = new TransitiveClosureBitset();
+
+	/**
+	 * Number of vertices from which the closure is computed in parallel, when a
+	 * pool is given.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1024;
+
+	/**
+	 * Number of consecutive steps of Warshall's algorithm executed in a single
+	 * fork/join phase, when computing in parallel.
+	 */
+	static final int PIVOTS_PER_BLOCK = 64;
+
+	/**
+	 * Maximal number of rows updated by a single task.
+	 */
+	private static final int ROWS_PER_TASK = 64;
+
+	/**
+	 * Updates the rows from a given index (inclusive) to an other index
+	 * (exclusive), except those of the block, with the steps of the block of
+	 * Warshall's algorithm, splitting the work if there are too many rows.
+	 */
+	static private class UnionBlockTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long[][] m_rows;
+		private final int m_kFrom;
+		private final int m_kTo;
+		private final int m_from;
+		private final int m_to;
+
+		public UnionBlockTask(long[][] rows, int kFrom, int kTo, int from, int to) {
+			m_rows = rows;
+			m_kFrom = kFrom;
+			m_kTo = kTo;
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_to - m_from <= ROWS_PER_TASK) {
+				for (int i = m_from; i < m_to; ++i) {
+					if (i < m_kFrom || i >= m_kTo) {
+						unionRow(m_rows, m_kFrom, m_kTo, i);
+					}
+				}
+				return;
+			}
+			final int middle = (m_from + m_to) >>> 1;
+			invokeAll(new UnionBlockTask(m_rows, m_kFrom, m_kTo, m_from, middle),
+					new UnionBlockTask(m_rows, m_kFrom, m_kTo, middle, m_to));
+		}
+	}
+
+	private TransitiveClosureBitset() {
+		/** Singleton. */
+	}
+
+	/**
+	 * Adds to the given graph the edges of its transitive closure, except loops.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param graph not {@code null}.
+	 */
+	public <V> void closeDiGraph(DiGraph<V> graph) {
+		final BitAdjacency<V> adjacency = BitAdjacency.of(graph);
+		final long[][] closed = getClosedRows(adjacency, null);
+		adjacency.addNewArcs(closed, graph);
+	}
+
+	/**
+	 * Adds to the given graph the edges of its transitive closure, except loops,
+	 * computing the closure on the given pool if the graph is large enough.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param graph not {@code null}.
+	 * @param pool  not {@code null}.
+	 */
+	public <V> void closeDiGraph(DiGraph<V> graph, ForkJoinPool pool) {
+		checkNotNull(pool);
+		final BitAdjacency<V> adjacency = BitAdjacency.of(graph);
+		final long[][] closed = getClosedRows(adjacency, pool);
+		adjacency.addNewArcs(closed, graph);
+	}
+
+	/**
+	 * Returns a new relation containing the pairs of the transitive closure of the
+	 * given one, except the pairs (x, x) that are not in the given relation. The
+	 * from and to sets of the returned relation contain only elements that are
+	 * part of a pair.
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 * @return not {@code null}.
+	 */
+	public <V> BinaryRelation<V, V> getClosure(BinaryRelation<V, V> relation) {
+		return getClosure(relation, null);
+	}
+
+	/**
+	 * Same as {@link #getClosure(BinaryRelation)}, computing the closure on the
+	 * given pool if the relation is large enough.
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 * @param pool     {@code null} for a sequential computation.
+	 * @return not {@code null}.
+	 */
+	public <V> BinaryRelation<V, V> getClosure(BinaryRelation<V, V> relation, ForkJoinPool pool) {
+		final BitAdjacency<V> adjacency = BitAdjacency.of(relation);
+		final long[][] closed = getClosedRows(adjacency, pool);
+		final BinaryRelation<V, V> closure = new BinaryRelationImpl<V, V>();
+		for (int i = 0; i < closed.length; ++i) {
+			final V from = adjacency.getVertex(i);
+			for (int w = 0; w < closed[i].length; ++w) {
+				long word = closed[i][w];
+				while (word != 0) {
+					final int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					closure.asPairs().add(Pair.create(from, adjacency.getVertex(j)));
+				}
+			}
+		}
+		return closure;
+	}
+
+	/**
+	 * Tells whether closing the given graph with {@link #closeDiGraph(DiGraph)}
+	 * would leave it unchanged.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param graph not {@code null}.
+	 * @return {@code true} iff the graph contains every edge (x, z), with x
+	 *         different than z, such that it contains (x, y) and (y, z).
+	 */
+	public <V> boolean isTransitive(DiGraph<V> graph) {
+		final BitAdjacency<V> adjacency = BitAdjacency.of(graph);
+		final long[][] closed = getClosedRows(adjacency, null);
+		for (int i = 0; i < closed.length; ++i) {
+			final long[] original = adjacency.getRow(i);
+			for (int w = 0; w < original.length; ++w) {
+				if (closed[i][w] != original[w]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the rows of the transitive closure of the given adjacency, with the
+	 * loops of the given adjacency and no other loops. The given adjacency is not
+	 * modified.
+	 *
+	 * @param adjacency not {@code null}.
+	 * @param pool      {@code null} for a sequential computation.
+	 * @return not {@code null}.
+	 */
+	static long[][] getClosedRows(BitAdjacency<?> adjacency, ForkJoinPool pool) {
+		checkNotNull(adjacency);
+		final long[][] rows = adjacency.copyRows();
+		if (pool == null || rows.length < PARALLEL_THRESHOLD) {
+			close(rows);
+		} else {
+			close(rows, pool);
+		}
+		for (int i = 0; i < rows.length; ++i) {
+			if (!adjacency.get(i, i)) {
+				rows[i][i >>> 6] &= ~(1L << i);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Replaces the given rows by the rows of their transitive closure, including
+	 * the loops on vertices that are part of a cycle.
+	 *
+	 * @param rows not {@code null}, a square bit matrix.
+	 */
+	static void close(long[][] rows) {
+		for (int k = 0; k < rows.length; ++k) {
+			unionRows(rows, k, 0, rows.length);
+		}
+	}
+
+	/**
+	 * Same as {@link #close(long[][])}, on the given pool, with one fork/join
+	 * phase per block of {@link #PIVOTS_PER_BLOCK} steps. The rows of the block
+	 * are first closed sequentially over the steps of the block; they are then
+	 * only read, while each other row goes through all the steps of the block in
+	 * a single task, thus the tasks of a phase are independent.
+	 * <p>
+	 * A row k of the block, read at the step k, then already contains the unions
+	 * of the following steps of the block. This only adds pairs of the closure
+	 * sooner, and each row still contains at least what it contains at the same
+	 * step of the sequential algorithm, thus the result is the same.
+	 * </p>
+	 *
+	 * @param rows not {@code null}, a square bit matrix.
+	 * @param pool not {@code null}.
+	 */
+	static void close(long[][] rows, ForkJoinPool pool) {
+		for (int kFrom = 0; kFrom < rows.length; kFrom += PIVOTS_PER_BLOCK) {
+			final int kTo = Math.min(kFrom + PIVOTS_PER_BLOCK, rows.length);
+			for (int k = kFrom; k < kTo; ++k) {
+				unionRows(rows, k, kFrom, kTo);
+			}
+			pool.invoke(new UnionBlockTask(rows, kFrom, kTo, 0, rows.length));
+		}
+	}
+
+	/**
+	 * Executes the step k of Warshall's algorithm on the given rows: adds the row
+	 * k to every row that contains k.
+	 *
+	 * @param rows not {@code null}.
+	 * @param k    the index of the intermediate vertex.
+	 * @param from the first row to update.
+	 * @param to   the row after the last one to update.
+	 */
+	static private void unionRows(long[][] rows, int k, int from, int to) {
+		final int kWord = k >>> 6;
+		final long kBit = 1L << k;
+		final long[] rowK = rows[k];
+		for (int i = from; i < to; ++i) {
+			final long[] rowI = rows[i];
+			if (i == k || (rowI[kWord] & kBit) == 0) {
+				continue;
+			}
+			for (int w = 0; w < rowI.length; ++w) {
+				rowI[w] |= rowK[w];
+			}
+		}
+	}
+
+	/**
+	 * Executes the steps from a given index (inclusive) to an other index
+	 * (exclusive) of Warshall's algorithm on the row i only.
+	 *
+	 * @param rows  not {@code null}.
+	 * @param kFrom the first intermediate vertex.
+	 * @param kTo   the intermediate vertex after the last one.
+	 * @param i     the row to update, not between kFrom and kTo.
+	 */
+	static private void unionRow(long[][] rows, int kFrom, int kTo, int i) {
+		final long[] rowI = rows[i];
+		for (int k = kFrom; k < kTo; ++k) {
+			if ((rowI[k >>> 6] & (1L << k)) == 0) {
+				continue;
+			}
+			final long[] rowK = rows[k];
+			for (int w = 0; w < rowI.length; ++w) {
+				rowI[w] |= rowK[w];
+			}
+		}
+	}
+}
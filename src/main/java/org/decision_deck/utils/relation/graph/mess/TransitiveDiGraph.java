@@ -0,0 +1,297 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.decision_deck.utils.collection.KeyIndexer;
+import org.decision_deck.utils.relation.graph.Edge;
+import org.jgrapht.DirectedGraph;
+
+/**
+ * <p>
+ * A directed acyclic graph that is kept transitive: adding an edge also adds to
+ * the delegate graph every edge of the transitive closure that the new edge
+ * implies. The closure is maintained incrementally, in the style of Italiano's
+ * algorithm: when adding (u, v), only the vertices that reach u but not yet v
+ * are updated, each one by a bit set union with the descendants of v. This
+ * gives an amortized cost linear in the number of vertices per insertion, and
+ * answers {@link #reaches(Object, Object)} in constant time.
+ * </p>
+ * <p>
+ * Edges that would create a cycle, including loops, are refused, as can be
+ * checked beforehand with {@link #wouldCreateCycle(Object, Object)}. Edges may
+ * not be removed, as the result would generally not be transitive; removing a
+ * vertex is supported.
+ * </p>
+ * <p>
+ * The delegate graph must not be modified directly, including through
+ * {@link #getGraph()}.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ * @param <V> the vertex type.
+ */
+public class TransitiveDiGraph<V> implements DiGraph<V> {
+
+	private final DiGraph<V> m_delegate;
+
+	private final KeyIndexer<V> m_vertices = new KeyIndexer<V>();
+
+	/**
+	 * The vertices reachable from each vertex index, as bit sets.
+	 */
+	private long[][] m_descendants = new long[0][];
+
+	/**
+	 * The vertices reaching each vertex index, as bit sets.
+	 */
+	private long[][] m_ancestors = new long[0][];
+
+	static public <V> TransitiveDiGraph<V> create() {
+		return new TransitiveDiGraph<V>(DiGraphImpl.<V>create());
+	}
+
+	/**
+	 * Creates a new object delegating to the given graph.
+	 *
+	 * @param delegate not {@code null}, must be empty.
+	 */
+	public TransitiveDiGraph(DiGraph<V> delegate) {
+		checkNotNull(delegate);
+		checkArgument(delegate.vertexSet().isEmpty());
+		m_delegate = delegate;
+	}
+
+	private int indexOf(Object vertex) {
+		return m_vertices.indexOf(vertex);
+	}
+
+	private V getVertex(int index) {
+		return m_vertices.getKey(index);
+	}
+
+	static private boolean get(long[] row, int index) {
+		return (row[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Tells whether this graph contains a path from the given source to the given
+	 * target, thus, as it is transitive, whether it contains the corresponding
+	 * edge.
+	 *
+	 * @param source may be {@code null}.
+	 * @param target may be {@code null}.
+	 * @return {@code false} if any of the given vertices is not in this graph.
+	 */
+	public boolean reaches(V source, V target) {
+		final int sourceIndex = indexOf(source);
+		final int targetIndex = indexOf(target);
+		return sourceIndex >= 0 && targetIndex >= 0 && get(m_descendants[sourceIndex], targetIndex);
+	}
+
+	/**
+	 * Tells whether adding an edge from the given source to the given target would
+	 * create a cycle, that is, whether they are equal or the target reaches the
+	 * source.
+	 *
+	 * @param source not {@code null}.
+	 * @param target not {@code null}.
+	 * @return {@code true} iff {@link #addEdge(Object, Object)} would refuse that
+	 *         edge.
+	 */
+	public boolean wouldCreateCycle(V source, V target) {
+		checkNotNull(source);
+		checkNotNull(target);
+		return source.equals(target) || reaches(target, source);
+	}
+
+	/**
+	 * Adds the given edge and every edge implied by transitivity that this graph
+	 * does not contain yet.
+	 *
+	 * @return the newly created edge from the given source to the given target, or
+	 *         {@code null} if this graph already contains that edge.
+	 * @throws IllegalArgumentException if any of the given vertices is not in this
+	 *                                  graph, or if the edge would create a cycle.
+	 */
+	@Override
+	public Edge<V> addEdge(V sourceVertex, V targetVertex) {
+		checkNotNull(sourceVertex);
+		checkNotNull(targetVertex);
+		final int u = indexOf(sourceVertex);
+		final int v = indexOf(targetVertex);
+		checkArgument(u >= 0 && v >= 0, "Unknown vertex.");
+		if (get(m_descendants[u], v)) {
+			return null;
+		}
+		if (wouldCreateCycle(sourceVertex, targetVertex)) {
+			throw new IllegalArgumentException(
+					"Edge from " + sourceVertex + " to " + targetVertex + " would create a cycle.");
+		}
+		final long[] targets = m_descendants[v].clone();
+		targets[v >>> 6] |= 1L << v;
+		final Edge<V> created = addEdgesFrom(u, targets, v);
+		final long[] sources = m_ancestors[u];
+		for (int w = 0; w < sources.length; ++w) {
+			long word = sources[w];
+			while (word != 0) {
+				final int x = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (!get(m_descendants[x], v)) {
+					addEdgesFrom(x, targets, v);
+				}
+			}
+		}
+		assert created != null;
+		return created;
+	}
+
+	/**
+	 * Adds to the descendants of the given source, and to the delegate graph, the
+	 * given targets that it does not reach yet.
+	 *
+	 * @param source  a vertex index, which must not be in the targets.
+	 * @param targets not {@code null}.
+	 * @param v       the index of a target.
+	 * @return the edge from the source to v, if added, {@code null} otherwise.
+	 */
+	private Edge<V> addEdgesFrom(int source, long[] targets, int v) {
+		final long[] descendants = m_descendants[source];
+		final V sourceVertex = getVertex(source);
+		final int sourceWord = source >>> 6;
+		final long sourceBit = 1L << source;
+		Edge<V> edgeToV = null;
+		for (int w = 0; w < targets.length; ++w) {
+			long word = targets[w] & ~descendants[w];
+			descendants[w] |= word;
+			while (word != 0) {
+				final int y = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				m_ancestors[y][sourceWord] |= sourceBit;
+				final Edge<V> edge = m_delegate.addEdge(sourceVertex, getVertex(y));
+				if (y == v) {
+					edgeToV = edge;
+				}
+			}
+		}
+		return edgeToV;
+	}
+
+	@Override
+	public boolean addVertex(V v) {
+		if (!m_delegate.addVertex(v)) {
+			return false;
+		}
+		final int index = m_vertices.intern(v);
+		if (index == m_descendants.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the capacity of this object, or sets it to a minimal capacity.
+	 */
+	private void grow() {
+		final int capacity = Math.max(64, m_descendants.length * 2);
+		final int words = BitAdjacency.getWordCount(capacity);
+		m_descendants = grow(m_descendants, capacity, words);
+		m_ancestors = grow(m_ancestors, capacity, words);
+	}
+
+	static private long[][] grow(long[][] rows, int capacity, int words) {
+		final long[][] grown = new long[capacity][];
+		for (int i = 0; i < capacity; ++i) {
+			grown[i] = i < rows.length ? Arrays.copyOf(rows[i], words) : new long[words];
+		}
+		return grown;
+	}
+
+	@Override
+	public boolean containsEdge(V sourceVertex, V targetVertex) {
+		return reaches(sourceVertex, targetVertex);
+	}
+
+	@Override
+	public boolean containsVertex(V v) {
+		return m_vertices.indexOf(v) >= 0;
+	}
+
+	@Override
+	public Set<Edge<V>> edgeSet() {
+		return m_delegate.edgeSet();
+	}
+
+	@Override
+	public Set<Edge<V>> edgesOf(V vertex) {
+		return m_delegate.edgesOf(vertex);
+	}
+
+	@Override
+	public boolean removeVertex(V v) {
+		final int index = indexOf(v);
+		if (index < 0) {
+			return false;
+		}
+		final boolean removed = m_delegate.removeVertex(v);
+		assert removed;
+		final int word = index >>> 6;
+		final long bit = 1L << index;
+		final long[] descendants = m_descendants[index];
+		final long[] ancestors = m_ancestors[index];
+		for (int w = 0; w < descendants.length; ++w) {
+			long descendantsWord = descendants[w];
+			while (descendantsWord != 0) {
+				final int y = (w << 6) + Long.numberOfTrailingZeros(descendantsWord);
+				descendantsWord &= descendantsWord - 1;
+				m_ancestors[y][word] &= ~bit;
+			}
+			long ancestorsWord = ancestors[w];
+			while (ancestorsWord != 0) {
+				final int x = (w << 6) + Long.numberOfTrailingZeros(ancestorsWord);
+				ancestorsWord &= ancestorsWord - 1;
+				m_descendants[x][word] &= ~bit;
+			}
+		}
+		Arrays.fill(descendants, 0L);
+		Arrays.fill(ancestors, 0L);
+		m_vertices.remove(v);
+		return true;
+	}
+
+	@Override
+	public Set<V> vertexSet() {
+		return m_delegate.vertexSet();
+	}
+
+	@Override
+	public Set<Edge<V>> incomingEdgesOf(V vertex) {
+		return m_delegate.incomingEdgesOf(vertex);
+	}
+
+	@Override
+	public Set<Edge<V>> outgoingEdgesOf(V vertex) {
+		return m_delegate.outgoingEdgesOf(vertex);
+	}
+
+	/**
+	 * Not supported, as removing an edge from a transitive graph generally makes it
+	 * not transitive.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public Edge<V> removeEdge(V sourceVertex, V targetVertex) {
+		throw new UnsupportedOperationException("Edges can't be removed from a transitive graph.");
+	}
+
+	@Override
+	public DirectedGraph<V, Edge<V>> getGraph() {
+		return m_delegate.getGraph();
+	}
+
+}
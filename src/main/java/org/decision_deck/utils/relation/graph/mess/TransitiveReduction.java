@@ -0,0 +1,199 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.decision_deck.utils.Pair;
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.jgrapht.DirectedGraph;
+
+/**
+ * <p>
+ * Computes the transitive reduction of a graph, that is, removes every edge (x,
+ * z) such that z can be reached from x through an other vertex, in the
+ * condensation of the graph. The vertices are mapped to dense indexes; the
+ * strongly connected components are computed and the components are processed
+ * in reverse topological order. The successors of a component are scanned in
+ * topological order, and a successor is kept iff it is not already reachable
+ * from the successors kept so far, in which case the set of components it
+ * reaches, as a bit set, is added to the set reachable from the current
+ * component. Only kept successors incur a bit set union, thus the reduction of
+ * a total order is computed in a time proportional to the number of its edges.
+ * </p>
+ * <p>
+ * The edges within a strongly connected component, including loops, are kept:
+ * equivalent vertices remain connected as in the original graph. An edge
+ * between two components is kept iff the corresponding edge of the
+ * condensation is part of the reduction of the condensation. For an acyclic
+ * graph, the result is the usual transitive reduction, which, for a partial
+ * order, is its Hasse diagram. The given graph does not need to be transitive.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ */
+public class TransitiveReduction {
+	/**
+	 * Singleton instance.
+	 */
+	public static final TransitiveReduction INSTANCE = new TransitiveReduction();
+
+	private TransitiveReduction() {
+		/** Singleton. */
+	}
+
+	/**
+	 * Removes an arc from the structure an adjacency has been read from.
+	 *
+	 * @param <V> the vertex type.
+	 */
+	private static interface ArcRemover<V> {
+		/**
+		 * Removes the arc from the given source to the given target, which must
+		 * exist.
+		 */
+		public void remove(V source, V target);
+	}
+
+	/**
+	 * Removes from the given graph the edges that are not part of its transitive
+	 * reduction.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param graph not {@code null}.
+	 * @return the number of edges removed.
+	 */
+	public <V> int reduceDiGraph(final DiGraph<V> graph) {
+		return removeNotKept(BitAdjacency.of(graph), new ArcRemover<V>() {
+			@Override
+			public void remove(V source, V target) {
+				graph.removeEdge(source, target);
+			}
+		});
+	}
+
+	/**
+	 * Removes from the given graph the edges that are not part of its transitive
+	 * reduction.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param       <E> the edge type.
+	 * @param graph not {@code null}.
+	 * @return the number of edges removed.
+	 */
+	public <V, E> int reduce(final DirectedGraph<V, E> graph) {
+		return removeNotKept(BitAdjacency.of(graph), new ArcRemover<V>() {
+			@Override
+			public void remove(V source, V target) {
+				graph.removeEdge(source, target);
+			}
+		});
+	}
+
+	/**
+	 * Removes from the given relation the pairs that are not part of its
+	 * transitive reduction. The from and to sets are not modified.
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 * @return the number of pairs removed.
+	 */
+	public <V> int reduce(final BinaryRelation<V, V> relation) {
+		return removeNotKept(BitAdjacency.of(relation), new ArcRemover<V>() {
+			@Override
+			public void remove(V source, V target) {
+				final boolean done = relation.asPairs().remove(Pair.create(source, target));
+				assert done;
+			}
+		});
+	}
+
+	/**
+	 * Computes the transitive reduction of the given adjacency, then removes,
+	 * using the given remover, the arcs of the adjacency that the reduction does
+	 * not keep.
+	 *
+	 * @return the number of arcs removed.
+	 */
+	private static <V> int removeNotKept(BitAdjacency<V> adjacency, ArcRemover<V> remover) {
+		final long[][] reduced = getReducedRows(adjacency);
+		int removed = 0;
+		for (int i = 0; i < reduced.length; ++i) {
+			final long[] original = adjacency.getRow(i);
+			for (int w = 0; w < original.length; ++w) {
+				long word = original[w] & ~reduced[i][w];
+				while (word != 0) {
+					final int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					remover.remove(adjacency.getVertex(i), adjacency.getVertex(j));
+					++removed;
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the rows of the transitive reduction of the given adjacency, which
+	 * is not modified.
+	 *
+	 * @param adjacency not {@code null}.
+	 * @return not {@code null}, a subset of the arcs of the given adjacency.
+	 */
+	static long[][] getReducedRows(BitAdjacency<?> adjacency) {
+		checkNotNull(adjacency);
+		final int n = adjacency.size();
+		final int[] starts = new int[n + 1];
+		final int[] targets = adjacency.getTargets(starts);
+		final int[] components = new int[n];
+		/** Numbered in reverse topological order: successors have lower numbers. */
+		final int count = ReachabilityIndex.computeComponents(starts, targets, components);
+		final int words = BitAdjacency.getWordCount(count);
+
+		final long[][] condensation = new long[count][words];
+		for (int x = 0; x < n; ++x) {
+			final int c = components[x];
+			for (int e = starts[x]; e < starts[x + 1]; ++e) {
+				final int d = components[targets[e]];
+				if (d != c) {
+					condensation[c][d >>> 6] |= 1L << d;
+				}
+			}
+		}
+
+		final long[][] reachable = new long[count][words];
+		final long[][] kept = new long[count][words];
+		for (int c = 0; c < count; ++c) {
+			final long[] reachableFromC = reachable[c];
+			/** Topological order among the successors: decreasing numbers. */
+			for (int w = words - 1; w >= 0; --w) {
+				long word = condensation[c][w];
+				while (word != 0) {
+					final int bit = Long.SIZE - 1 - Long.numberOfLeadingZeros(word);
+					word &= ~(1L << bit);
+					final int d = (w << 6) + bit;
+					if ((reachableFromC[w] & (1L << bit)) != 0) {
+						continue;
+					}
+					kept[c][w] |= 1L << bit;
+					reachableFromC[w] |= 1L << bit;
+					final long[] reachableFromD = reachable[d];
+					for (int v = 0; v < words; ++v) {
+						reachableFromC[v] |= reachableFromD[v];
+					}
+				}
+			}
+		}
+
+		final long[][] reduced = new long[n][BitAdjacency.getWordCount(n)];
+		for (int x = 0; x < n; ++x) {
+			final int c = components[x];
+			for (int e = starts[x]; e < starts[x + 1]; ++e) {
+				final int y = targets[e];
+				final int d = components[y];
+				if (d == c || (kept[c][d >>> 6] & (1L << d)) != 0) {
+					reduced[x][y >>> 6] |= 1L << y;
+				}
+			}
+		}
+		return reduced;
+	}
+}
@@ -0,0 +1,253 @@
+package org.decision_deck.utils.relation.graph.mess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.decision_deck.utils.matrix.Matrixes;
+import org.decision_deck.utils.matrix.SparseMatrixBooleanRead;
+import org.decision_deck.utils.matrix.SparseMatrixDIndexedRead;
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.decision_deck.utils.relation.BinaryRelationSparse;
+import org.decision_deck.utils.relation.graph.Edge;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * Checks whether a graph, a relation or a binary matrix is transitive, and if
+ * not, finds a triple (x, y, z) violating transitivity: x is related to y, y is
+ * related to z, x is different than z and x is not related to z. As with
+ * {@link GraphUtils#computeTransitiveClosure(DiGraph)}, a missing loop is not
+ * considered as a violation: if x is related to y and y to x, x does not have
+ * to be related to itself.
+ * </p>
+ * <p>
+ * The check stops at the first violation found, and never copies the source
+ * into a graph. Sparse graphs, relations and matrixes are checked directly on
+ * the source, using memory linear in the number of elements: for each element
+ * x, the successors of x are marked, then each successor of a successor of x is
+ * checked against the marks. Graphs are read through their outgoing edges,
+ * matrixes through their int indexes (see {@link Matrixes#asIndexed}), a
+ * {@link BinaryRelationSparse} through its successor sets, and any other
+ * relation through {@link BinaryRelation#contains(Object, Object)}, which takes
+ * n calls to read one row.
+ * </p>
+ * <p>
+ * Dense graphs are the only sources that are first copied, into one bit set per
+ * vertex, n²/8 bytes in total: a graph gives its rows only as sets of edges,
+ * each of which costs a hash lookup to map to its target, whereas each row of
+ * the copy is then checked to include the rows of its successors, 64 vertices
+ * at a time. None of the checks allocate memory in their inner loops.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ */
+public class TransitivityChecker {
+	/**
+	 * Singleton instance.
+	 */
+	public static final TransitivityChecker INSTANCE = new TransitivityChecker();
+
+	/**
+	 * Average number of outgoing edges per vertex up to which a graph is checked
+	 * on its adjacency rather than on bit sets.
+	 */
+	private static final int SPARSE_DEGREE = 8;
+
+	private TransitivityChecker() {
+		/** Singleton. */
+	}
+
+	/**
+	 * Finds a triple of vertices violating transitivity in the given graph.
+	 *
+	 * @param       <V> the vertex type.
+	 * @param graph not {@code null}.
+	 * @return {@code null} iff the graph is transitive, otherwise a list of three
+	 *         vertices x, y, z such that the graph contains the edges (x, y) and
+	 *         (y, z) but not (x, z), with x different than z.
+	 */
+	public <V> ImmutableList<V> findViolation(DiGraph<V> graph) {
+		checkNotNull(graph);
+		final int vertexCount = graph.vertexSet().size();
+		if (graph.edgeSet().size() > (long) vertexCount * SPARSE_DEGREE) {
+			return findViolation(BitAdjacency.of(graph));
+		}
+		final Map<V, Integer> indexes = Maps.newHashMapWithExpectedSize(vertexCount);
+		for (V vertex : graph.vertexSet()) {
+			indexes.put(vertex, Integer.valueOf(indexes.size()));
+		}
+		/** marks[z] == x iff x has an edge to z. */
+		final int[] marks = new int[vertexCount];
+		Arrays.fill(marks, -1);
+		for (V x : graph.vertexSet()) {
+			final int xIndex = indexes.get(x).intValue();
+			final Iterable<Edge<V>> outgoing = graph.outgoingEdgesOf(x);
+			for (Edge<V> edge : outgoing) {
+				marks[indexes.get(edge.getTarget()).intValue()] = xIndex;
+			}
+			for (Edge<V> edge : outgoing) {
+				final V y = edge.getTarget();
+				for (Edge<V> next : graph.outgoingEdgesOf(y)) {
+					final V z = next.getTarget();
+					if (marks[indexes.get(z).intValue()] != xIndex && !z.equals(x)) {
+						return ImmutableList.of(x, y, z);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a triple of elements violating transitivity in the given relation.
+	 *
+	 * @param          <V> the type of the elements.
+	 * @param relation not {@code null}.
+	 * @return {@code null} iff the relation is transitive, otherwise a list of
+	 *         three elements x, y, z such that the relation contains (x, y) and (y,
+	 *         z) but not (x, z), with x different than z.
+	 */
+	public <V> ImmutableList<V> findViolation(BinaryRelation<V, V> relation) {
+		checkNotNull(relation);
+		@SuppressWarnings("unchecked")
+		final BinaryRelationSparse<V, V> sparse = relation instanceof BinaryRelationSparse
+				? (BinaryRelationSparse<V, V>) relation
+				: null;
+		/** The elements of the from set come first. */
+		final ImmutableList<V> elements = ImmutableList.copyOf(Sets.union(relation.getFrom(), relation.getTo()));
+		final int fromCount = relation.getFrom().size();
+		final Map<V, Integer> indexes = Maps.newHashMapWithExpectedSize(elements.size());
+		for (V element : elements) {
+			indexes.put(element, Integer.valueOf(indexes.size()));
+		}
+		/** marks[z] == x iff x is related to z. */
+		final int[] marks = new int[elements.size()];
+		Arrays.fill(marks, -1);
+		final int[] successors = new int[elements.size()];
+		for (int x = 0; x < fromCount; ++x) {
+			final V xElement = elements.get(x);
+			int successorCount = 0;
+			if (sparse == null) {
+				for (int z = 0; z < elements.size(); ++z) {
+					if (relation.contains(xElement, elements.get(z))) {
+						marks[z] = x;
+						successors[successorCount++] = z;
+					}
+				}
+			} else {
+				for (V z : sparse.successors(xElement)) {
+					final int zIndex = indexes.get(z).intValue();
+					marks[zIndex] = x;
+					successors[successorCount++] = zIndex;
+				}
+			}
+			for (int s = 0; s < successorCount; ++s) {
+				final V y = elements.get(successors[s]);
+				if (sparse == null) {
+					for (int z = 0; z < elements.size(); ++z) {
+						if (marks[z] != x && z != x && relation.contains(y, elements.get(z))) {
+							return ImmutableList.of(xElement, y, elements.get(z));
+						}
+					}
+				} else {
+					for (V z : sparse.successors(y)) {
+						final int zIndex = indexes.get(z).intValue();
+						if (marks[zIndex] != x && zIndex != x) {
+							return ImmutableList.of(xElement, y, z);
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a triple of elements violating transitivity in the relation
+	 * represented by the given matrix: an element x is related to y iff the matrix
+	 * has a value at row x and column y, and this value is one.
+	 *
+	 * @param        <V> the type of the elements.
+	 * @param matrix not {@code null}.
+	 * @return {@code null} iff the relation is transitive, otherwise a list of
+	 *         three elements x, y, z such that x is related to y and y to z but
+	 *         not x to z, with x different than z.
+	 */
+	public <V> ImmutableList<V> findViolation(SparseMatrixBooleanRead<V, V> matrix) {
+		checkNotNull(matrix);
+		final SparseMatrixDIndexedRead<V, V> indexed = Matrixes.asIndexed(matrix);
+		final int rowBound = indexed.getRowBound();
+		final int columnBound = indexed.getColumnBound();
+		/** rowOfColumn[c] is the row index of the element at column c, or -1. */
+		final int[] rowOfColumn = new int[columnBound];
+		for (int c = 0; c < columnBound; ++c) {
+			final V column = indexed.getColumn(c);
+			rowOfColumn[c] = column == null ? -1 : indexed.rowIndex(column);
+		}
+		/** marks[c] == x iff the element at row x is related to the one at column c. */
+		final int[] marks = new int[columnBound];
+		Arrays.fill(marks, -1);
+		final int[] successors = new int[columnBound];
+		for (int x = 0; x < rowBound; ++x) {
+			if (indexed.getRow(x) == null) {
+				continue;
+			}
+			int successorCount = 0;
+			for (int c = 0; c < columnBound; ++c) {
+				if (isOne(indexed, x, c)) {
+					marks[c] = x;
+					successors[successorCount++] = c;
+				}
+			}
+			for (int s = 0; s < successorCount; ++s) {
+				final int y = rowOfColumn[successors[s]];
+				if (y < 0) {
+					continue;
+				}
+				for (int z = 0; z < columnBound; ++z) {
+					if (marks[z] != x && rowOfColumn[z] != x && isOne(indexed, y, z)) {
+						return ImmutableList.of(indexed.getRow(x), indexed.getRow(y), indexed.getColumn(z));
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	static private boolean isOne(SparseMatrixDIndexedRead<?, ?> matrix, int row, int column) {
+		return matrix.hasValue(row, column) && matrix.getValue(row, column) == 1d;
+	}
+
+	static <V> ImmutableList<V> findViolation(BitAdjacency<V> adjacency) {
+		for (int x = 0; x < adjacency.size(); ++x) {
+			final long[] rowX = adjacency.getRow(x);
+			final int xWord = x >>> 6;
+			final long xBit = 1L << x;
+			for (int w = 0; w < rowX.length; ++w) {
+				long word = rowX[w];
+				while (word != 0) {
+					final int y = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					final long[] rowY = adjacency.getRow(y);
+					for (int v = 0; v < rowY.length; ++v) {
+						long missing = rowY[v] & ~rowX[v];
+						if (v == xWord) {
+							missing &= ~xBit;
+						}
+						if (missing != 0) {
+							final int z = (v << 6) + Long.numberOfTrailingZeros(missing);
+							return ImmutableList.of(adjacency.getVertex(x), adjacency.getVertex(y),
+									adjacency.getVertex(z));
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+}
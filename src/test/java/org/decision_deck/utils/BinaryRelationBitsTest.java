@@ -0,0 +1,88 @@
+package org.decision_deck.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.decision_deck.utils.relation.BinaryRelationBits;
+import org.decision_deck.utils.relation.BinaryRelationImpl;
+import org.decision_deck.utils.relation.BinaryRelationRo;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class BinaryRelationBitsTest {
+
+	@Test
+	public void testBasics() {
+		final BinaryRelationBits<String, Integer> relation = BinaryRelationBits.create();
+		assertTrue(relation.isEmpty());
+		assertTrue(relation.asPairs().add(Pair.create("a", Integer.valueOf(1))));
+		assertFalse(relation.asPairs().add(Pair.create("a", Integer.valueOf(1))));
+		relation.asPairs().add(Pair.create("b", Integer.valueOf(2)));
+		relation.asPairs().add(Pair.create("a", Integer.valueOf(3)));
+		relation.getFrom().add("c");
+		assertEquals(ImmutableList.of("a", "b", "c"), ImmutableList.copyOf(relation.getFrom()));
+		assertEquals(3, relation.asPairs().size());
+		assertEquals(9, relation.getValueCount());
+		assertTrue(relation.contains("a", Integer.valueOf(3)));
+		assertFalse(relation.contains("c", Integer.valueOf(3)));
+		assertFalse(relation.contains("d", Integer.valueOf(3)));
+		assertEquals(ImmutableList.of(Pair.create("a", Integer.valueOf(1)), Pair.create("a", Integer.valueOf(3)),
+				Pair.create("b", Integer.valueOf(2))), ImmutableList.copyOf(relation));
+
+		final BinaryRelation<String, Integer> impl = new BinaryRelationImpl<String, Integer>();
+		impl.asPairs().addAll(relation.asPairs());
+		impl.getFrom().add("c");
+		assertEquals(impl, relation);
+		assertEquals(relation, impl);
+		assertEquals(impl.hashCode(), relation.hashCode());
+		assertEquals(relation, new BinaryRelationRo<String, Integer>(relation));
+
+		/** Removing a pair keeps the domains; removing an element drops its pairs. */
+		assertTrue(relation.asPairs().remove(Pair.create("b", Integer.valueOf(2))));
+		assertTrue(relation.getFrom().contains("b"));
+		assertTrue(relation.getTo().remove(Integer.valueOf(3)));
+		assertEquals(ImmutableSet.of(Pair.create("a", Integer.valueOf(1))), relation.asPairs());
+		relation.asPairs().add(Pair.create("d", Integer.valueOf(4)));
+		assertFalse(relation.contains("a", Integer.valueOf(4)));
+		assertTrue(relation.getFrom().remove("a"));
+		assertEquals(ImmutableSet.of(Pair.create("d", Integer.valueOf(4))), relation.asPairs());
+		relation.asPairs().add(Pair.create("e", Integer.valueOf(1)));
+		assertFalse(relation.contains("e", Integer.valueOf(4)));
+		assertEquals(2, relation.asPairs().size());
+	}
+
+	@Test
+	public void testRandom() {
+		final Random random = new Random(7);
+		final BinaryRelationBits<Integer, Integer> bits = BinaryRelationBits.create();
+		final BinaryRelation<Integer, Integer> impl = new BinaryRelationImpl<Integer, Integer>();
+		for (int step = 0; step < 5000; ++step) {
+			final Pair<Integer, Integer> pair = Pair.create(Integer.valueOf(random.nextInt(150)),
+					Integer.valueOf(random.nextInt(150)));
+			if (random.nextInt(3) == 0) {
+				assertEquals(impl.asPairs().remove(pair), bits.asPairs().remove(pair));
+			} else {
+				assertEquals(impl.asPairs().add(pair), bits.asPairs().add(pair));
+			}
+		}
+		assertEquals(impl, bits);
+		final Iterator<Pair<Integer, Integer>> iterator = bits.iterator();
+		while (iterator.hasNext()) {
+			final Pair<Integer, Integer> pair = iterator.next();
+			if (pair.getElt1().intValue() % 2 == 0) {
+				iterator.remove();
+				impl.asPairs().remove(pair);
+			}
+		}
+		assertEquals(impl, bits);
+		assertEquals(impl, BinaryRelationBits.copyOf(impl));
+	}
+
+}
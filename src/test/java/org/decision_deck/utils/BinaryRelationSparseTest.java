@@ -0,0 +1,85 @@
+package org.decision_deck.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.decision_deck.utils.relation.BinaryRelationImpl;
+import org.decision_deck.utils.relation.BinaryRelationSparse;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class BinaryRelationSparseTest {
+
+	@Test
+	public void testNeighbours() {
+		final BinaryRelationSparse<String, Integer> relation = BinaryRelationSparse.create();
+		final Set<Integer> successorsOfA = relation.successors("a");
+		assertTrue(successorsOfA.isEmpty());
+		relation.asPairs().add(Pair.create("a", Integer.valueOf(1)));
+		relation.asPairs().add(Pair.create("a", Integer.valueOf(2)));
+		relation.asPairs().add(Pair.create("b", Integer.valueOf(2)));
+		assertEquals(ImmutableSet.of(Integer.valueOf(1), Integer.valueOf(2)), successorsOfA);
+		assertEquals(ImmutableSet.of("a", "b"), relation.predecessors(Integer.valueOf(2)));
+		assertTrue(relation.contains("b", Integer.valueOf(2)));
+
+		/** Removing a pair keeps the domains. */
+		assertTrue(relation.asPairs().remove(Pair.create("a", Integer.valueOf(1))));
+		assertTrue(relation.getTo().contains(Integer.valueOf(1)));
+		assertTrue(relation.predecessors(Integer.valueOf(1)).isEmpty());
+
+		/** Removing an element removes its pairs. */
+		assertTrue(relation.getTo().remove(Integer.valueOf(2)));
+		assertTrue(successorsOfA.isEmpty());
+		assertTrue(relation.asPairs().isEmpty());
+		assertEquals(ImmutableSet.of("a", "b"), relation.getFrom());
+		relation.asPairs().add(Pair.create("b", Integer.valueOf(2)));
+		assertTrue(relation.getFrom().remove("b"));
+		assertTrue(relation.predecessors(Integer.valueOf(2)).isEmpty());
+		assertFalse(relation.contains("b", Integer.valueOf(2)));
+		assertEquals(0, relation.asPairs().size());
+	}
+
+	@Test
+	public void testRandom() {
+		final Random random = new Random(11);
+		final BinaryRelationSparse<Integer, String> sparse = BinaryRelationSparse.create();
+		final BinaryRelation<Integer, String> impl = new BinaryRelationImpl<Integer, String>();
+		for (int step = 0; step < 3000; ++step) {
+			final Pair<Integer, String> pair = Pair.create(Integer.valueOf(random.nextInt(60)),
+					String.valueOf(random.nextInt(60)));
+			if (random.nextInt(3) == 0) {
+				assertEquals(impl.asPairs().remove(pair), sparse.asPairs().remove(pair));
+			} else {
+				assertEquals(impl.asPairs().add(pair), sparse.asPairs().add(pair));
+			}
+		}
+		assertEquals(impl, sparse);
+		assertEquals(sparse, impl);
+		assertEquals(impl.hashCode(), sparse.hashCode());
+
+		final Iterator<Pair<Integer, String>> iterator = sparse.iterator();
+		while (iterator.hasNext()) {
+			final Pair<Integer, String> pair = iterator.next();
+			if (pair.getElt2().length() == 1) {
+				iterator.remove();
+				impl.asPairs().remove(pair);
+			}
+		}
+		assertEquals(impl, sparse);
+		for (Integer from : sparse.getFrom()) {
+			for (String to : sparse.successors(from)) {
+				assertTrue(impl.contains(from, to));
+				assertTrue(sparse.predecessors(to).contains(from));
+			}
+		}
+		assertEquals(impl, BinaryRelationSparse.copyOf(impl));
+	}
+
+}
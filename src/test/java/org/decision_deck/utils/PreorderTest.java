@@ -4,10 +4,19 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import org.decision_deck.utils.relation.Preorder;
+import org.decision_deck.utils.relation.RelationUtils;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 
 public class PreorderTest {
 
@@ -58,4 +67,127 @@ public class PreorderTest {
 
 	}
 
+	@Test
+	public void testRandomAgainstClosure() {
+		final Random random = new Random(3);
+		final int n = 90;
+		final Preorder<Integer> pr = Preorder.create();
+		final boolean[][] expected = new boolean[n][n];
+		for (int step = 0; step < 120; ++step) {
+			final int x = random.nextInt(n);
+			final int y = random.nextInt(n);
+			pr.addTransitive(Integer.valueOf(x), Integer.valueOf(y));
+			expected[x][x] = true;
+			expected[y][y] = true;
+			expected[x][y] = true;
+			for (int k = 0; k < n; ++k) {
+				for (int i = 0; i < n; ++i) {
+					for (int j = 0; j < n; ++j) {
+						expected[i][j] |= expected[i][k] && expected[k][j];
+					}
+				}
+			}
+			if (step % 20 != 0) {
+				continue;
+			}
+			final Set<Pair<Integer, Integer>> pairs = Sets.newHashSet();
+			for (int i = 0; i < n; ++i) {
+				for (int j = 0; j < n; ++j) {
+					assertEquals(expected[i][j], pr.contains(Integer.valueOf(i), Integer.valueOf(j)));
+					if (expected[i][j]) {
+						pairs.add(Pair.create(Integer.valueOf(i), Integer.valueOf(j)));
+					}
+				}
+			}
+			assertEquals(pairs, pr.asPairs());
+			assertEquals(pairs.size(), Iterables.size(pr));
+		}
+		assertEquals(pr, Preorder.copyOf(pr));
+	}
+
+	@Test
+	public void testCompleteRandomlyReproducesSeeds() {
+		for (long seed = 0; seed < 5; ++seed) {
+			final Random random = new Random(seed);
+			final Preorder<Integer> partial = Preorder.create();
+			for (int i = 0; i < 70; ++i) {
+				partial.addTransitive(Integer.valueOf(i), Integer.valueOf(i));
+			}
+			for (int step = 0; step < 30; ++step) {
+				partial.addTransitive(Integer.valueOf(random.nextInt(70)), Integer.valueOf(random.nextInt(70)));
+			}
+			final Preorder<Integer> completed = Preorder.copyOf(partial);
+			RelationUtils.completeRandomly(completed, seed);
+			assertTrue(RelationUtils.getIncomp(completed).isEmpty());
+
+			/** The algorithm used before incremental tracking. */
+			final Preorder<Integer> expected = Preorder.copyOf(partial);
+			final Random r = new Random(seed);
+			while (true) {
+				final Set<Pair<Integer, Integer>> incomp = RelationUtils.getIncomp(expected);
+				if (incomp.isEmpty()) {
+					break;
+				}
+				final Pair<Integer, Integer> pair = Iterables.get(incomp, r.nextInt(incomp.size()));
+				switch (r.nextInt(3)) {
+				case 0:
+					expected.addEqTransitive(pair.getElt1(), pair.getElt2());
+					break;
+				case 1:
+					expected.addTransitive(pair.getElt1(), pair.getElt2());
+					break;
+				default:
+					expected.addTransitive(pair.getElt2(), pair.getElt1());
+					break;
+				}
+			}
+			assertEquals(expected, completed);
+		}
+	}
+
+	@Test
+	public void testIncomparabilityCounts() {
+		final Random random = new Random(9);
+		final Preorder<Integer> pr = Preorder.create();
+		final int n = 150;
+		for (int i = 0; i < n; ++i) {
+			pr.addTransitive(Integer.valueOf(i), Integer.valueOf(i));
+		}
+		for (int step = 0; step < 60; ++step) {
+			pr.addTransitive(Integer.valueOf(random.nextInt(n)), Integer.valueOf(random.nextInt(n)));
+		}
+		final int[] counts = RelationUtils.getIncomparabilityCounts(pr);
+		int total = 0;
+		int x = 0;
+		for (Integer f : pr.getFrom()) {
+			int expected = 0;
+			for (Integer t : pr.getTo()) {
+				if (!pr.contains(f, t) && !pr.contains(t, f)) {
+					++expected;
+				}
+			}
+			assertEquals(expected, counts[x]);
+			total += expected;
+			++x;
+		}
+		assertEquals(total / 2, RelationUtils.getNbIncomparable(pr));
+		final Set<Pair<Integer, Integer>> incomp = Sets.newLinkedHashSet();
+		for (Integer f : pr.getFrom()) {
+			for (Integer t : pr.getTo()) {
+				if (!pr.contains(f, t) && !pr.contains(t, f) && !incomp.contains(Pair.create(t, f))) {
+					incomp.add(Pair.create(f, t));
+				}
+			}
+		}
+		assertEquals(ImmutableList.copyOf(incomp), ImmutableList.copyOf(RelationUtils.getIncomp(pr)));
+		assertEquals(total / 2, incomp.size());
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			assertEquals(total / 2, RelationUtils.getNbIncomparable(pr, pool));
+			assertTrue(Arrays.equals(counts, RelationUtils.getIncomparabilityCounts(pr, pool)));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 }
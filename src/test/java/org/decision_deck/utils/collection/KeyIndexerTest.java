@@ -0,0 +1,56 @@
+package org.decision_deck.utils.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class KeyIndexerTest {
+	@Test
+	public void testIndexes() {
+		final KeyIndexer<String> indexer = new KeyIndexer<String>();
+		assertEquals(0, indexer.intern("a"));
+		assertEquals(1, indexer.intern("b"));
+		assertEquals(2, indexer.intern("c"));
+		assertEquals(0, indexer.intern("a"));
+		assertEquals(1, indexer.remove("b"));
+		assertEquals(-1, indexer.remove("b"));
+		assertFalse(indexer.isUsed(1));
+		assertNull(indexer.getKey(1));
+		assertEquals(1, indexer.intern("d"));
+		assertEquals(3, indexer.getBound());
+		assertEquals(ImmutableList.of("a", "c", "d"), ImmutableList.copyOf(indexer.keySet()));
+
+		indexer.increment(0);
+		indexer.increment(0);
+		assertFalse(indexer.decrement(0));
+		assertTrue(indexer.decrement(0));
+		assertEquals(-1, indexer.indexOf("a"));
+		try {
+			indexer.increment(0);
+			fail();
+		} catch (IllegalArgumentException exc) {
+			/** Unused index. */
+		}
+		try {
+			indexer.getKey(3);
+			fail();
+		} catch (IndexOutOfBoundsException exc) {
+			/** Beyond the bound. */
+		}
+
+		final Iterator<String> keys = indexer.keyIterator();
+		assertEquals("c", keys.next());
+		keys.remove();
+		assertFalse(indexer.isUsed(2));
+		assertEquals(ImmutableList.of("d"), ImmutableList.copyOf(indexer.keySet()));
+		assertEquals(1, indexer.size());
+	}
+}
@@ -1,13 +1,21 @@
 package org.decision_deck.utils.collection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.decision_deck.utils.collection.MapEvents.AdditionEvent;
 import org.decision_deck.utils.collection.MapEvents.AdditionNewKeyEvent;
+import org.decision_deck.utils.collection.MapEvents.ChangeSetEvent;
 import org.decision_deck.utils.collection.MapEvents.PreRemovalEvent;
 import org.junit.Test;
 
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.eventbus.Subscribe;
 
 @SuppressWarnings("boxing")
@@ -71,4 +79,50 @@ public class ObservableMapTest {
 		assertTrue(m_seen);
 	}
 
+	@Test
+	public void testBatch() {
+		final ObservableMap<String, Double> map = CollectionUtils.newObservableMap();
+		map.put("kept", 1d);
+		map.put("changed", 2d);
+		map.put("removed", 3d);
+		map.put("restored", 4d);
+		final List<Object> events = Lists.newArrayList();
+		map.register(new Object() {
+			@SuppressWarnings("unused")
+			@Subscribe
+			public void seeEvent(Object event) {
+				events.add(event);
+			}
+		});
+		map.beginBatch();
+		map.put("changed", 20d);
+		map.remove("removed");
+		map.put("added", 5d);
+		map.clear();
+		map.put("kept", 1d);
+		map.put("changed", 21d);
+		map.put("restored", 4d);
+		map.put("added", 6d);
+		map.put("transient", 7d);
+		map.remove("transient");
+		assertTrue(events.isEmpty());
+		map.commit();
+		assertEquals(1, events.size());
+		@SuppressWarnings("unchecked")
+		final ChangeSetEvent<String, Double> changes = (ChangeSetEvent<String, Double>) events.get(0);
+		assertEquals(ImmutableMap.of("changed", 21d, "added", 6d), changes.getAdded());
+		assertEquals(ImmutableMap.of("changed", 2d, "removed", 3d), changes.getRemoved());
+
+		events.clear();
+		map.beginBatch();
+		map.putAll(ImmutableMap.of("a", 1d, "b", 2d));
+		map.commit();
+		assertEquals(1, events.size());
+		assertEquals(ImmutableMap.of("a", 1d, "b", 2d), ((ChangeSetEvent<?, ?>) events.get(0)).getAdded());
+
+		events.clear();
+		map.putAll(ImmutableMap.of("c", 3d));
+		assertTrue(Iterables.any(events, Predicates.instanceOf(AdditionNewKeyEvent.class)));
+		assertFalse(Iterables.any(events, Predicates.instanceOf(ChangeSetEvent.class)));
+	}
 }
@@ -1,13 +1,19 @@
 package org.decision_deck.utils.collection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.decision_deck.utils.collection.MapEvents.AdditionEvent;
 import org.decision_deck.utils.collection.MapEvents.AdditionNewKeyEvent;
 import org.decision_deck.utils.collection.MapEvents.PreRemovalEvent;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.eventbus.Subscribe;
 
 @SuppressWarnings("boxing")
@@ -71,6 +77,24 @@ public class ObservableNavigableMapTest {
 		assertTrue(m_seen);
 	}
 
+	@Test
+	public void testPut() {
+		final ObservableNavigableMap<String, Double> map = new ObservableNavigableMap<String, Double>();
+		final List<Double> added = Lists.newArrayList();
+		map.register(new Object() {
+			@SuppressWarnings("unused")
+			@Subscribe
+			public void seeEvent(AdditionEvent<String, Double> event) {
+				added.add(event.getValue());
+			}
+		});
+		assertNull(map.put("s1", 1d));
+		assertEquals(Double.valueOf(1d), map.get("s1"));
+		assertEquals(Double.valueOf(1d), map.put("s1", 2d));
+		assertEquals(Double.valueOf(2d), map.get("s1"));
+		assertEquals(ImmutableList.of(1d, 2d), added);
+	}
+
 	@Test
 	public void testNavigate() {
 		final ObservableNavigableMap<String, Double> map = new ObservableNavigableMap<String, Double>();
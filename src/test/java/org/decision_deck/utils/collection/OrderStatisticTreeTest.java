@@ -0,0 +1,63 @@
+package org.decision_deck.utils.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+
+import org.decision_deck.utils.collection.OrderStatisticTree.Node;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class OrderStatisticTreeTest {
+	@Test
+	public void testAgainstList() {
+		final Random random = new Random(1);
+		final OrderStatisticTree<Integer> tree = new OrderStatisticTree<Integer>();
+		final List<Node<Integer>> expected = Lists.newArrayList();
+		for (int i = 0; i < 2000; ++i) {
+			if (expected.isEmpty() || random.nextInt(3) != 0) {
+				final int index = random.nextInt(expected.size() + 1);
+				expected.add(index, tree.insert(index, Integer.valueOf(i)));
+			} else {
+				tree.remove(expected.remove(random.nextInt(expected.size())));
+			}
+		}
+		assertEquals(expected.size(), tree.size());
+		Node<Integer> node = tree.first();
+		for (int i = 0; i < expected.size(); ++i) {
+			assertEquals(expected.get(i), tree.getNode(i));
+			assertEquals(i, tree.getIndex(expected.get(i)));
+			assertEquals(expected.get(i), node);
+			node = tree.next(node);
+		}
+		assertNull(node);
+
+		final Node<Integer> second = tree.insertAfter(tree.first(), Integer.valueOf(-1));
+		assertEquals(1, tree.getIndex(second));
+	}
+
+	@Test
+	public void testForeignNodes() {
+		final OrderStatisticTree<String> tree = new OrderStatisticTree<String>();
+		final OrderStatisticTree<String> other = new OrderStatisticTree<String>();
+		final Node<String> a = tree.insert(0, "a");
+		try {
+			other.getIndex(a);
+			fail();
+		} catch (IllegalArgumentException exc) {
+			/** Node of an other tree. */
+		}
+		tree.clear();
+		assertEquals(0, tree.size());
+		try {
+			tree.insertAfter(a, "b");
+			fail();
+		} catch (IllegalArgumentException exc) {
+			/** Node removed by clearing. */
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package org.decision_deck.utils.collection.extensional_order;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.decision_deck.utils.collection.CollectionUtils;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class ConcurrentKeyValueOrderedMapTest {
+	/**
+	 * By value, then by key.
+	 */
+	private static final Comparator<Entry<Integer, Integer>> COMPARATOR = new Comparator<Entry<Integer, Integer>>() {
+		@Override
+		public int compare(Entry<Integer, Integer> o1, Entry<Integer, Integer> o2) {
+			final int byValue = o1.getValue().compareTo(o2.getValue());
+			return byValue != 0 ? byValue : o1.getKey().compareTo(o2.getKey());
+		}
+	};
+
+	@SuppressWarnings("boxing")
+	@Test
+	public void testMap() throws Exception {
+		final ConcurrentKeyValueOrderedMap<Integer, Integer> map = ConcurrentKeyValueOrderedMap.create(COMPARATOR);
+		map.put(1, 50);
+		map.put(2, 10);
+		map.put(3, 30);
+		map.put(1, 5);
+		assertEquals(ImmutableList.of(1, 2, 3), Lists.newArrayList(map.keySet()));
+		assertEquals(CollectionUtils.newEntry(1, 5), map.firstEntry());
+		assertEquals(CollectionUtils.newEntry(3, 30), map.lastEntry());
+		assertEquals(ImmutableList.of(CollectionUtils.newEntry(3, 30), CollectionUtils.newEntry(2, 10)),
+				map.snapshotTopK(2));
+		assertEquals(Integer.valueOf(30), map.putIfAbsent(3, 0));
+		assertFalse(map.replace(3, 0, 1));
+		assertEquals(Integer.valueOf(10), map.remove(2));
+		assertEquals(2, map.snapshotTopK(5).size());
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		final ConcurrentKeyValueOrderedMap<Integer, Integer> map = ConcurrentKeyValueOrderedMap.create(COMPARATOR, 8);
+		final int nbThreads = 4;
+		final Thread[] threads = new Thread[nbThreads];
+		for (int t = 0; t < nbThreads; ++t) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					final Random random = new Random(seed);
+					for (int i = 0; i < 20000; ++i) {
+						final Integer key = Integer.valueOf(random.nextInt(500));
+						if (random.nextInt(10) == 0) {
+							map.remove(key);
+						} else {
+							map.put(key, Integer.valueOf(random.nextInt(1000)));
+						}
+						if (i % 1000 == 0) {
+							final List<Entry<Integer, Integer>> top = map.snapshotTopK(10);
+							for (int j = 1; j < top.size(); ++j) {
+								if (COMPARATOR.compare(top.get(j - 1), top.get(j)) <= 0) {
+									throw new AssertionError(top.toString());
+								}
+							}
+						}
+					}
+				}
+			};
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		final List<Entry<Integer, Integer>> entries = Lists.newArrayList(map.entrySet());
+		assertEquals(map.size(), entries.size());
+		for (int i = 1; i < entries.size(); ++i) {
+			assertEquals(-1, Integer.signum(COMPARATOR.compare(entries.get(i - 1), entries.get(i))));
+		}
+		for (Map.Entry<Integer, Integer> entry : entries) {
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+	}
+
+	@SuppressWarnings("boxing")
+	@Test
+	public void testEqualEntriesOfSameKey() throws Exception {
+		final Comparator<Entry<Integer, Integer>> byKey = new Comparator<Entry<Integer, Integer>>() {
+			@Override
+			public int compare(Entry<Integer, Integer> o1, Entry<Integer, Integer> o2) {
+				return o1.getKey().compareTo(o2.getKey());
+			}
+		};
+		final ConcurrentKeyValueOrderedMap<Integer, Integer> map = ConcurrentKeyValueOrderedMap.create(byKey);
+		map.put(2, 20);
+		map.put(1, 10);
+		assertEquals(Integer.valueOf(10), map.put(1, 11));
+		assertEquals(ImmutableList.of(CollectionUtils.newEntry(1, 11), CollectionUtils.newEntry(2, 20)),
+				Lists.newArrayList(map.entrySet()));
+		assertEquals(Integer.valueOf(11), map.put(1, 12));
+		assertEquals(Integer.valueOf(12), map.remove(1));
+		assertEquals(ImmutableList.of(CollectionUtils.newEntry(2, 20)), map.snapshotTopK(2));
+	}
+
+	@Test
+	public void testReadersSeeStableKeys() throws Exception {
+		final ConcurrentKeyValueOrderedMap<Integer, Integer> map = ConcurrentKeyValueOrderedMap.create(COMPARATOR, 8);
+		final int nbKeys = 200;
+		for (int key = 0; key < nbKeys; ++key) {
+			map.put(Integer.valueOf(key), Integer.valueOf(key));
+		}
+		final Thread writer = new Thread() {
+			@Override
+			public void run() {
+				final Random random = new Random(0);
+				for (int i = 0; i < 200000; ++i) {
+					map.put(Integer.valueOf(random.nextInt(nbKeys)), Integer.valueOf(random.nextInt(1000)));
+				}
+			}
+		};
+		writer.start();
+		while (writer.isAlive()) {
+			final Set<Integer> seen = Sets.newHashSet();
+			for (Entry<Integer, Integer> entry : map.entrySet()) {
+				assertTrue(seen.add(entry.getKey()));
+			}
+			assertEquals(nbKeys, seen.size());
+			assertEquals(nbKeys, map.snapshotTopK(nbKeys).size());
+		}
+		writer.join();
+	}
+}
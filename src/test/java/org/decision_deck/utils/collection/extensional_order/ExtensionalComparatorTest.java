@@ -1,10 +1,16 @@
 package org.decision_deck.utils.collection.extensional_order;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+import java.util.Random;
+
 import org.decision_deck.utils.collection.extensional_order.ExtensionalComparator;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class ExtensionalComparatorTest {
 	@Test
 	public void testExtensionalComparator() throws Exception {
@@ -19,4 +25,38 @@ public class ExtensionalComparatorTest {
 		assertTrue(comp.compare("Str4", "Str2") > 0);
 		assertTrue(comp.compare("Str4", "Str4") == 0);
 	}
+
+	@Test
+	public void testRandomInsertions() throws Exception {
+		final ExtensionalComparator<Integer> comp = ExtensionalComparator.createInternal();
+		final List<Integer> expected = Lists.newArrayList();
+		final Random random = new Random(7);
+		for (int i = 0; i < 5000; ++i) {
+			final Integer elem = Integer.valueOf(i);
+			final int choice = random.nextInt(10);
+			if (expected.isEmpty() || choice == 0) {
+				comp.addAsLowest(elem);
+				expected.add(0, elem);
+			} else if (choice == 1) {
+				comp.addAsHighest(elem);
+				expected.add(elem);
+			} else if (choice == 2) {
+				final Integer removed = expected.remove(random.nextInt(expected.size()));
+				assertTrue(comp.discard(removed));
+			} else {
+				/** Mostly after the same few elements, to exhaust the gaps. */
+				final int index = random.nextInt(4) == 0 ? random.nextInt(expected.size()) : 0;
+				comp.addAfter(expected.get(index), elem);
+				expected.add(index + 1, elem);
+			}
+		}
+		assertEquals(expected.size(), comp.size());
+		for (int i = 1; i < expected.size(); ++i) {
+			assertTrue(comp.compare(expected.get(i - 1), expected.get(i)) < 0);
+		}
+		assertEquals(expected, Lists.newArrayList(comp.keySet()));
+		final Integer removed = expected.get(3);
+		assertEquals(Integer.valueOf(3), comp.remove(removed));
+		assertEquals(Integer.valueOf(3), comp.get(expected.get(4)));
+	}
 }
@@ -0,0 +1,47 @@
+package org.decision_deck.utils.collection.extensional_order;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class ExtentionalTotalOrderTest {
+	@Test
+	public void testPositions() throws Exception {
+		final ExtentionalTotalOrder<Integer> order = ExtentionalTotalOrder.create();
+		final List<Integer> expected = Lists.newArrayList();
+		final Random random = new Random(11);
+		for (int i = 0; i < 2000; ++i) {
+			final Integer elem = Integer.valueOf(i);
+			if (expected.isEmpty() || random.nextInt(8) == 0) {
+				order.addAsLowest(elem);
+				expected.add(0, elem);
+			} else if (random.nextInt(4) == 0) {
+				order.remove(expected.remove(random.nextInt(expected.size())));
+			} else {
+				final int index = random.nextInt(expected.size());
+				order.addAfter(expected.get(index), elem);
+				expected.add(index + 1, elem);
+			}
+		}
+		assertEquals(expected, Lists.newArrayList(order));
+		for (int i = 0; i < expected.size(); ++i) {
+			assertEquals(expected.get(i), order.get(i));
+			assertEquals(i, order.indexOf(expected.get(i)));
+		}
+		assertEquals(-1, order.indexOf(Integer.valueOf(-1)));
+		assertEquals(expected.subList(10, 20), order.subList(10, 20));
+		assertEquals(expected.subList(12, 15), order.subList(10, 20).subList(2, 5));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetOutOfBounds() throws Exception {
+		final ExtentionalTotalOrder<String> order = ExtentionalTotalOrder.create(ImmutableList.of("a", "b"));
+		order.get(2);
+	}
+}
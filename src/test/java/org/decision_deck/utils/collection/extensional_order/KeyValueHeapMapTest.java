@@ -0,0 +1,71 @@
+package org.decision_deck.utils.collection.extensional_order;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+public class KeyValueHeapMapTest {
+	/**
+	 * By value, then by key.
+	 */
+	private static final Comparator<Entry<Integer, Integer>> COMPARATOR = new Comparator<Entry<Integer, Integer>>() {
+		@Override
+		public int compare(Entry<Integer, Integer> o1, Entry<Integer, Integer> o2) {
+			final int byValue = o1.getValue().compareTo(o2.getValue());
+			return byValue != 0 ? byValue : o1.getKey().compareTo(o2.getKey());
+		}
+	};
+
+	@Test
+	public void testRandomUpdates() throws Exception {
+		final KeyValueHeapMap<Integer, Integer> map = KeyValueHeapMap.create(COMPARATOR);
+		final KeyValueOrderedMap<Integer, Integer> expected = KeyValueOrderedMap.create(COMPARATOR);
+		assertNull(map.firstEntry());
+		final Random random = new Random(5);
+		final Map<Integer, Integer> initial = Maps.newHashMap();
+		for (int i = 0; i < 200; ++i) {
+			initial.put(Integer.valueOf(i), Integer.valueOf(random.nextInt(1000)));
+		}
+		map.putAll(initial);
+		expected.putAll(initial);
+		for (int i = 0; i < 3000; ++i) {
+			final Integer key = Integer.valueOf(random.nextInt(300));
+			final int choice = random.nextInt(10);
+			if (choice == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else if (choice == 1 && !expected.isEmpty()) {
+				assertEquals(expected.pollFirstEntry(), map.pollFirstEntry());
+			} else if (choice == 2 && !expected.isEmpty()) {
+				assertEquals(expected.pollLastEntry(), map.pollLastEntry());
+			} else {
+				final Integer value = Integer.valueOf(random.nextInt(1000));
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+			if (!expected.isEmpty()) {
+				assertEquals(expected.firstEntry(), map.firstEntry());
+				assertEquals(expected.lastEntry(), map.lastEntry());
+			}
+			if (i % 500 == 0) {
+				assertEquals(Lists.newArrayList(expected.entrySet()), Lists.newArrayList(map.entrySet()));
+			}
+		}
+		assertEquals(Lists.newArrayList(expected.keySet()), Lists.newArrayList(map.keySet()));
+		final Integer middle = Ordering.natural().sortedCopy(map.keySet()).get(map.size() / 2);
+		assertEquals(expected.higherKey(middle), map.higherKey(middle));
+		map.clear();
+		assertFalse(map.containsKey(middle));
+		assertNull(map.pollLastEntry());
+	}
+}
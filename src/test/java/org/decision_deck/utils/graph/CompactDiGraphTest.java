@@ -0,0 +1,73 @@
+package org.decision_deck.utils.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.decision_deck.utils.relation.graph.Edge;
+import org.decision_deck.utils.relation.graph.mess.CompactDiGraph;
+import org.decision_deck.utils.relation.graph.mess.DiGraph;
+import org.decision_deck.utils.relation.graph.mess.DiGraphImpl;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class CompactDiGraphTest {
+	@Test
+	public void testSameAsImpl() throws Exception {
+		final Random random = new Random(0);
+		final CompactDiGraph<Integer> compact = CompactDiGraph.create();
+		final DiGraphImpl<Integer> impl = DiGraphImpl.create();
+		final ImmutableList<DiGraph<Integer>> graphs = ImmutableList.<DiGraph<Integer>>of(compact, impl);
+		for (int i = 0; i < 40; ++i) {
+			for (DiGraph<Integer> g : graphs) {
+				g.addVertex(Integer.valueOf(i));
+			}
+		}
+		for (int step = 0; step < 2000; ++step) {
+			final Integer source = Integer.valueOf(random.nextInt(40));
+			final Integer target = Integer.valueOf(random.nextInt(40));
+			final int operation = random.nextInt(10);
+			if (operation == 0) {
+				assertEquals(impl.removeEdge(source, target), compact.removeEdge(source, target));
+			} else if (operation == 1 && step % 7 == 0) {
+				assertEquals(impl.removeVertex(source), compact.removeVertex(source));
+				assertEquals(impl.addVertex(source), compact.addVertex(source));
+			} else {
+				assertEquals(impl.addEdge(source, target), compact.addEdge(source, target));
+			}
+		}
+		assertEquals(impl.vertexSet(), compact.vertexSet());
+		assertEquals(impl.edgeSet(), compact.edgeSet());
+		assertEquals(impl.edgeSet().size(), compact.edgeSet().size());
+		for (Integer v : impl.vertexSet()) {
+			assertEquals(impl.outgoingEdgesOf(v), compact.outgoingEdgesOf(v));
+			assertEquals(impl.incomingEdgesOf(v), compact.incomingEdgesOf(v));
+			assertEquals(ImmutableSet.copyOf(impl.edgesOf(v)), compact.edgesOf(v));
+			assertEquals(impl.edgesOf(v).size(), compact.edgesOf(v).size());
+			for (Integer w : impl.vertexSet()) {
+				assertEquals(impl.containsEdge(v, w), compact.containsEdge(v, w));
+			}
+		}
+		assertEquals(impl.getGraph().edgeSet(), compact.getGraph().edgeSet());
+	}
+
+	@Test
+	public void testViews() throws Exception {
+		final CompactDiGraph<String> g = CompactDiGraph.create();
+		g.addVertex("a");
+		g.addVertex("b");
+		assertEquals(Edge.create("a", "b"), g.addEdge("a", "b"));
+		assertEquals(null, g.addEdge("a", "b"));
+		g.addEdge("a", "a");
+		assertTrue(g.edgesOf("a").contains(Edge.create("a", "a")));
+		assertEquals(2, g.edgesOf("a").size());
+		assertFalse(g.outgoingEdgesOf("b").contains(Edge.create("a", "b")));
+		assertTrue(g.removeVertex("a"));
+		assertTrue(g.edgeSet().isEmpty());
+		assertFalse(g.containsEdge("a", "b"));
+	}
+}
@@ -1,22 +1,42 @@
 package org.decision_deck.utils.graph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import org.decision_deck.utils.Pair;
+import org.decision_deck.utils.matrix.Matrixes;
+import org.decision_deck.utils.matrix.SparseMatrixBooleanBits;
+import org.decision_deck.utils.relation.BinaryRelation;
+import org.decision_deck.utils.relation.BinaryRelationImpl;
+import org.decision_deck.utils.relation.BinaryRelationSparse;
+import org.decision_deck.utils.relation.graph.Edge;
 import org.decision_deck.utils.relation.graph.Preorder;
 import org.decision_deck.utils.relation.graph.mess.DiGraph;
 import org.decision_deck.utils.relation.graph.mess.DiGraphImpl;
 import org.decision_deck.utils.relation.graph.mess.GraphUtils;
 import org.decision_deck.utils.relation.graph.mess.GraphUtilsFirst;
 import org.decision_deck.utils.relation.graph.mess.PairN;
+import org.decision_deck.utils.relation.graph.mess.ReachabilityIndex;
+import org.decision_deck.utils.relation.graph.mess.TransitiveClosureBitset;
+import org.decision_deck.utils.relation.graph.mess.TransitiveClosureNew;
+import org.decision_deck.utils.relation.graph.mess.TransitiveReduction;
+import org.decision_deck.utils.relation.graph.mess.TransitivityChecker;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.collect.Sets;
 
 @SuppressWarnings("deprecation")
 public class GraphUtilsTest {
@@ -37,6 +57,233 @@ public class GraphUtilsTest {
 				GraphUtils.getStrongDisagreements(getStraight(), getDisagreeingStronglyExtended()));
 	}
 
+	@Test
+	public void testBitsetClosure() throws Exception {
+		final Random random = new Random(0);
+		final DiGraphImpl<Integer> g = DiGraphImpl.create();
+		final BinaryRelation<Integer, Integer> relation = new BinaryRelationImpl<Integer, Integer>();
+		for (int i = 0; i < 100; ++i) {
+			g.addVertex(Integer.valueOf(i));
+		}
+		for (int e = 0; e < 150; ++e) {
+			final Integer source = Integer.valueOf(random.nextInt(100));
+			final Integer target = Integer.valueOf(random.nextInt(100));
+			g.addEdge(source, target);
+			relation.asPairs().add(Pair.create(source, target));
+		}
+		assertFalse(GraphUtils.isTransitive(g));
+		final DiGraphImpl<Integer> expected = DiGraphImpl.copyOf(g);
+		TransitiveClosureNew.INSTANCE.closeSimpleDirectedGraph(expected);
+		GraphUtils.computeTransitiveClosure(g);
+		assertEquals(expected.edgeSet(), g.edgeSet());
+		assertTrue(GraphUtils.isTransitive(g));
+		assertEquals(GraphUtils.getBinaryRelation(g.getGraph()).asPairs(),
+				GraphUtils.getTransitiveClosure(relation).asPairs());
+	}
+
+	@Test
+	public void testReachability() throws Exception {
+		final Random random = new Random(1);
+		final DiGraphImpl<Integer> g = DiGraphImpl.create();
+		for (int i = 0; i < 300; ++i) {
+			g.addVertex(Integer.valueOf(i));
+		}
+		for (int e = 0; e < 330; ++e) {
+			g.addEdge(Integer.valueOf(random.nextInt(300)), Integer.valueOf(random.nextInt(300)));
+		}
+		final ReachabilityIndex<Integer> reachability = GraphUtils.getReachability(g);
+		final DiGraphImpl<Integer> closed = DiGraphImpl.copyOf(g);
+		TransitiveClosureBitset.INSTANCE.closeDiGraph(closed);
+		for (Integer source : g.vertexSet()) {
+			final Set<Integer> reachable = reachability.getReachable(source);
+			assertEquals(ImmutableSet.copyOf(reachable).size(), reachable.size());
+			for (Integer target : g.vertexSet()) {
+				final boolean expected = source.equals(target) ? isOnCycle(closed, source)
+						: closed.containsEdge(source, target);
+				assertEquals(expected, reachability.reaches(source, target));
+				assertEquals(expected, reachable.contains(target));
+			}
+		}
+		GraphUtils.computeTransitiveClosure(g);
+		assertEquals(closed.edgeSet(), g.edgeSet());
+	}
+
+	@Test
+	public void testParallelClosure() throws Exception {
+		final Random random = new Random(2);
+		final DiGraphImpl<Integer> g = DiGraphImpl.create();
+		final int size = TransitiveClosureBitset.PARALLEL_THRESHOLD + 100;
+		for (int i = 0; i < size; ++i) {
+			g.addVertex(Integer.valueOf(i));
+		}
+		for (int e = 0; e < size; ++e) {
+			final int source = random.nextInt(size);
+			final int target = Math.min(size - 1, source + 1 + random.nextInt(3));
+			g.addEdge(Integer.valueOf(source), Integer.valueOf(target));
+		}
+		/** Some edges backward, making cycles across the blocks of pivots. */
+		for (int e = 0; e < size / 4; ++e) {
+			final int source = random.nextInt(size);
+			final int target = Math.max(0, source - 1 - random.nextInt(100));
+			g.addEdge(Integer.valueOf(source), Integer.valueOf(target));
+		}
+		final DiGraphImpl<Integer> sequential = DiGraphImpl.copyOf(g);
+		TransitiveClosureBitset.INSTANCE.closeDiGraph(sequential);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			GraphUtils.computeTransitiveClosure(g, pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(sequential.edgeSet(), g.edgeSet());
+	}
+
+	@Test
+	public void testReduction() throws Exception {
+		final Random random = new Random(3);
+		final Preorder<Integer> preorder = new Preorder<Integer>();
+		for (int i = 0; i < 300; ++i) {
+			preorder.put(Integer.valueOf(i), 1 + random.nextInt(preorder.getRanksCount() + 1));
+		}
+		final DiGraph<Integer> g = GraphUtils.getDiGraphWithTransitiveEdgesButNoLoops(preorder);
+		TransitiveReduction.INSTANCE.reduceDiGraph(g);
+		assertEquals(GraphUtils.getDiGraphBetterWithTransitiveReduct(preorder).edgeSet(), g.edgeSet());
+
+		final BinaryRelation<Integer, Integer> relation = new BinaryRelationImpl<Integer, Integer>();
+		for (int e = 0; e < 200; ++e) {
+			final int source = random.nextInt(59);
+			relation.asPairs()
+					.add(Pair.create(Integer.valueOf(source), Integer.valueOf(source + 1 + random.nextInt(59 - source))));
+		}
+		final BinaryRelation<Integer, Integer> closure = GraphUtils.getTransitiveClosure(relation);
+		final BinaryRelation<Integer, Integer> reduct = GraphUtils.getTransitiveClosure(relation);
+		GraphUtils.computeTransitiveReduct(reduct);
+		assertEquals(closure.asPairs(), GraphUtils.getTransitiveClosure(reduct).asPairs());
+		for (Pair<Integer, Integer> pair : reduct.asPairs()) {
+			for (Integer middle : closure.getTo()) {
+				assertFalse(closure.contains(pair.getElt1(), middle) && closure.contains(middle, pair.getElt2()));
+			}
+		}
+	}
+
+	private static <V> boolean isOnCycle(DiGraph<V> closed, V vertex) {
+		for (V other : closed.vertexSet()) {
+			if (closed.containsEdge(vertex, other) && closed.containsEdge(other, vertex)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testDisagreementsRandom() throws Exception {
+		final Random random = new Random(4);
+		final DiGraphImpl<Integer> g1 = DiGraphImpl.create();
+		final DiGraphImpl<Integer> g2 = DiGraphImpl.create();
+		for (int i = 0; i < 90; ++i) {
+			g1.addVertex(Integer.valueOf(i));
+			g2.addVertex(Integer.valueOf(i + 10));
+		}
+		for (int e = 0; e < 3000; ++e) {
+			g1.addEdge(Integer.valueOf(random.nextInt(90)), Integer.valueOf(random.nextInt(90)));
+			g2.addEdge(Integer.valueOf(10 + random.nextInt(90)), Integer.valueOf(10 + random.nextInt(90)));
+		}
+		final Set<Edge<Integer>> expected = Sets.newLinkedHashSet();
+		final Set<Set<Integer>> expectedStrong = Sets.newLinkedHashSet();
+		final Set<Integer> vertices = Sets.union(g1.vertexSet(), g2.vertexSet());
+		for (Integer source : vertices) {
+			for (Integer target : vertices) {
+				final boolean ab = g1.containsEdge(source, target);
+				final boolean ba = g1.containsEdge(target, source);
+				final boolean ab2 = g2.containsEdge(source, target);
+				final boolean ba2 = g2.containsEdge(target, source);
+				if (ab != ab2) {
+					expected.add(Edge.create(source, target));
+				}
+				if (ab != ba && ab2 != ba2 && ab != ab2) {
+					expectedStrong.add(ImmutableSet.of(source, target));
+				}
+			}
+		}
+		assertEquals(ImmutableList.copyOf(expected), ImmutableList.copyOf(GraphUtils.getDisagreements(g1, g2)));
+		assertEquals(ImmutableList.copyOf(expectedStrong),
+				ImmutableList.copyOf(GraphUtils.getStrongDisagreements(g1, g2)));
+		assertEquals(expected.size(), GraphUtils.countDisagreements(g1, g2));
+		assertEquals(expectedStrong.size(), GraphUtils.countStrongDisagreements(g1, g2));
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			assertEquals(expectedStrong.size(), GraphUtils.countStrongDisagreements(g1, g2, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testTransitivityChecker() throws Exception {
+		final DiGraph<String> straight = getStraight();
+		assertNull(TransitivityChecker.INSTANCE.findViolation(straight));
+		straight.removeEdge("a", "d");
+		assertEquals(ImmutableList.of("a", "b", "d"), TransitivityChecker.INSTANCE.findViolation(straight));
+		assertFalse(GraphUtils.isTransitive(straight));
+
+		final DiGraph<String> nice = getNice();
+		assertEquals(ImmutableList.of("a", "c", "d"), TransitivityChecker.INSTANCE.findViolation(nice));
+		nice.addEdge("a", "d");
+		nice.addEdge("b", "d");
+		assertTrue(GraphUtils.isTransitive(nice));
+
+		final BinaryRelation<String, String> relation = GraphUtils.getBinaryRelation(nice.getGraph());
+		assertTrue(GraphUtils.isTransitive(relation));
+		relation.asPairs().remove(Pair.create("b", "c"));
+		assertEquals(ImmutableList.of("b", "a", "c"), TransitivityChecker.INSTANCE.findViolation(relation));
+		final BinaryRelationSparse<String, String> sparse = BinaryRelationSparse.copyOf(relation);
+		assertEquals(ImmutableList.of("b", "a", "c"), TransitivityChecker.INSTANCE.findViolation(sparse));
+		sparse.asPairs().add(Pair.create("b", "c"));
+		assertNull(TransitivityChecker.INSTANCE.findViolation(sparse));
+
+		final SparseMatrixBooleanBits<String, String> matrix = Matrixes.newBooleanBits();
+		matrix.put("a", "b", true);
+		matrix.put("b", "c", true);
+		matrix.put("a", "c", false);
+		assertEquals(ImmutableList.of("a", "b", "c"), TransitivityChecker.INSTANCE.findViolation(matrix));
+		matrix.put("a", "c", true);
+		assertNull(TransitivityChecker.INSTANCE.findViolation(matrix));
+
+		final Random random = new Random(5);
+		final DiGraphImpl<Integer> g = DiGraphImpl.create();
+		for (int i = 0; i < 80; ++i) {
+			g.addVertex(Integer.valueOf(i));
+		}
+		for (int e = 0; e < 2000; ++e) {
+			g.addEdge(Integer.valueOf(random.nextInt(80)), Integer.valueOf(random.nextInt(80)));
+		}
+		GraphUtils.computeTransitiveClosure(g);
+		assertTrue(GraphUtils.isTransitive(g));
+		final Edge<Integer> edge = g.edgeSet().iterator().next();
+		g.removeEdge(edge.getSource(), edge.getTarget());
+		final List<Integer> violation = TransitivityChecker.INSTANCE.findViolation(g);
+		assertTrue(g.containsEdge(violation.get(0), violation.get(1)));
+		assertTrue(g.containsEdge(violation.get(1), violation.get(2)));
+		assertFalse(g.containsEdge(violation.get(0), violation.get(2)));
+
+		final BinaryRelation<Integer, Integer> gRelation = GraphUtils.getBinaryRelation(g.getGraph());
+		final SparseMatrixBooleanBits<Integer, Integer> gMatrix = Matrixes.newBooleanBits();
+		for (Pair<Integer, Integer> pair : gRelation.asPairs()) {
+			gMatrix.put(pair.getElt1(), pair.getElt2(), true);
+		}
+		for (List<Integer> found : ImmutableList.of(TransitivityChecker.INSTANCE.findViolation(gRelation),
+				TransitivityChecker.INSTANCE.findViolation(BinaryRelationSparse.copyOf(gRelation)),
+				TransitivityChecker.INSTANCE.findViolation(gMatrix))) {
+			assertTrue(g.containsEdge(found.get(0), found.get(1)));
+			assertTrue(g.containsEdge(found.get(1), found.get(2)));
+			assertFalse(g.containsEdge(found.get(0), found.get(2)));
+		}
+		g.addEdge(edge.getSource(), edge.getTarget());
+		gMatrix.put(edge.getSource(), edge.getTarget(), true);
+		assertNull(TransitivityChecker.INSTANCE.findViolation(GraphUtils.getBinaryRelation(g.getGraph())));
+		assertNull(TransitivityChecker.INSTANCE.findViolation(gMatrix));
+	}
+
 	private DiGraph<String> getStraight() {
 		final DiGraphImpl<String> g = DiGraphImpl.create();
 		g.addVertex("a");
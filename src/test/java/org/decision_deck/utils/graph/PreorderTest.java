@@ -4,8 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
 import org.decision_deck.utils.relation.graph.Edge;
 import org.decision_deck.utils.relation.graph.Preorder;
+import org.decision_deck.utils.relation.graph.PreorderSnapshot;
 import org.decision_deck.utils.relation.graph.Preorders;
 import org.decision_deck.utils.relation.graph.mess.DiGraph;
 import org.decision_deck.utils.relation.graph.mess.GraphUtils;
@@ -15,6 +21,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 public class PreorderTest {
 
@@ -99,6 +107,161 @@ public class PreorderTest {
 
 	private static final Logger s_logger = LoggerFactory.getLogger(PreorderTest.class);
 
+	@Test
+	public void testRandomRankMoves() throws Exception {
+		final Random random = new Random(13);
+		final Preorder<Integer> preorder = new Preorder<Integer>();
+		/** The expected ranks, index zero holding rank one. */
+		final List<Set<Integer>> expected = Lists.newArrayList();
+		for (int step = 0; step < 3000; ++step) {
+			final Integer element = Integer.valueOf(random.nextInt(60));
+			final Integer oldRank = preorder.getRank(element);
+			switch (random.nextInt(4)) {
+			case 0: {
+				final int rank = 1 + random.nextInt(expected.size() + 1);
+				/** Moving an element alone at its rank to the last rank is not supported. */
+				if (oldRank != null && expected.get(oldRank.intValue() - 1).size() == 1
+						&& (oldRank.intValue() == expected.size() || rank == expected.size() + 1)) {
+					continue;
+				}
+				preorder.put(element, rank);
+				if (oldRank != null && oldRank.intValue() != rank) {
+					expected.get(oldRank.intValue() - 1).remove(element);
+					if (expected.get(oldRank.intValue() - 1).isEmpty()) {
+						expected.remove(oldRank.intValue() - 1);
+					}
+				}
+				if (rank == expected.size() + 1) {
+					expected.add(Sets.<Integer> newLinkedHashSet());
+				}
+				expected.get(rank - 1).add(element);
+				break;
+			}
+			case 1: {
+				final int rank = 1 + random.nextInt(expected.size() + 1);
+				if (oldRank != null && oldRank.intValue() < rank) {
+					continue;
+				}
+				preorder.insertAsNewRank(element, rank);
+				if (oldRank != null) {
+					expected.get(oldRank.intValue() - 1).remove(element);
+					if (expected.get(oldRank.intValue() - 1).isEmpty()) {
+						expected.remove(oldRank.intValue() - 1);
+					}
+				}
+				expected.add(rank - 1, Sets.newLinkedHashSet(ImmutableSet.of(element)));
+				break;
+			}
+			case 2:
+				preorder.remove(element);
+				if (oldRank != null) {
+					expected.get(oldRank.intValue() - 1).remove(element);
+					if (expected.get(oldRank.intValue() - 1).isEmpty()) {
+						expected.remove(oldRank.intValue() - 1);
+					}
+				}
+				break;
+			default:
+				if (oldRank != null && (oldRank.intValue() == 1 || (oldRank.intValue() == expected.size()
+						&& expected.get(oldRank.intValue() - 1).size() == 1))) {
+					continue;
+				}
+				preorder.putAsHighest(element);
+				if (oldRank != null) {
+					expected.get(oldRank.intValue() - 1).remove(element);
+					if (expected.get(oldRank.intValue() - 1).isEmpty()) {
+						expected.remove(oldRank.intValue() - 1);
+					}
+				}
+				expected.add(0, Sets.newLinkedHashSet(ImmutableSet.of(element)));
+				break;
+			}
+			assertEquals(expected, preorder.asListOfSets());
+			for (int rank = 1; rank <= expected.size(); ++rank) {
+				for (Integer e : expected.get(rank - 1)) {
+					assertEquals(Integer.valueOf(rank), preorder.getRank(e));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		final Random random = new Random(17);
+		final Preorder<Integer> preorder = new Preorder<Integer>();
+		for (int i = 0; i < 500; ++i) {
+			preorder.put(Integer.valueOf(i), 1 + random.nextInt(preorder.getRanksCount() + 1));
+		}
+		final PreorderSnapshot<Integer> snapshot = preorder.getSnapshot();
+		assertEquals(500, snapshot.size());
+		assertEquals(preorder.getRanksCount(), snapshot.getRanksCount());
+		assertEquals(-1, snapshot.getId(Integer.valueOf(500)));
+		for (int i = 0; i < 500; ++i) {
+			final Integer element = Integer.valueOf(i);
+			final int id = snapshot.getId(element);
+			assertEquals(element, snapshot.getElement(id));
+			assertEquals(preorder.getRank(element).intValue(), snapshot.getRank(id));
+		}
+		final List<Integer> toSort = Lists.newArrayList();
+		for (int i = 0; i < 5000; ++i) {
+			toSort.add(Integer.valueOf(random.nextInt(500)));
+		}
+		final List<Integer> expected = Lists.newArrayList(toSort);
+		Collections.sort(expected, preorder);
+		assertEquals(expected, snapshot.sort(toSort));
+		Collections.sort(toSort, snapshot);
+		assertEquals(expected, toSort);
+
+		final int[] ids = new int[] { snapshot.getId(expected.get(4999)), snapshot.getId(expected.get(0)) };
+		assertTrue(snapshot.getIdComparator().compare(ids[0], ids[1]) >= 0);
+		snapshot.sortIds(ids);
+		assertEquals(expected.get(0), snapshot.getElement(ids[0]));
+		assertEquals(expected.get(4999), snapshot.getElement(ids[1]));
+
+		/** The snapshot is not affected by later changes. */
+		preorder.putAsLowest(expected.get(4999));
+		assertEquals(expected.get(4999), snapshot.getElement(ids[1]));
+		assertEquals(1, snapshot.getRank(ids[1]));
+	}
+
+	@Test
+	public void testRandomIntersection() throws Exception {
+		final Random random = new Random(19);
+		for (int trial = 0; trial < 200; ++trial) {
+			final int n = 1 + random.nextInt(12);
+			final Preorder<Integer> p1 = new Preorder<Integer>();
+			final Preorder<Integer> p2 = new Preorder<Integer>();
+			for (int i = 0; i < n; ++i) {
+				p1.put(Integer.valueOf(i), 1 + random.nextInt(p1.getRanksCount() + 1));
+				/** Often a coarsening of p1, so that the intersection is complete. */
+				final int rank2 = trial % 2 == 0 ? 1 + random.nextInt(p2.getRanksCount() + 1)
+						: Math.min(p1.getRank(Integer.valueOf(i)).intValue(), p2.getRanksCount() + 1);
+				p2.put(Integer.valueOf(i), rank2);
+			}
+			boolean conflict = false;
+			for (Integer a : p1) {
+				for (Integer b : p1) {
+					conflict |= p1.compare(a, b) > 0 && p2.compare(a, b) < 0;
+				}
+			}
+			final Preorder<Integer> inter = Preorders.getIntersection(p1, p2);
+			if (conflict) {
+				assertNull(inter);
+				continue;
+			}
+			assertEquals(p1.asSet(), inter.asSet());
+			for (Integer a : p1) {
+				for (Integer b : p1) {
+					final boolean geq = p1.compare(a, b) >= 0 && p2.compare(a, b) >= 0;
+					assertEquals(geq, inter.compare(a, b) >= 0);
+				}
+			}
+		}
+		final Preorder<Integer> other = new Preorder<Integer>();
+		other.putAsHighest(Integer.valueOf(0));
+		assertNull(Preorders.getIntersection(other, new Preorder<Integer>()));
+	}
+
 	@Test
 	public void testPreorderToGraph() throws Exception {
 		final DiGraph<String> g = GraphUtils.getDiGraphBetterWithTransitiveReduct(getPreorderStar());
@@ -0,0 +1,67 @@
+package org.decision_deck.utils.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.decision_deck.utils.relation.graph.Edge;
+import org.decision_deck.utils.relation.graph.mess.DiGraphImpl;
+import org.decision_deck.utils.relation.graph.mess.GraphUtils;
+import org.decision_deck.utils.relation.graph.mess.TransitiveDiGraph;
+import org.junit.Test;
+
+public class TransitiveDiGraphTest {
+	@Test
+	public void testIncremental() throws Exception {
+		final Random random = new Random(0);
+		final TransitiveDiGraph<Integer> transitive = TransitiveDiGraph.create();
+		final DiGraphImpl<Integer> plain = DiGraphImpl.create();
+		for (int i = 0; i < 150; ++i) {
+			transitive.addVertex(Integer.valueOf(i));
+			plain.addVertex(Integer.valueOf(i));
+		}
+		for (int e = 0; e < 200; ++e) {
+			final int source = random.nextInt(149);
+			final Integer target = Integer.valueOf(source + 1 + random.nextInt(149 - source));
+			final boolean present = transitive.reaches(Integer.valueOf(source), target);
+			final Edge<Integer> added = transitive.addEdge(Integer.valueOf(source), target);
+			assertEquals(present, added == null);
+			plain.addEdge(Integer.valueOf(source), target);
+			assertTrue(transitive.reaches(Integer.valueOf(source), target));
+		}
+		GraphUtils.computeTransitiveClosure(plain);
+		assertEquals(plain.edgeSet(), transitive.edgeSet());
+		assertTrue(GraphUtils.isTransitive(transitive));
+
+		assertTrue(transitive.removeVertex(Integer.valueOf(75)));
+		assertFalse(transitive.reaches(Integer.valueOf(75), Integer.valueOf(149)));
+		assertTrue(transitive.addVertex(Integer.valueOf(150)));
+		assertFalse(transitive.reaches(Integer.valueOf(150), Integer.valueOf(149)));
+		assertTrue(GraphUtils.isTransitive(transitive));
+	}
+
+	@Test
+	public void testCycle() throws Exception {
+		final TransitiveDiGraph<String> g = TransitiveDiGraph.create();
+		g.addVertex("a");
+		g.addVertex("b");
+		g.addVertex("c");
+		g.addEdge("a", "b");
+		g.addEdge("b", "c");
+		assertTrue(g.containsEdge("a", "c"));
+		assertNull(g.addEdge("a", "c"));
+		assertTrue(g.wouldCreateCycle("c", "a"));
+		assertTrue(g.wouldCreateCycle("a", "a"));
+		assertFalse(g.wouldCreateCycle("a", "c"));
+		try {
+			g.addEdge("c", "a");
+			assertTrue(false);
+		} catch (IllegalArgumentException exc) {
+			// expected
+		}
+		assertEquals(3, g.edgeSet().size());
+	}
+}
@@ -0,0 +1,166 @@
+package org.decision_deck.utils.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.decision_deck.utils.matrix.SparseMatrixDIndexedRead.ValueVisitor;
+import org.junit.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class MatrixesTest {
+	@Test
+	public void testApproxEqual() throws Exception {
+		final SparseMatrixD<String, String> impl = Matrixes.newSparseD();
+		final SparseMatrixD<String, String> array = Matrixes.newArrayD();
+		impl.put("a", "a", 0.5d);
+		impl.put("a", "b", 0.2d);
+		impl.put("b", "a", 0.7d);
+		impl.put("b", "b", 0.5d);
+		array.put("b", "b", 0.5d);
+		array.put("b", "a", 0.75d);
+		array.put("a", "b", 0.2d);
+		array.put("a", "a", 0.5d);
+		assertFalse(Matrixes.approxEqual(impl, array, 0.01d));
+		assertTrue(Matrixes.approxEqual(impl, array, 0.1d));
+		assertTrue(Matrixes.approxEqual(array, impl, 0.1d));
+
+		final OneMinusInverseMatrix<String> inverse = new OneMinusInverseMatrix<String>(impl);
+		assertEquals(0.3d, inverse.getValue(inverse.rowIndex("a"), inverse.columnIndex("b")), 1e-6d);
+		assertTrue(Matrixes.symMax(impl, 1d));
+		assertFalse(Matrixes.symMax(array, 0.9d));
+
+		final ConstantMatrixFuzzy<String, String> constant = new ConstantMatrixFuzzy<String, String>(
+				ImmutableSet.of("a", "b"), ImmutableSet.of("a", "b"), 0.5d);
+		final SparseMatrixD<String, String> half = Matrixes.newArrayD(constant);
+		assertTrue(Matrixes.approxEqual(constant, half, 0d));
+		assertTrue(Matrixes.approxEqual(half, constant, 0d));
+	}
+
+	@Test
+	public void testFilteredVisit() throws Exception {
+		final SparseMatrixD<String, String> impl = Matrixes.newSparseD();
+		impl.put("a", "a", 1d);
+		impl.put("a", "b", 2d);
+		impl.put("b", "b", 3d);
+		final SparseMatrixDIndexedRead<String, String> filtered = (SparseMatrixDIndexedRead<String, String>) Matrixes
+				.getFilteredView(impl, Predicates.equalTo("a"), null);
+		final double[] sum = new double[1];
+		assertTrue(filtered.forEachValue(new ValueVisitor() {
+			@Override
+			public boolean visit(int row, int column, double value) {
+				assertEquals("a", filtered.getRow(row));
+				sum[0] += value;
+				return true;
+			}
+		}));
+		assertEquals(3d, sum[0], 0d);
+		final SparseMatrixDIndexedRead<String, String> indexed = Matrixes.asIndexed(impl);
+		assertFalse(filtered.hasValue(indexed.rowIndex("b"), indexed.columnIndex("b")));
+		assertEquals(-1, filtered.rowIndex("b"));
+	}
+
+	@Test
+	public void testViewsFollowChanges() throws Exception {
+		final SparseMatrixFuzzy<String, String> fuzzy = Matrixes.newSparseFuzzy();
+		fuzzy.put("a", "a", 0.5d);
+		final SparseMatrixDRead<String, String> filtered = Matrixes.getFilteredView(fuzzy, null, null);
+		final OneMinusInverseMatrix<String> inverse = new OneMinusInverseMatrix<String>(fuzzy);
+		final SparseMatrixD<String, String> copy = Matrixes.newSparseD();
+		copy.put("a", "a", 0.5d);
+		assertTrue(Matrixes.approxEqual(filtered, copy, 0d));
+		assertTrue(Matrixes.approxEqual(inverse, copy, 0d));
+
+		fuzzy.put("a", "b", 0.2d);
+		copy.put("a", "b", 0.3d);
+		assertFalse(Matrixes.approxEqual(filtered, copy, 0d));
+		assertEquals(0.8d, inverse.getValue(inverse.rowIndex("b"), inverse.columnIndex("a")), 1e-6d);
+
+		final Set<String> rows = Sets.newLinkedHashSet(ImmutableSet.of("a", "b"));
+		final ConstantMatrixFuzzy<String, String> constant = new ConstantMatrixFuzzy<String, String>(rows,
+				ImmutableSet.of("a"), 1d);
+		assertEquals(1, constant.rowIndex("b"));
+		assertEquals("b", constant.getRow(1));
+		assertEquals(2, constant.getRowBound());
+		assertEquals(1d, constant.getValue(1, 0), 0d);
+	}
+
+	/**
+	 * Views over matrixes without native indexes used to index their source at
+	 * each index based call, which made these algorithms take minutes.
+	 */
+	@Test(timeout = 20000)
+	public void testViewsOverNonIndexedMatrixes() throws Exception {
+		final int n = 200;
+		final SparseMatrixFuzzy<Integer, Integer> fuzzy = Matrixes.newSparseFuzzy();
+		final SparseMatrixD<Integer, Integer> complement = Matrixes.newSparseD();
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < n; ++j) {
+				final double value = ((i * 7 + j * 13) % 100) / 100d;
+				fuzzy.put(Integer.valueOf(i), Integer.valueOf(j), value);
+				complement.put(Integer.valueOf(j), Integer.valueOf(i), 1d - value);
+			}
+		}
+		final OneMinusInverseMatrix<Integer> inverse = new OneMinusInverseMatrix<Integer>(fuzzy);
+		assertTrue(Matrixes.approxEqual(complement, inverse, 1e-9d));
+		assertTrue(Matrixes.approxEqual(inverse, complement, 1e-9d));
+		assertTrue(Matrixes.symMax(inverse, 2d));
+
+		/** Not known to read through, thus indexed through an adapter. */
+		final SparseMatrixDRead<Integer, Integer> foreign = new ForwardingSparseMatrixRead<Integer, Integer>(fuzzy) {
+			// no override
+		};
+		final SparseMatrixDRead<Integer, Integer> filtered = Matrixes.getFilteredView(foreign, null, null);
+		assertTrue(Matrixes.approxEqual(filtered, fuzzy, 0d));
+		assertTrue(Matrixes.approxEqual(new OneMinusInverseMatrix<Integer>(foreign), complement, 1e-9d));
+	}
+
+	@Test
+	public void testSparseIndexes() throws Exception {
+		final SparseMatrixDImpl<String, String> impl = new SparseMatrixDImpl<String, String>();
+		impl.put("a", "x", 1d);
+		impl.put("b", "y", 2d);
+		final int b = impl.rowIndex("b");
+		final int y = impl.columnIndex("y");
+		impl.put("c", "z", 3d);
+		impl.remove("a", "x");
+		assertEquals(b, impl.rowIndex("b"));
+		assertEquals(y, impl.columnIndex("y"));
+		assertEquals(-1, impl.rowIndex("a"));
+		assertEquals(2d, impl.getValue(b, y), 0d);
+		assertTrue(impl.removeColumn("y"));
+		assertEquals(-1, impl.rowIndex("b"));
+		assertEquals(-1, impl.columnIndex("y"));
+		assertEquals("c", impl.getRow(impl.rowIndex("c")));
+		assertTrue(impl.hasValue(impl.rowIndex("c"), impl.columnIndex("z")));
+	}
+
+	@Test
+	public void testFreeze() throws Exception {
+		final SparseMatrixD<String, String> impl = Matrixes.newSparseD();
+		impl.put("a", "c", 1d);
+		impl.put("a", "b", 2d);
+		impl.put("b", "c", 3d);
+		impl.put("c", "a", 4d);
+		final SparseMatrixDIndexedRead<String, String> frozen = Matrixes.freeze(impl);
+		assertEquals(impl, frozen);
+		assertEquals(frozen, impl);
+		assertEquals(impl.hashCode(), frozen.hashCode());
+		assertEquals(impl.getRows(), frozen.getRows());
+		assertEquals(impl.getColumns(), frozen.getColumns());
+		assertEquals(4, frozen.getValueCount());
+		assertFalse(frozen.isComplete());
+		assertEquals(2d, frozen.getValue("a", "b"), 0d);
+		assertEquals(null, frozen.getEntry("b", "b"));
+		assertEquals(null, frozen.getEntry("b", "z"));
+		assertTrue(frozen.hasValue(frozen.rowIndex("c"), frozen.columnIndex("a")));
+		assertTrue(Matrixes.approxEqual(frozen, impl, 0d));
+		assertEquals(impl.asTable().toString(), frozen.asTable().toString());
+		assertTrue(frozen == Matrixes.freeze(frozen));
+	}
+}
@@ -0,0 +1,67 @@
+package org.decision_deck.utils.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class SparseMatrixBooleanBitsTest {
+	@Test
+	public void testValues() throws Exception {
+		final SparseMatrixBooleanBits<String, String> bits = Matrixes.newBooleanBits();
+		final SparseMatrixD<String, String> impl = Matrixes.newSparseD();
+		for (SparseMatrixD<String, String> matrix : ImmutableList.<SparseMatrixD<String, String>>of(bits, impl)) {
+			matrix.put("a", "a", 1d);
+			matrix.put("a", "b", 0d);
+			matrix.put("b", "c", 1d);
+		}
+		assertEquals(impl, bits);
+		assertEquals(bits, impl);
+		assertEquals(impl.hashCode(), bits.hashCode());
+		assertTrue(bits.getBooleanValue("a", "a"));
+		assertFalse(bits.getBooleanValue("a", "b"));
+		assertEquals(Boolean.FALSE, bits.getBooleanEntry("a", "b"));
+		assertNull(bits.getBooleanEntry("a", "c"));
+		assertNull(bits.getEntry("b", "a"));
+		assertEquals(3, bits.getValueCount());
+		assertFalse(bits.isComplete());
+
+		assertTrue(bits.removeColumn("c"));
+		assertEquals(ImmutableSet.of("a"), bits.getRows());
+		assertEquals(ImmutableSet.of("a", "b"), bits.getColumns());
+		assertTrue(bits.isComplete());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPutInvalid() throws Exception {
+		final SparseMatrixBooleanBits<String, String> bits = Matrixes.newBooleanBits();
+		bits.put("a", "a", 0.5d);
+	}
+
+	@Test
+	public void testBulk() throws Exception {
+		final SparseMatrixBooleanBits<Integer, Integer> bits = Matrixes.newBooleanBits();
+		for (int i = 0; i < 100; ++i) {
+			bits.put(Integer.valueOf(0), Integer.valueOf(i), i % 2 == 0);
+		}
+		bits.put(Integer.valueOf(1), Integer.valueOf(99), true);
+		final int row0 = bits.rowIndex(Integer.valueOf(0));
+		final int row1 = bits.rowIndex(Integer.valueOf(1));
+		assertEquals(50, bits.countTrue(row0));
+		bits.or(row1, row0);
+		assertEquals(51, bits.countTrue(row1));
+		assertEquals(200, bits.getValueCount());
+		assertTrue(bits.isComplete());
+		bits.xor(row1, row0);
+		assertEquals(1, bits.countTrue(row1));
+		bits.and(row1, row0);
+		assertEquals(0, bits.countTrue(row1));
+		assertEquals(Boolean.FALSE, bits.getBooleanEntry(Integer.valueOf(1), Integer.valueOf(99)));
+		assertEquals(50, bits.countTrue());
+	}
+}
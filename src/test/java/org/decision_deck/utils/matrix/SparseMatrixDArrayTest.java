@@ -0,0 +1,77 @@
+package org.decision_deck.utils.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+@SuppressWarnings("boxing")
+public class SparseMatrixDArrayTest {
+	@Test
+	public void testSameAsImpl() throws Exception {
+		final SparseMatrixD<String, String> impl = Matrixes.newSparseD();
+		final SparseMatrixD<String, String> array = Matrixes.newArrayD();
+		for (SparseMatrixD<String, String> matrix : ImmutableList.of(impl, array)) {
+			fill(matrix);
+		}
+		assertEquals(impl, array);
+		assertEquals(array, impl);
+		assertEquals(impl.hashCode(), array.hashCode());
+		assertEquals(impl.asTable(), array.asTable());
+		assertTrue(Matrixes.approxEqual(impl, array, 0d));
+	}
+
+	@Test
+	public void testContract() throws Exception {
+		final SparseMatrixD<String, String> matrix = Matrixes.newArrayD();
+		assertTrue(matrix.isEmpty());
+		assertTrue(matrix.isComplete());
+		fill(matrix);
+		assertEquals(ImmutableSet.of("r1", "r2", "r3"), matrix.getRows());
+		assertEquals(ImmutableSet.of("c1", "c2", "c3", "c4", "c5", "c6"), matrix.getColumns());
+		assertEquals(8, matrix.getValueCount());
+		assertFalse(matrix.isComplete());
+		assertEquals(2.5d, matrix.getValue("r2", "c6"), 0d);
+		assertNull(matrix.getEntry("r2", "c1"));
+		assertNull(matrix.getEntry("rNONE", "c1"));
+
+		assertEquals(Double.valueOf(2.5d), matrix.put("r2", "c6", 3d));
+		assertEquals(8, matrix.getValueCount());
+
+		assertTrue(matrix.removeColumn("c6"));
+		assertFalse(matrix.removeColumn("c6"));
+		assertEquals(ImmutableSet.of("r1", "r3"), matrix.getRows());
+		assertEquals(6, matrix.getValueCount());
+
+		assertTrue(matrix.removeRow("r3"));
+		assertFalse(matrix.removeRow("r3"));
+		assertEquals(ImmutableSet.of("r1"), matrix.getRows());
+		assertEquals(ImmutableSet.of("c1", "c2", "c3", "c4", "c5"), matrix.getColumns());
+		assertTrue(matrix.isComplete());
+
+		assertEquals(Double.valueOf(1d), matrix.remove("r1", "c1"));
+		assertNull(matrix.remove("r1", "c1"));
+		assertEquals(ImmutableSet.of("c2", "c3", "c4", "c5"), matrix.getColumns());
+
+		matrix.put("r4", "c7", 7d);
+		assertEquals(7d, matrix.getValue("r4", "c7"), 0d);
+		assertNull(matrix.getEntry("r4", "c2"));
+		assertEquals(5, matrix.getValueCount());
+	}
+
+	private void fill(SparseMatrixD<String, String> matrix) {
+		matrix.put("r1", "c1", 1d);
+		matrix.put("r1", "c2", 2d);
+		matrix.put("r1", "c3", 3d);
+		matrix.put("r1", "c4", 4d);
+		matrix.put("r1", "c5", 5d);
+		matrix.put("r2", "c6", 2.5d);
+		matrix.put("r3", "c1", -1d);
+		matrix.put("r3", "c6", Double.POSITIVE_INFINITY);
+	}
+}